@@ -1,9 +1,11 @@
 package com.devaraj.AIClone;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+@Slf4j
 @SpringBootApplication
 public class AiCloneApplication {
 
@@ -24,12 +26,12 @@ public class AiCloneApplication {
         setProp("GOOGLE_CLIENT_ID", dotenv);
         setProp("GOOGLE_CLIENT_SECRET", dotenv);
 
-        // 3. Safe logging for debugging
+        // 3. Safe logging for debugging (no part of the key is logged)
         String apiKey = System.getProperty("GEMINI_API_KEY");
         if (apiKey != null && apiKey.length() > 12) {
-            System.out.println("Loading Gemini API Key starting with: " + apiKey.substring(0, 12));
+            log.info("Gemini API key loaded ({} characters)", apiKey.length());
         } else {
-            System.out.println("Warning: GEMINI_API_KEY is not set or is too short.");
+            log.warn("GEMINI_API_KEY is not set or is too short.");
         }
 
         SpringApplication.run(AiCloneApplication.class, args);
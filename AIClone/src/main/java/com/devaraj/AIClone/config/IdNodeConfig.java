@@ -0,0 +1,31 @@
+package com.devaraj.AIClone.config;
+
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.devaraj.AIClone.entity.TimeOrderedIdGenerator;
+
+/**
+ * Hands chat.id.node to TimeOrderedIdGenerator. A post-processor, so it runs before any bean exists
+ * that could generate an id. With chat.multi-instance=true every instance must set its own node:
+ * startup fails without one rather than risk primary-key collisions between instances.
+ */
+@Component
+public class IdNodeConfig implements BeanFactoryPostProcessor {
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        Environment env = beanFactory.getBean(Environment.class);
+        String node = env.getProperty("chat.id.node", "");
+        if (node.isBlank()) {
+            if (env.getProperty("chat.multi-instance", Boolean.class, false)) {
+                throw new IllegalStateException("chat.multi-instance=true needs a distinct chat.id.node (0-"
+                        + TimeOrderedIdGenerator.MAX_NODE + ") on every instance");
+            }
+            return;
+        }
+        TimeOrderedIdGenerator.setNode(Integer.parseInt(node.trim()));
+    }
+}
@@ -0,0 +1,89 @@
+package com.devaraj.AIClone.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.devaraj.AIClone.service.AdmissionController;
+import com.devaraj.AIClone.service.GeminiService;
+import com.devaraj.AIClone.service.LlmProvider;
+import com.devaraj.AIClone.service.LlmRouter;
+import com.devaraj.AIClone.service.StubLlmProvider;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Builds the models listed in llm.models (each described by llm.model.&lt;id&gt;.*) and the router in front of them.
+ * Without llm.models there is a single Gemini route for gemini.model, as before the router.
+ */
+@Configuration
+public class LlmConfig {
+
+    @Value("${gemini.api.key}")
+    private String apiKey;
+    @Value("${gemini.base-url:https://generativelanguage.googleapis.com}")
+    private String baseUrl;
+    @Value("${gemini.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+    @Value("${gemini.timeout-ms:60000}")
+    private long timeoutMs;
+    @Value("${gemini.retry.max-attempts:3}")
+    private int maxAttempts;
+    @Value("${gemini.retry.backoff-ms:250}")
+    private long backoffMs;
+    @Value("${gemini.hedge.delay-ms:0}")
+    private long hedgeDelayMs;
+    @Value("${gemini.breaker.failure-rate:0.5}")
+    private double breakerFailureRate;
+    @Value("${gemini.breaker.window:20}")
+    private int breakerWindow;
+    @Value("${gemini.breaker.open-ms:15000}")
+    private long breakerOpenMs;
+
+    @Bean
+    public LlmRouter llmRouter(
+            Environment env,
+            AdmissionController admission,
+            MeterRegistry meterRegistry,
+            @Value("${llm.models:}") List<String> ids,
+            @Value("${gemini.model:gemini-2.5-flash}") String defaultModel,
+            @Value("${llm.router.ewma-alpha:0.2}") double alpha,
+            @Value("${llm.router.max-error-rate:0.3}") double maxErrorRate,
+            @Value("${llm.router.max-latency-ms:20000}") long maxLatencyMs,
+            @Value("${llm.router.small-prompt-tokens:0}") int smallPromptTokens,
+            @Value("${llm.router.probe-interval-ms:10000}") long probeIntervalMs
+    ) {
+        List<LlmRouter.Route> routes = new ArrayList<>();
+        for (String id : ids) {
+            if (id.isBlank()) {
+                continue;
+            }
+            String prefix = "llm.model." + id.strip() + ".";
+            String name = env.getProperty(prefix + "name", id.strip());
+            String provider = env.getProperty(prefix + "provider", "gemini");
+            routes.add(new LlmRouter.Route(
+                    provider(provider, name, admission, meterRegistry, env.getProperty(prefix + "latency-ms", Long.class, 200L)),
+                    env.getProperty(prefix + "cost-per-1k-tokens", Double.class, 1.0),
+                    env.getProperty(prefix + "max-prompt-tokens", Integer.class, Integer.MAX_VALUE)));
+        }
+        if (routes.isEmpty()) {
+            routes.add(new LlmRouter.Route(provider("gemini", defaultModel, admission, meterRegistry, 0),
+                    1.0, Integer.MAX_VALUE));
+        }
+        return new LlmRouter(routes, meterRegistry, alpha, maxErrorRate, maxLatencyMs, smallPromptTokens, probeIntervalMs);
+    }
+
+    private LlmProvider provider(String type, String model, AdmissionController admission,
+                                 MeterRegistry meterRegistry, long stubLatencyMs) {
+        return switch (type) {
+            case "gemini" -> new GeminiService(apiKey, baseUrl, model, admission, meterRegistry, connectTimeoutMs,
+                    timeoutMs, maxAttempts, backoffMs, hedgeDelayMs, breakerFailureRate, breakerWindow, breakerOpenMs);
+            case "stub" -> new StubLlmProvider(model, stubLatencyMs);
+            default -> throw new IllegalStateException("Unknown LLM provider '" + type + "' for model " + model);
+        };
+    }
+}
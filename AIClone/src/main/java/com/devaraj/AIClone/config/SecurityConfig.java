@@ -2,9 +2,13 @@ package com.devaraj.AIClone.config;
 
 import java.util.List;
 
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -17,6 +21,7 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import com.devaraj.AIClone.security.JwtAuthenticationFilter;
 import com.devaraj.AIClone.security.OAuth2LoginSuccessHandler;
+import com.devaraj.AIClone.security.RateLimitFilter;
 
 import lombok.RequiredArgsConstructor;
 
@@ -29,7 +34,9 @@ public class SecurityConfig {
     private String frontendUrl;
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
     private final OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler;
+    private final Environment environment;
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
@@ -41,6 +48,8 @@ public class SecurityConfig {
                 session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
             )
             .authorizeHttpRequests(auth -> auth
+                // Streamed responses complete on an ASYNC dispatch of an already authorized request
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 // Allow public access to Login, Register, and Guest endpoint
                 .requestMatchers(
                     "/api/auth/login", 
@@ -48,6 +57,11 @@ public class SecurityConfig {
                     "/api/auth/guest", 
                     "/oauth2/**"
                 ).permitAll()
+                // The WebSocket authenticates in-band, with its first message (see ChatSocketHandler)
+                .requestMatchers("/ws/chat").permitAll()
+                // Health checks and the metrics scraper carry no JWT. Metrics are only served on the management port
+                .requestMatchers(this::onManagementPort).permitAll()
+                .requestMatchers("/actuator/health").permitAll()
                 // Authenticated endpoints
                 .requestMatchers("/api/auth/me").authenticated()
                 .anyRequest().authenticated()
@@ -60,11 +74,22 @@ public class SecurityConfig {
             .addFilterBefore(
                 jwtAuthenticationFilter,
                 UsernamePasswordAuthenticationFilter.class
+            )
+            // Rate limits need the caller's identity, so they run right after the JWT filter
+            .addFilterAfter(
+                rateLimitFilter,
+                JwtAuthenticationFilter.class
             );
 
         return http.build();
     }
 
+    // This chain also guards the actuator's own server; local.management.port is only set when it has one
+    private boolean onManagementPort(HttpServletRequest request) {
+        Integer port = environment.getProperty("local.management.port", Integer.class);
+        return port != null && request.getLocalPort() == port;
+    }
+
     @Bean
     public UrlBasedCorsConfigurationSource corsConfigurationSource() {
 
@@ -75,8 +100,12 @@ public class SecurityConfig {
         configuration.setAllowedMethods(List.of(
                 "GET", "POST", "PUT", "DELETE", "OPTIONS"
         ));
+        // Cache-Control lets a chat skip the prompt cache; If-None-Match revalidates history against its ETag
         configuration.setAllowedHeaders(List.of(
-                "Authorization", "Content-Type"
+                "Authorization", "Content-Type", "Cache-Control", "If-None-Match"
+        ));
+        configuration.setExposedHeaders(List.of(
+                "ETag", "Retry-After"
         ));
         configuration.setAllowCredentials(true);
 
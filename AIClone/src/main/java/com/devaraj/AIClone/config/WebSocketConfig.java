@@ -0,0 +1,39 @@
+package com.devaraj.AIClone.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+import com.devaraj.AIClone.controller.ChatSocketHandler;
+
+import lombok.RequiredArgsConstructor;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final ChatSocketHandler chatSocketHandler;
+
+    @Value("${frontend.url}")
+    private String frontendUrl;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Browsers send cookies on a cross-site upgrade, so only the frontend may open one
+        registry.addHandler(chatSocketHandler, "/ws/chat").setAllowedOrigins(frontendUrl);
+    }
+
+    // Commands are small; a larger frame is refused by the container before it is buffered
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer(@Value("${ws.max-message-bytes:65536}") int maxMessageBytes) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(maxMessageBytes);
+        container.setMaxBinaryMessageBufferSize(maxMessageBytes);
+        return container;
+    }
+}
@@ -1,14 +1,16 @@
 package com.devaraj.AIClone.controller;
 
 import com.devaraj.AIClone.dto.*;
+import com.devaraj.AIClone.security.AuthenticatedUser;
 import com.devaraj.AIClone.service.AuthService;
 import lombok.RequiredArgsConstructor;
 
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
@@ -18,14 +20,16 @@ public class AuthController {
 
     // REGISTER
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@RequestBody AuthRequest req) {
-        return ResponseEntity.ok(service.register(req));
+    public CompletableFuture<ResponseEntity<AuthResponse>> register(
+            @RequestBody AuthRequest req,
+            @RequestHeader(value = "Authorization", required = false) String authorization) {
+        return service.register(req, authorization).thenApply(ResponseEntity::ok);
     }
 
     // LOGIN
     @PostMapping("/login")
-    public ResponseEntity<LoginResponse> login(@RequestBody AuthRequest req) {
-        return ResponseEntity.ok(service.login(req));
+    public CompletableFuture<ResponseEntity<LoginResponse>> login(@RequestBody AuthRequest req) {
+        return service.login(req).thenApply(ResponseEntity::ok);
     }
 
     // NEW: GUEST LOGIN
@@ -42,9 +46,7 @@ public class AuthController {
   
     // GET USER PROFILE 
     @GetMapping("/me")
-    public ResponseEntity<UserProfileResponse> getProfile() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        return ResponseEntity.ok(service.getUserProfile(email));
+    public ResponseEntity<UserProfileResponse> getProfile(@AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(service.getUserProfile(user.id()));
     }
 }
\ No newline at end of file
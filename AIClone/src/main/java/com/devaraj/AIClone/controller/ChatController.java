@@ -1,49 +1,146 @@
 package com.devaraj.AIClone.controller;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import com.devaraj.AIClone.dto.ChatRequest;
 import com.devaraj.AIClone.dto.ChatResponse;
+import com.devaraj.AIClone.dto.ChatStreamEvent;
+import com.devaraj.AIClone.dto.ConversationChanges;
 import com.devaraj.AIClone.dto.ConversationResponse;
-import com.devaraj.AIClone.entity.Message;
+import com.devaraj.AIClone.dto.ImportResult;
+import com.devaraj.AIClone.dto.MessageView;
+import com.devaraj.AIClone.dto.SearchResults;
+import com.devaraj.AIClone.security.AuthenticatedUser;
+import com.devaraj.AIClone.service.ChatExecutor;
 import com.devaraj.AIClone.service.ChatService;
+import com.devaraj.AIClone.service.ConversationTransfer;
+import com.devaraj.AIClone.service.HistoryVersions;
+
+import jakarta.servlet.http.HttpServletResponse;
 
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/chat")
 @RequiredArgsConstructor
 public class ChatController {
     private final ChatService chatService;
+    private final ChatExecutor chatExecutor;
+    private final ConversationTransfer conversationTransfer;
+    private final HistoryVersions historyVersions;
 
+    // In "async" execution mode the servlet thread is released while the reply is generated
     @PostMapping
-    public ChatResponse chat(@RequestBody ChatRequest req, Authentication auth) {
-        String reply = chatService.chat(req.message(), auth.getName(), req.conversationId());
-        return new ChatResponse(reply);
+    // "Cache-Control: no-cache" (or no-store) bypasses the prompt cache for this request
+    public CompletableFuture<ChatResponse> chat(@RequestBody ChatRequest req,
+                                                @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl,
+                                                @AuthenticationPrincipal AuthenticatedUser user) {
+        boolean useCache = cacheControl == null || !(cacheControl.contains("no-cache") || cacheControl.contains("no-store"));
+        return chatExecutor.submit(() -> {
+            String reply = chatService.chat(req.message(), user.id(), req.conversationId(), useCache);
+            return new ChatResponse(reply);
+        });
+    }
+
+    // Server-Sent Events; closing the connection cancels the upstream Gemini call
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChatStreamEvent>> stream(@RequestBody ChatRequest req, @AuthenticationPrincipal AuthenticatedUser user) {
+        return chatService.streamChat(req.message(), user.id(), req.conversationId())
+                .map(e -> ServerSentEvent.builder(e).event(e.type()).build());
     }
 
+    // Keyset paging like /history/{id}: `before` is the id of the oldest conversation you have.
+    // Send the ETag back in If-None-Match: 304 (no query) while nothing has changed
     @GetMapping("/history")
-    public java.util.List<ConversationResponse> getHistory(Authentication auth) {
-        return chatService.getHistory(auth.getName());
+    public ResponseEntity<java.util.List<ConversationResponse>> getHistory(@RequestParam(required = false) Long before,
+                                                                           @RequestParam(defaultValue = "100") int limit,
+                                                                           @AuthenticationPrincipal AuthenticatedUser user,
+                                                                           WebRequest request) {
+        String etag = historyVersions.historyTag(user.id());
+        if (historyVersions.notModified(request, etag, "history")) {
+            return null;
+        }
+        return revalidated(etag, chatService.getHistory(user.id(), before, limit));
     }
 
+    // Sidebar delta sync: creations, renames and deletions after `since` (the `version` of the previous response)
+    @GetMapping("/history/changes")
+    public ConversationChanges getHistoryChanges(@RequestParam(defaultValue = "0") long since,
+                                                 @RequestParam(defaultValue = "100") int limit,
+                                                 @AuthenticationPrincipal AuthenticatedUser user) {
+        return chatService.getHistoryChanges(user.id(), since, limit);
+    }
+
+    // Keyset paging: pass the id of the oldest message you have as `before` to get the page preceding it.
+    // Conditional like /history
     @GetMapping("/history/{id}")
-    public java.util.List<Message> getMessages(@PathVariable Long id) {
-        return chatService.getConversationMessages(id);
+    public ResponseEntity<java.util.List<MessageView>> getMessages(@PathVariable Long id,
+                                                                   @RequestParam(required = false) Long before,
+                                                                   @RequestParam(defaultValue = "50") int limit,
+                                                                   @AuthenticationPrincipal AuthenticatedUser user,
+                                                                   WebRequest request) {
+        String etag = historyVersions.messagesTag(user.id(), id);
+        if (historyVersions.notModified(request, etag, "messages")) {
+            return null;
+        }
+        return revalidated(etag, chatService.getConversationMessages(id, user.id(), before, limit));
+    }
+
+    // Full-text search over your messages: words must all match; "phrases", -exclusions and prefix* work too
+    @GetMapping("/search")
+    public SearchResults search(@RequestParam String q,
+                                @RequestParam(defaultValue = "0") int page,
+                                @RequestParam(defaultValue = "20") int size,
+                                @AuthenticationPrincipal AuthenticatedUser user) {
+        return chatService.search(user.id(), q, page, size);
+    }
+
+    // Every conversation as NDJSON, streamed page by page (no async timeout: a large history can take minutes)
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public void export(HttpServletResponse response, @AuthenticationPrincipal AuthenticatedUser user) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"conversations.ndjson\"");
+        conversationTransfer.export(user.id(), response.getOutputStream());
+    }
+
+    // Adds the conversations of an /export file (from this account or another) as new ones.
+    // Limits: a line of at most 8 MB, a message of at most 1,000,000 characters; longer titles are cut to 255.
+    // A bad line answers 400 with its line number; the conversations imported before it are kept
+    @PostMapping(value = "/import", consumes = { "application/x-ndjson", MediaType.APPLICATION_OCTET_STREAM_VALUE, MediaType.TEXT_PLAIN_VALUE })
+    public ImportResult importConversations(InputStream body, @AuthenticationPrincipal AuthenticatedUser user) throws IOException {
+        return conversationTransfer.importFrom(user.id(), body);
     }
 
     // NEW: Delete Conversation
     @DeleteMapping("/conversation/{id}")
-    public ResponseEntity<Void> deleteConversation(@PathVariable Long id, Authentication auth) {
-        chatService.deleteConversation(id, auth.getName());
+    public ResponseEntity<Void> deleteConversation(@PathVariable Long id, @AuthenticationPrincipal AuthenticatedUser user) {
+        chatService.deleteConversation(id, user.id());
         return ResponseEntity.noContent().build();
     }
 
     // NEW: Rename Conversation
     @PutMapping("/conversation/{id}")
-    public ResponseEntity<Void> updateTitle(@PathVariable Long id, @RequestBody String title, Authentication auth) {
-        chatService.updateTitle(id, title, auth.getName());
+    public ResponseEntity<Void> updateTitle(@PathVariable Long id, @RequestBody String title, @AuthenticationPrincipal AuthenticatedUser user) {
+        chatService.updateTitle(id, title, user.id());
         return ResponseEntity.ok().build();
     }
+
+    // Browsers may keep the copy but must ask first; shared caches must not keep it at all
+    private static <T> ResponseEntity<T> revalidated(String etag, T body) {
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate());
+        return (etag == null ? ok : ok.eTag(etag)).body(body);
+    }
 }
\ No newline at end of file
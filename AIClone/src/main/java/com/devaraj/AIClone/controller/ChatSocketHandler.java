@@ -0,0 +1,340 @@
+package com.devaraj.AIClone.controller;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.devaraj.AIClone.dto.ChatStreamEvent;
+import com.devaraj.AIClone.dto.SocketCommand;
+import com.devaraj.AIClone.dto.SocketFrame;
+import com.devaraj.AIClone.entity.User;
+import com.devaraj.AIClone.security.JwtService;
+import com.devaraj.AIClone.security.RateLimitFilter;
+import com.devaraj.AIClone.security.VerifiedToken;
+import com.devaraj.AIClone.service.ChatService;
+import com.devaraj.AIClone.service.UserCache;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Chat over one WebSocket per client (/ws/chat), as an alternative to a request per turn.
+ *
+ * The first message must be {"type":"auth","token":...}: the JWT is verified once and the user kept
+ * for the life of the connection, which is closed when the token expires. After that the client
+ * sends turns ("send", each with its own requestId) and receives the same start/token/done/error
+ * frames as /api/chat/stream tagged with that requestId, for any number of conversations at once
+ * (up to max-streams-per-connection replies in flight). A turn that creates a conversation also
+ * pushes its sidebar entry, so the client does not re-fetch the history.
+ *
+ * Backpressure: frames go out through a bounded buffer (send-buffer-bytes). Sending happens off the
+ * model client's event loop, so a slow reader slows down only its own replies; one that stays
+ * blocked for send-time-limit-ms or overflows the buffer is disconnected. Heartbeat: the server
+ * pings every heartbeat-interval-ms and closes connections silent for idle-timeout-ms. One thread
+ * checks every connection, so the pings and closes it decides on are sent from the reply scheduler.
+ */
+@Slf4j
+@Component
+public class ChatSocketHandler extends TextWebSocketHandler {
+
+    private static final class Connection {
+        private final ConcurrentWebSocketSessionDecorator session;
+        private final long openedAtMs = System.currentTimeMillis();
+        private final Map<String, Disposable> replies = new ConcurrentHashMap<>();
+        private volatile Long userId;
+        private volatile long tokenExpiresAtMs;
+        private volatile long lastSeenMs = openedAtMs;
+        private volatile long lastPingMs = openedAtMs;
+        private volatile String closeReason;
+
+        private Connection(ConcurrentWebSocketSessionDecorator session) {
+            this.session = session;
+        }
+    }
+
+    private final ChatService chatService;
+    private final JwtService jwtService;
+    private final UserCache userCache;
+    private final RateLimitFilter rateLimits;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final long authTimeoutMs;
+    private final long heartbeatIntervalMs;
+    private final long idleTimeoutMs;
+    private final int maxRepliesPerConnection;
+    private final int sendTimeLimitMs;
+    private final int sendBufferBytes;
+
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private final Counter received;
+    private final Counter sent;
+
+    private final Thread heartbeat;
+    private volatile boolean running = true;
+
+    public ChatSocketHandler(
+            ChatService chatService,
+            JwtService jwtService,
+            UserCache userCache,
+            RateLimitFilter rateLimits,
+            MeterRegistry meterRegistry,
+            @Value("${ws.auth-timeout-ms:5000}") long authTimeoutMs,
+            @Value("${ws.heartbeat-interval-ms:25000}") long heartbeatIntervalMs,
+            @Value("${ws.idle-timeout-ms:75000}") long idleTimeoutMs,
+            @Value("${ws.max-streams-per-connection:4}") int maxRepliesPerConnection,
+            @Value("${ws.send-time-limit-ms:10000}") int sendTimeLimitMs,
+            @Value("${ws.send-buffer-bytes:524288}") int sendBufferBytes
+    ) {
+        this.chatService = chatService;
+        this.jwtService = jwtService;
+        this.userCache = userCache;
+        this.rateLimits = rateLimits;
+        this.meterRegistry = meterRegistry;
+        this.authTimeoutMs = authTimeoutMs;
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxRepliesPerConnection = maxRepliesPerConnection;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.sendBufferBytes = sendBufferBytes;
+
+        meterRegistry.gaugeMapSize("ws.connections", List.of(), connections);
+        this.received = Counter.builder("ws.messages").tag("direction", "in").register(meterRegistry);
+        this.sent = Counter.builder("ws.messages").tag("direction", "out").register(meterRegistry);
+        this.heartbeat = Thread.ofPlatform().name("ws-heartbeat").daemon().start(this::heartbeatLoop);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        ConcurrentWebSocketSessionDecorator bounded = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, sendBufferBytes,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+        connections.put(session.getId(), new Connection(bounded));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Connection conn = connections.get(session.getId());
+        if (conn == null) {
+            return;
+        }
+        conn.lastSeenMs = System.currentTimeMillis();
+        received.increment();
+
+        SocketCommand command;
+        try {
+            command = mapper.readValue(message.getPayload(), SocketCommand.class);
+        } catch (JacksonException e) {
+            send(conn, SocketFrame.error(null, 400, "Not a valid JSON message", null));
+            return;
+        }
+        String type = command.type() == null ? "" : command.type();
+        if (conn.userId == null) {
+            if ("auth".equals(type)) {
+                authenticate(conn, command.token());
+            } else {
+                close(conn, CloseStatus.POLICY_VIOLATION.withReason("Authenticate first"), "unauthenticated");
+            }
+            return;
+        }
+        switch (type) {
+            case "send" -> startReply(conn, command);
+            case "cancel" -> {
+                Disposable reply = command.requestId() == null ? null : conn.replies.remove(command.requestId());
+                if (reply != null) {
+                    reply.dispose();
+                }
+            }
+            case "ping" -> send(conn, SocketFrame.pong());
+            case "auth" -> send(conn, SocketFrame.error(null, 400, "Already authenticated", null));
+            default -> send(conn, SocketFrame.error(command.requestId(), 400, "Unknown message type " + type, null));
+        }
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        Connection conn = connections.get(session.getId());
+        if (conn != null) {
+            conn.lastSeenMs = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Connection conn = connections.remove(session.getId());
+        if (conn == null) {
+            return;
+        }
+        // Cancels the model calls of replies still in flight
+        conn.replies.values().forEach(Disposable::dispose);
+        meterRegistry.counter("ws.closed", "reason", conn.closeReason == null ? "client" : conn.closeReason).increment();
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("WebSocket transport error: {}", exception.getMessage());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(heartbeat);
+        connections.values().forEach(c -> close(c, CloseStatus.GOING_AWAY, "shutdown"));
+    }
+
+    // The same checks as JwtAuthenticationFilter, once per connection
+    private void authenticate(Connection conn, String token) {
+        try {
+            VerifiedToken verified = jwtService.verify(token == null ? "" : token);
+            Long userId = verified.userId() != null
+                    ? verified.userId()
+                    : userCache.findByEmail(verified.email()).map(User::getId).orElse(null);
+            if (verified.email() == null || userId == null) {
+                close(conn, CloseStatus.POLICY_VIOLATION.withReason("Invalid token"), "invalid_token");
+                return;
+            }
+            conn.tokenExpiresAtMs = verified.expiresAtMs();
+            conn.userId = userId;
+            send(conn, SocketFrame.ready());
+        } catch (JwtException | IllegalArgumentException e) {
+            close(conn, CloseStatus.POLICY_VIOLATION.withReason("Invalid token"), "invalid_token");
+        }
+    }
+
+    private void startReply(Connection conn, SocketCommand command) {
+        String requestId = command.requestId();
+        if (requestId == null || command.message() == null || command.message().isBlank()) {
+            send(conn, SocketFrame.error(requestId, 400, "A send needs a requestId and a message", null));
+            return;
+        }
+        if (conn.replies.size() >= maxRepliesPerConnection) {
+            send(conn, SocketFrame.error(requestId, 429, "Too many replies in progress on this connection", null));
+            return;
+        }
+        long retryAfterMs = rateLimits.tryAcquireChat(conn.userId);
+        if (retryAfterMs > 0) {
+            send(conn, SocketFrame.error(requestId, 429, "Too many requests, please slow down", retryAfterMs));
+            return;
+        }
+        Disposable.Swap slot = Disposables.swap();
+        if (conn.replies.putIfAbsent(requestId, slot) != null) {
+            send(conn, SocketFrame.error(requestId, 400, "A reply with this requestId is already in progress", null));
+            return;
+        }
+
+        Long userId = conn.userId;
+        slot.update(Flux.defer(() -> chatService.streamChat(command.message(), userId, command.conversationId()))
+                // Starting a turn is blocking JPA work; sending may block on a slow reader. Neither may run on an event loop.
+                .subscribeOn(Schedulers.boundedElastic())
+                .publishOn(Schedulers.boundedElastic())
+                .doFinally(signal -> conn.replies.remove(requestId, slot))
+                .subscribe(
+                        event -> relay(conn, requestId, event),
+                        e -> send(conn, failure(requestId, e))));
+    }
+
+    private void relay(Connection conn, String requestId, ChatStreamEvent event) {
+        send(conn, SocketFrame.reply(requestId, event));
+        if ("start".equals(event.type()) && event.title() != null) {
+            send(conn, SocketFrame.conversation(event.conversationId(), event.title()));
+        }
+    }
+
+    // Same statuses and messages as GlobalException gives the REST endpoints
+    private static SocketFrame failure(String requestId, Throwable e) {
+        if (e instanceof ResponseStatusException status) {
+            return SocketFrame.error(requestId, status.getStatusCode().value(), String.valueOf(status.getReason()), null);
+        }
+        if (e instanceof RuntimeException) {
+            return SocketFrame.error(requestId, HttpStatus.BAD_REQUEST.value(), e.getMessage(), null);
+        }
+        return SocketFrame.error(requestId, HttpStatus.INTERNAL_SERVER_ERROR.value(), "The reply could not be completed", null);
+    }
+
+    private void send(Connection conn, SocketFrame frame) {
+        try {
+            conn.session.sendMessage(new TextMessage(mapper.writeValueAsString(frame)));
+            sent.increment();
+        } catch (SessionLimitExceededException e) {
+            // The decorator has already closed the session
+            conn.closeReason = "slow_consumer";
+        } catch (IOException | IllegalStateException e) {
+            // Closed meanwhile; afterConnectionClosed cleans up
+            log.debug("WebSocket send failed: {}", e.getMessage());
+        }
+    }
+
+    private void close(Connection conn, CloseStatus status, String reason) {
+        conn.closeReason = reason;
+        try {
+            conn.session.close(status);
+        } catch (IOException e) {
+            log.debug("WebSocket close failed: {}", e.getMessage());
+        }
+    }
+
+    // Never sends itself: a send or close can block for up to send-time-limit-ms and would hold up every other connection
+    private void heartbeatLoop() {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            long now = System.currentTimeMillis();
+            for (Connection conn : connections.values()) {
+                if (conn.closeReason != null) {
+                    continue;
+                }
+                if (conn.userId == null) {
+                    if (now - conn.openedAtMs > authTimeoutMs) {
+                        closeLater(conn, CloseStatus.POLICY_VIOLATION.withReason("Authentication timed out"), "auth_timeout");
+                    }
+                } else if (now >= conn.tokenExpiresAtMs) {
+                    closeLater(conn, CloseStatus.POLICY_VIOLATION.withReason("Token expired"), "token_expired");
+                } else if (now - conn.lastSeenMs > idleTimeoutMs) {
+                    closeLater(conn, CloseStatus.SESSION_NOT_RELIABLE.withReason("Heartbeat timed out"), "idle");
+                } else if (now - conn.lastPingMs >= heartbeatIntervalMs && conn.session.getBufferSize() == 0) {
+                    // With frames still buffered the connection is busy anyway, and a ping would only queue behind them
+                    conn.lastPingMs = now;
+                    Schedulers.boundedElastic().schedule(() -> ping(conn));
+                }
+            }
+        }
+    }
+
+    private void closeLater(Connection conn, CloseStatus status, String reason) {
+        conn.closeReason = reason;
+        Schedulers.boundedElastic().schedule(() -> close(conn, status, reason));
+    }
+
+    private void ping(Connection conn) {
+        try {
+            conn.session.sendMessage(new PingMessage());
+        } catch (SessionLimitExceededException e) {
+            conn.closeReason = "slow_consumer";
+        } catch (IOException | IllegalStateException e) {
+            log.debug("WebSocket ping failed: {}", e.getMessage());
+        }
+    }
+}
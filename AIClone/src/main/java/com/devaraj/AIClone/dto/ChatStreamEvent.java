@@ -0,0 +1,31 @@
+package com.devaraj.AIClone.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// One frame of a streamed chat reply: "start", "token", "done" or "error". "start" has the title when the turn created the conversation
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ChatStreamEvent(
+        String type,
+        Long conversationId,
+        String text,
+        String title,
+        Long timeToFirstTokenMs,
+        Long totalMs
+) {
+
+    public static ChatStreamEvent start(Long conversationId, String newTitle) {
+        return new ChatStreamEvent("start", conversationId, null, newTitle, null, null);
+    }
+
+    public static ChatStreamEvent token(String text) {
+        return new ChatStreamEvent("token", null, text, null, null, null);
+    }
+
+    public static ChatStreamEvent done(Long conversationId, long timeToFirstTokenMs, long totalMs) {
+        return new ChatStreamEvent("done", conversationId, null, null, timeToFirstTokenMs, totalMs);
+    }
+
+    public static ChatStreamEvent error(String text) {
+        return new ChatStreamEvent("error", null, text, null, null, null);
+    }
+}
@@ -0,0 +1,4 @@
+package com.devaraj.AIClone.dto;
+
+// One prior message as sent to the model; role is "user" or "assistant"
+public record ChatTurn(String role, String text) {}
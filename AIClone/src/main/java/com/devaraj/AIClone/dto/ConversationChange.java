@@ -0,0 +1,6 @@
+package com.devaraj.AIClone.dto;
+
+import java.time.LocalDateTime;
+
+// Row of the delta-sync query; deletedAt != null means the conversation was deleted
+public record ConversationChange(Long id, String title, LocalDateTime createdAt, LocalDateTime deletedAt, Long version) {}
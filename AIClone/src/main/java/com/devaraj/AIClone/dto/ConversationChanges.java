@@ -0,0 +1,12 @@
+package com.devaraj.AIClone.dto;
+
+import java.util.List;
+
+// Sidebar delta: pass `version` back as `since` next time; if hasMore, ask again straight away.
+// Recent changes may be repeated in the next response: apply them by id
+public record ConversationChanges(
+        List<ConversationResponse> changed,
+        List<Long> deleted,
+        long version,
+        boolean hasMore
+) {}
@@ -0,0 +1,32 @@
+package com.devaraj.AIClone.dto;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of a conversation export (NDJSON). A "conversation" line (id, title, createdAt) comes
+ * before the "message" lines (conversationId, role, content, createdAt) that belong to it.
+ * The ids only link lines within the file; an import assigns new ones.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ExportLine(
+        String type,
+        Long id,
+        Long conversationId,
+        String title,
+        String role,
+        String content,
+        LocalDateTime createdAt
+) {
+    public static final String CONVERSATION = "conversation";
+    public static final String MESSAGE = "message";
+
+    public static ExportLine conversation(ConversationResponse c) {
+        return new ExportLine(CONVERSATION, c.id(), null, c.title(), null, null, c.createdAt());
+    }
+
+    public static ExportLine message(Long conversationId, MessageView m) {
+        return new ExportLine(MESSAGE, null, conversationId, null, m.role(), m.content(), m.createdAt());
+    }
+}
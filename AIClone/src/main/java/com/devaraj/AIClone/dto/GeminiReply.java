@@ -0,0 +1,9 @@
+package com.devaraj.AIClone.dto;
+
+// What we read from one generateContent response (or one streamed chunk); every field may be null
+public record GeminiReply(String text, String finishReason, Usage usage) {
+
+    public static final GeminiReply EMPTY = new GeminiReply(null, null, null);
+
+    public record Usage(int promptTokens, int candidatesTokens, int totalTokens) {}
+}
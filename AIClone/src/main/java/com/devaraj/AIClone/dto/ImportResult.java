@@ -0,0 +1,3 @@
+package com.devaraj.AIClone.dto;
+
+public record ImportResult(long conversations, long messages) {}
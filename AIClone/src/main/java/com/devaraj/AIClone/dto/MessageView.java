@@ -0,0 +1,6 @@
+package com.devaraj.AIClone.dto;
+
+import java.time.LocalDateTime;
+
+// A message as the client sees it, without the conversation/user graph
+public record MessageView(Long id, String role, String content, LocalDateTime createdAt) {}
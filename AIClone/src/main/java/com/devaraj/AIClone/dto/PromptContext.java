@@ -0,0 +1,11 @@
+package com.devaraj.AIClone.dto;
+
+import java.util.List;
+
+// What the model sees for one turn: a rolling summary of older turns (may be null) plus recent turns, oldest first
+public record PromptContext(String summary, List<ChatTurn> turns) {
+
+    public static PromptContext of(String prompt) {
+        return new PromptContext(null, List.of(new ChatTurn("user", prompt)));
+    }
+}
@@ -0,0 +1,14 @@
+package com.devaraj.AIClone.dto;
+
+import java.time.LocalDateTime;
+
+// `snippet` is HTML-escaped text around the best match, with the matched words wrapped in <mark>
+public record SearchHit(
+        Long messageId,
+        Long conversationId,
+        String conversationTitle,
+        String role,
+        String snippet,
+        LocalDateTime createdAt,
+        float score
+) {}
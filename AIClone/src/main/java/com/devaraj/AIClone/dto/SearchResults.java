@@ -0,0 +1,10 @@
+package com.devaraj.AIClone.dto;
+
+import java.util.List;
+
+// One page of search hits, best first; `total` counts every match, hasMore means ask for page + 1
+public record SearchResults(
+        List<SearchHit> hits,
+        long total,
+        boolean hasMore
+) {}
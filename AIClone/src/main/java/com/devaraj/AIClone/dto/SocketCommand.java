@@ -0,0 +1,11 @@
+package com.devaraj.AIClone.dto;
+
+// A client message on /ws/chat: "auth" (token), "send" (requestId, conversationId or null for a new one, message),
+// "cancel" (requestId) or "ping"
+public record SocketCommand(
+        String type,
+        String token,
+        String requestId,
+        Long conversationId,
+        String message
+) {}
@@ -0,0 +1,44 @@
+package com.devaraj.AIClone.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A server message on /ws/chat. Replies are the ChatStreamEvent frames of /api/chat/stream tagged with
+ * the requestId of the "send" they answer, so several can be in flight on one connection. Besides those:
+ * "ready" once authenticated, "conversation" (a sidebar entry, sent when a turn created one), "pong",
+ * and "error" with an HTTP-style status.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SocketFrame(
+        String type,
+        String requestId,
+        Long conversationId,
+        String text,
+        String title,
+        Long timeToFirstTokenMs,
+        Long totalMs,
+        Integer status,
+        Long retryAfterMs
+) {
+
+    public static SocketFrame ready() {
+        return new SocketFrame("ready", null, null, null, null, null, null, null, null);
+    }
+
+    public static SocketFrame pong() {
+        return new SocketFrame("pong", null, null, null, null, null, null, null, null);
+    }
+
+    public static SocketFrame reply(String requestId, ChatStreamEvent e) {
+        return new SocketFrame(e.type(), requestId, e.conversationId(), e.text(), e.title(),
+                e.timeToFirstTokenMs(), e.totalMs(), null, null);
+    }
+
+    public static SocketFrame conversation(Long conversationId, String title) {
+        return new SocketFrame("conversation", null, conversationId, null, title, null, null, null, null);
+    }
+
+    public static SocketFrame error(String requestId, int status, String text, Long retryAfterMs) {
+        return new SocketFrame("error", requestId, null, text, null, null, null, status, retryAfterMs);
+    }
+}
@@ -2,16 +2,30 @@ package com.devaraj.AIClone.entity;
 
 import java.time.LocalDateTime;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.Getter;
 import lombok.Setter;
 
 @Entity
+@Table(indexes = {
+        // Sidebar pages
+        @Index(name = "idx_conversation_user_created_id", columnList = "user_id, created_at, id"),
+        // Delta sync
+        @Index(name = "idx_conversation_user_version", columnList = "user_id, version"),
+        // Purge backlog
+        @Index(name = "idx_conversation_deleted_purged", columnList = "deleted_at, purged_at")
+})
 @Getter @Setter
 public class Conversation {
 
@@ -21,14 +35,39 @@ public class Conversation {
 
     private String title; 
 
-    @ManyToOne
+    // Rolling summary of turns that no longer fit in the model's context window
+    @Column(length = 4000)
+    private String summary;
+
+    // Lazy: ownership checks only need the foreign key. Never serialized (it would expose the password hash).
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
     private User user;
 
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    // Time-ordered change stamp, bumped on create, rename and delete; clients sync with "changes since version"
+    private Long version;
+
+    // Tombstone: deleted conversations stay (hidden) so delta sync can report the deletion
+    private LocalDateTime deletedAt;
+
+    // Set by ConversationPurger once every message of a tombstoned conversation is gone
+    private LocalDateTime purgedAt;
+
+    // Set by ConversationArchiver while the messages live in an archive segment instead of the message table;
+    // archiveSegment/Offset/Length locate them (see ArchiveStore)
+    private LocalDateTime archivedAt;
+    private Integer archiveSegment;
+    private Long archiveOffset;
+    private Integer archiveLength;
+
     @PrePersist
 protected void onCreate() {
     createdAt = LocalDateTime.now();
+    if (version == null) {
+        version = TimeOrderedIdGenerator.next();
+    }
 }
 
 }
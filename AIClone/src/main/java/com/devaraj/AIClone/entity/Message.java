@@ -4,25 +4,30 @@ import java.time.LocalDateTime;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.Setter;
 
 @Entity
+// Serves history pages: equality on conversation, then a range scan in (created_at, id) order
+@Table(indexes = @Index(name = "idx_message_conversation_created_id", columnList = "conversation_id, created_at, id"))
 @Getter @Setter
 public class Message {
 
+    // Assigned before insert (unlike IDENTITY), which lets Hibernate and the write-behind writer batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     private String role;
 
-    @Column(length = 5000)
+    // mediumtext on MySQL (up to 16 MB), so long replies are not cut off. ddl-auto=update does not widen an
+    // existing column: ALTER TABLE message MODIFY content MEDIUMTEXT
+    @Column(length = 16_777_215)
     private String content;
 
     @ManyToOne
@@ -0,0 +1,68 @@
+package com.devaraj.AIClone.entity;
+
+import java.util.EnumSet;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+/**
+ * Client-side ids that increase with time: milliseconds since 2025-01-01 in the high bits, then
+ * the instance's node id (5 bits, chat.id.node) and a 7-bit per-millisecond sequence.
+ *
+ * The node bits keep two instances writing in the same millisecond from producing the same id; each
+ * instance must have its own node (see IdNodeConfig). The result stays below 2^53 for roughly 69
+ * years, so it survives a round trip through JavaScript numbers, and it is far above any id the old
+ * IDENTITY columns handed out.
+ */
+public class TimeOrderedIdGenerator implements BeforeExecutionGenerator {
+
+    private static final long EPOCH_MS = 1735689600000L; // 2025-01-01T00:00:00Z
+    public static final int NODE_BITS = 5;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final int SEQUENCE_BITS = 7;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static long node;
+    private static long lastMs = -1;
+    private static long sequence;
+
+    /** Set once at startup, before the first id is generated. */
+    public static synchronized void setNode(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE + ", was " + nodeId);
+        }
+        node = nodeId;
+    }
+
+    public static synchronized long next() {
+        // Never step backwards, even if the wall clock does
+        long now = Math.max(System.currentTimeMillis() - EPOCH_MS, lastMs);
+        if (now == lastMs) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                now = ++lastMs; // 128 ids in one millisecond: borrow the next one
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMs = now;
+        return (now << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+    }
+
+    /** The smallest id generated at or after this wall-clock time, on any node. */
+    public static long lowestAt(long epochMillis) {
+        return (epochMillis - EPOCH_MS) << (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return next();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
@@ -1,12 +1,81 @@
 package com.devaraj.AIClone.repository;
 
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.devaraj.AIClone.dto.ConversationChange;
+import com.devaraj.AIClone.dto.ConversationResponse;
 import com.devaraj.AIClone.entity.Conversation;
-import com.devaraj.AIClone.entity.User;
 
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
-    // For Sidebar: Get all chats for a user
-    java.util.List<Conversation> findAllByUserOrderByCreatedAtDesc(User user);
+    // Sidebar pages straight into the DTO, newest first; filters on the foreign key, never reads users
+    @Query("""
+            select new com.devaraj.AIClone.dto.ConversationResponse(c.id, c.title, c.createdAt)
+            from Conversation c
+            where c.user.id = :userId and c.deletedAt is null
+            order by c.createdAt desc, c.id desc
+            """)
+    java.util.List<ConversationResponse> findLatestPage(@Param("userId") Long userId, Limit limit);
+
+    // Keyset page strictly older than conversation :beforeId
+    @Query("""
+            select new com.devaraj.AIClone.dto.ConversationResponse(c.id, c.title, c.createdAt)
+            from Conversation c, Conversation b
+            where b.id = :beforeId and b.user.id = :userId
+              and c.user.id = :userId and c.deletedAt is null
+              and (c.createdAt < b.createdAt or (c.createdAt = b.createdAt and c.id < b.id))
+            order by c.createdAt desc, c.id desc
+            """)
+    java.util.List<ConversationResponse> findPageBefore(@Param("userId") Long userId,
+                                                        @Param("beforeId") Long beforeId, Limit limit);
+
+    // Delta sync: everything created, renamed or deleted after version :since, oldest change first
+    @Query("""
+            select new com.devaraj.AIClone.dto.ConversationChange(c.id, c.title, c.createdAt, c.deletedAt, c.version)
+            from Conversation c
+            where c.user.id = :userId and c.version > :since
+            order by c.version asc
+            """)
+    java.util.List<ConversationChange> findChangesSince(@Param("userId") Long userId,
+                                                        @Param("since") long since, Limit limit);
+
+    // Export: the user's conversations in id order, keyset paged by :afterId (0 for the first page)
+    @Query("""
+            select new com.devaraj.AIClone.dto.ConversationResponse(c.id, c.title, c.createdAt)
+            from Conversation c
+            where c.user.id = :userId and c.deletedAt is null and c.id > :afterId
+            order by c.id asc
+            """)
+    java.util.List<ConversationResponse> findExportPage(@Param("userId") Long userId,
+                                                        @Param("afterId") long afterId, Limit limit);
+
+    // Titles for search hits: only the user's conversations that still exist
+    @Query("""
+            select new com.devaraj.AIClone.dto.ConversationResponse(c.id, c.title, c.createdAt)
+            from Conversation c
+            where c.id in :ids and c.user.id = :userId and c.deletedAt is null
+            """)
+    java.util.List<ConversationResponse> findLiveByIds(@Param("userId") Long userId,
+                                                       @Param("ids") java.util.Collection<Long> ids);
+
+    // Rename with the ownership check in the same statement; returns 0 if not found or not owned
+    @Modifying
+    @Transactional
+    @Query("""
+            update Conversation c set c.title = :title, c.version = :version
+            where c.id = :id and c.user.id = :userId and c.deletedAt is null
+            """)
+    int rename(@Param("id") Long id, @Param("userId") Long userId,
+               @Param("title") String title, @Param("version") long version);
+
+    // For context assembly: store the rolling summary without loading the entity
+    @Modifying
+    @Transactional
+    @Query("update Conversation c set c.summary = :summary where c.id = :id")
+    void updateSummary(@Param("id") Long id, @Param("summary") String summary);
 }
@@ -1,8 +1,62 @@
 package com.devaraj.AIClone.repository;
+import com.devaraj.AIClone.dto.MessageView;
 import com.devaraj.AIClone.entity.Message;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
-    // For loading chat history: Get all messages for one conversation
-    java.util.List<Message> findByConversationIdOrderByCreatedAtAsc(Long conversationId);
-}
\ No newline at end of file
+    // For context assembly: only the most recent turns, newest first
+    java.util.List<Message> findByConversationIdOrderByCreatedAtDesc(Long conversationId, Limit limit);
+
+    // For context assembly across instances: ids are time-ordered, so the largest is the newest message
+    @Query("select max(m.id) from Message m where m.conversation.id = :conversationId")
+    Long findNewestId(@Param("conversationId") Long conversationId);
+
+    // History pages, newest first. Ownership is part of the predicate, so a foreign conversation is just empty.
+    @Query("""
+            select new com.devaraj.AIClone.dto.MessageView(m.id, m.role, m.content, m.createdAt)
+            from Message m
+            where m.conversation.id = :conversationId and m.conversation.user.id = :userId
+              and m.conversation.deletedAt is null
+            order by m.createdAt desc, m.id desc
+            """)
+    java.util.List<MessageView> findLatestPage(@Param("conversationId") Long conversationId,
+                                               @Param("userId") Long userId, Limit limit);
+
+    // Keyset page strictly older than message :beforeId in (createdAt, id) order
+    @Query("""
+            select new com.devaraj.AIClone.dto.MessageView(m.id, m.role, m.content, m.createdAt)
+            from Message m, Message b
+            where b.id = :beforeId and b.conversation.id = :conversationId
+              and m.conversation.id = :conversationId and m.conversation.user.id = :userId
+              and m.conversation.deletedAt is null
+              and (m.createdAt < b.createdAt or (m.createdAt = b.createdAt and m.id < b.id))
+            order by m.createdAt desc, m.id desc
+            """)
+    java.util.List<MessageView> findPageBefore(@Param("conversationId") Long conversationId,
+                                               @Param("userId") Long userId,
+                                               @Param("beforeId") Long beforeId, Limit limit);
+
+    // Export: a conversation's messages oldest first; the caller has already checked ownership
+    @Query("""
+            select new com.devaraj.AIClone.dto.MessageView(m.id, m.role, m.content, m.createdAt)
+            from Message m
+            where m.conversation.id = :conversationId
+            order by m.createdAt asc, m.id asc
+            """)
+    java.util.List<MessageView> findOldestPage(@Param("conversationId") Long conversationId, Limit limit);
+
+    // Keyset page strictly newer than message :afterId in (createdAt, id) order
+    @Query("""
+            select new com.devaraj.AIClone.dto.MessageView(m.id, m.role, m.content, m.createdAt)
+            from Message m, Message a
+            where a.id = :afterId and a.conversation.id = :conversationId
+              and m.conversation.id = :conversationId
+              and (m.createdAt > a.createdAt or (m.createdAt = a.createdAt and m.id > a.id))
+            order by m.createdAt asc, m.id asc
+            """)
+    java.util.List<MessageView> findPageAfter(@Param("conversationId") Long conversationId,
+                                              @Param("afterId") Long afterId, Limit limit);
+}
@@ -0,0 +1,12 @@
+package com.devaraj.AIClone.security;
+
+import java.security.Principal;
+
+// Principal set by JwtAuthenticationFilter; getName() stays the email so Authentication.getName() is unchanged
+public record AuthenticatedUser(Long id, String email) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -4,7 +4,9 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -13,13 +15,38 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import com.devaraj.AIClone.entity.User;
+import com.devaraj.AIClone.service.UserCache;
+
+@Slf4j
 @Component
-@RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private static final List<SimpleGrantedAuthority> ROLE_USER = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+    private static final WebAuthenticationDetailsSource DETAILS_SOURCE = new WebAuthenticationDetailsSource();
+
     private final JwtService jwtService;
+    private final UserCache userCache;
+
+    // Time spent authenticating a bearer token (not the rest of the chain), by outcome
+    private final Timer authenticated;
+    private final Timer rejected;
+    private final Timer failed;
+
+    public JwtAuthenticationFilter(JwtService jwtService, UserCache userCache, MeterRegistry meterRegistry) {
+        this.jwtService = jwtService;
+        this.userCache = userCache;
+        this.authenticated = timer(meterRegistry, "authenticated");
+        this.rejected = timer(meterRegistry, "rejected");
+        this.failed = timer(meterRegistry, "error");
+    }
+
+    private static Timer timer(MeterRegistry registry, String result) {
+        return Timer.builder("jwt.filter").tag("result", result).register(registry);
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -47,21 +74,32 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         final String jwt = authHeader.substring(7);
+        long start = System.nanoTime();
+        Timer outcome = authenticated;
         try {
-            final String userEmail = jwtService.extractEmail(jwt);
-
-            if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                if (jwtService.isTokenValid(jwt)) {
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                // One signature check per token lifetime; later requests hit the verified-token cache
+                VerifiedToken token = jwtService.verify(jwt);
+                Long userId = token.userId() != null
+                        ? token.userId()
+                        // Tokens issued before the "uid" claim: resolve once through the user cache
+                        : userCache.findByEmail(token.email()).map(User::getId).orElse(null);
+                if (token.email() != null && userId != null) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userEmail, null, Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
+                            new AuthenticatedUser(userId, token.email()), null, ROLE_USER
                     );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    authToken.setDetails(DETAILS_SOURCE.buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+                } else {
+                    outcome = rejected;
                 }
             }
         } catch (Exception e) {
-            System.err.println("JWT Error: " + e.getMessage());
+            // Expired or forged tokens are routine; debug level so a burst of them cannot fill the log
+            outcome = failed;
+            log.debug("JWT rejected: {}", e.getMessage());
         }
+        outcome.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
         filterChain.doFilter(request, response);
     }
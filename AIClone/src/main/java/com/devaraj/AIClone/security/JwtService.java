@@ -1,6 +1,8 @@
 package com.devaraj.AIClone.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -9,50 +11,130 @@ import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private static final String USER_ID_CLAIM = "uid";
 
-    @Value("${jwt.expiration-ms}")
-    private long expirationMs;
+    private final long expirationMs;
+    private final int cacheMaxEntries;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    // Derived once: the key and the (immutable, thread-safe) parser used to be rebuilt on every call
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+
+    // Tokens that already passed signature verification, keyed by SHA-256 of the token, dropped at "exp"
+    private final ConcurrentHashMap<String, VerifiedToken> verified = new ConcurrentHashMap<>();
+
+    public JwtService(
+            @Value("${jwt.secret}") String secret,
+            @Value("${jwt.expiration-ms}") long expirationMs,
+            @Value("${jwt.cache.max-entries:10000}") int cacheMaxEntries
+    ) {
+        this.expirationMs = expirationMs;
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
     }
 
-    public String generateToken(String email) {
+    // The user id rides along so authenticated requests never need to look the user up by email
+    public String generateToken(Long userId, String email) {
         return Jwts.builder()
                 .setSubject(email)
+                .claim(USER_ID_CLAIM, userId)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Verifies the token once and returns what the request needs from it.
+     * Repeat presentations of a token are answered from the cache until it expires.
+     *
+     * @throws JwtException if the token is malformed, forged or expired
+     */
+    public VerifiedToken verify(String token) {
+        long now = System.currentTimeMillis();
+        String key = digest(token);
+
+        VerifiedToken cached = verified.get(key);
+        if (cached != null) {
+            if (cached.expiresAtMs() > now) {
+                return cached;
+            }
+            verified.remove(key, cached);
+        }
+
+        Claims claims = parseClaims(token);
+        Date exp = claims.getExpiration();
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        VerifiedToken result = new VerifiedToken(
+                claims.getSubject(),
+                userId == null ? null : userId.longValue(),
+                exp == null ? Long.MAX_VALUE : exp.getTime()
+        );
+        if (exp != null) {
+            cache(key, result, now);
+        }
+        return result;
+    }
+
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
     public String extractEmail(String token) {
         return extractClaim(token, Claims::getSubject);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> resolver) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return resolver.apply(claims);
+        return resolver.apply(parseClaims(token));
     }
 
     public boolean isTokenValid(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token);
+            verify(token);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    private void cache(String key, VerifiedToken token, long now) {
+        if (verified.size() >= cacheMaxEntries) {
+            evictExpired(now);
+            if (verified.size() >= cacheMaxEntries) {
+                return; // Still full of live tokens: verify this one every time rather than grow
+            }
+        }
+        verified.put(key, token);
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, VerifiedToken>> it = verified.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().expiresAtMs() <= now) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
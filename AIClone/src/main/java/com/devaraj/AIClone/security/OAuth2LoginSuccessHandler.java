@@ -2,6 +2,7 @@ package com.devaraj.AIClone.security;
 
 import com.devaraj.AIClone.entity.User;
 import com.devaraj.AIClone.repository.UserRepository;
+import com.devaraj.AIClone.service.UserCache;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -22,6 +23,7 @@ public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHan
 
     private final JwtService jwtService;
     private final UserRepository userRepository;
+    private final UserCache userCache;
 
     @Value("${frontend.url}")
     private String frontendUrl;
@@ -50,10 +52,11 @@ public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHan
             
             user.setPassword(UUID.randomUUID().toString());
             userRepository.save(user);
+            userCache.invalidate(user);
         }
 
         // Generate Token
-        String token = jwtService.generateToken(user.getEmail());
+        String token = jwtService.generateToken(user.getId(), user.getEmail());
 
         //  Redirect to Frontend
         getRedirectStrategy().sendRedirect(request, response, frontendUrl + "/login?token=" + token);
@@ -0,0 +1,121 @@
+package com.devaraj.AIClone.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs BCrypt off the request threads, on a fixed pool of one thread per core.
+ *
+ * Hashing is CPU-bound by design, so more threads than cores would only make every hash slower.
+ * At most queue-capacity hashes wait for a thread; past that a sign-in gets 503 at once instead of
+ * holding a servlet thread while a burst of logins drains. Results complete on a virtual thread,
+ * so whatever the caller chains on (saving the user, issuing the token) never occupies a hashing
+ * thread.
+ */
+@Component
+public class PasswordHasher {
+
+    /** Outcome of a login check; upgradedHash is the password re-hashed with the current cost, when the stored one is weaker. */
+    public record Verification(boolean matches, String upgradedHash) {}
+
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService callbacks = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("password-hash-callback-", 0).factory());
+
+    private final Timer encodeTimer;
+    private final Timer verifyTimer;
+    private final Timer waitTimer;
+    private final Counter rejected;
+    private final Counter upgraded;
+
+    public PasswordHasher(
+            BCryptPasswordEncoder encoder,
+            MeterRegistry meterRegistry,
+            @Value("${password.hash.threads:0}") int threads,
+            @Value("${password.hash.queue-capacity:64}") int queueCapacity
+    ) {
+        this.encoder = encoder;
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hash-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("password.hash").tag("op", "encode").register(meterRegistry);
+        this.verifyTimer = Timer.builder("password.hash").tag("op", "verify").register(meterRegistry);
+        this.waitTimer = Timer.builder("password.hash.wait")
+                .description("Time a hash waited in the queue for a hashing thread")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("password.hash.rejected").register(meterRegistry);
+        this.upgraded = Counter.builder("password.hash.upgraded")
+                .description("Stored hashes re-hashed at login because their cost was below the configured one")
+                .register(meterRegistry);
+        meterRegistry.gauge("password.hash.queue.depth", pool, p -> p.getQueue().size());
+    }
+
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(encodeTimer, () -> encoder.encode(rawPassword));
+    }
+
+    // One task: the rehash (a second BCrypt) only runs for a correct password on a weaker hash
+    public CompletableFuture<Verification> verify(String rawPassword, String storedHash) {
+        return submit(verifyTimer, () -> {
+            if (storedHash == null || !encoder.matches(rawPassword, storedHash)) {
+                return new Verification(false, null);
+            }
+            if (!encoder.upgradeEncoding(storedHash)) {
+                return new Verification(true, null);
+            }
+            upgraded.increment();
+            return new Verification(true, encoder.encode(rawPassword));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+        callbacks.close();
+    }
+
+    // Throws 503 right away when every thread is busy and the queue is full
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                long start = System.nanoTime();
+                waitTimer.record(start - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    T value = task.get();
+                    callbacks.execute(() -> result.complete(value));
+                } catch (RuntimeException e) {
+                    callbacks.execute(() -> result.completeExceptionally(e));
+                } finally {
+                    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many sign-ins right now, please try again shortly");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,137 @@
+package com.devaraj.AIClone.security;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Per-caller rate limits, applied right after JWT authentication.
+ *
+ * Sending a chat message is limited per user; login, register and guest login (BCrypt and
+ * account lookups) are limited per client IP. Everything else passes untouched. A rejected
+ * request gets 429 with Retry-After (seconds) and the usual {"error": ...} body.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final TokenBucketLimiter limiter;
+    private final TokenBucketLimiter.Rule chatRule;
+    private final TokenBucketLimiter.Rule authRule;
+    private final MeterRegistry meterRegistry;
+
+    private final Thread sweeper;
+    private volatile boolean running = true;
+
+    public RateLimitFilter(
+            MeterRegistry meterRegistry,
+            @Value("${rate-limit.enabled:true}") boolean enabled,
+            @Value("${rate-limit.chat.capacity:20}") int chatCapacity,
+            @Value("${rate-limit.chat.per-minute:20}") int chatPerMinute,
+            @Value("${rate-limit.auth.capacity:10}") int authCapacity,
+            @Value("${rate-limit.auth.per-minute:10}") int authPerMinute,
+            @Value("${rate-limit.max-keys:1000000}") int maxKeys,
+            @Value("${rate-limit.sweep-interval-ms:60000}") long sweepIntervalMs
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.limiter = new TokenBucketLimiter(System::currentTimeMillis, maxKeys);
+        this.chatRule = new TokenBucketLimiter.Rule("chat", chatCapacity, chatPerMinute);
+        this.authRule = new TokenBucketLimiter.Rule("auth", authCapacity, authPerMinute);
+
+        meterRegistry.gauge("rate_limit.buckets", limiter, TokenBucketLimiter::size);
+        sweeper = enabled
+                ? Thread.ofPlatform().name("rate-limit-sweeper").daemon().start(() -> sweepLoop(sweepIntervalMs))
+                : null;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || rule(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        TokenBucketLimiter.Rule rule = rule(request);
+        String subject = rule == chatRule ? caller(request) : "ip:" + request.getRemoteAddr();
+        long retryAfterMs = limiter.tryAcquire(rule.name() + ":" + subject, rule);
+        if (limiter.overCapacity()) {
+            LockSupport.unpark(sweeper);
+        }
+        if (retryAfterMs == 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        meterRegistry.counter("rate_limit.rejected", "rule", rule.name()).increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(retryAfterMs + 999)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many requests, please slow down\"}");
+    }
+
+    // The chat limit for messages that do not arrive as HTTP requests (the WebSocket): 0 if allowed, else ms to wait
+    public long tryAcquireChat(Long userId) {
+        if (!enabled) {
+            return 0;
+        }
+        long retryAfterMs = limiter.tryAcquire(chatRule.name() + ":user:" + userId, chatRule);
+        if (limiter.overCapacity()) {
+            LockSupport.unpark(sweeper);
+        }
+        if (retryAfterMs > 0) {
+            meterRegistry.counter("rate_limit.rejected", "rule", chatRule.name()).increment();
+        }
+        return retryAfterMs;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(sweeper);
+    }
+
+    private TokenBucketLimiter.Rule rule(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod())) {
+            return null;
+        }
+        return switch (request.getServletPath()) {
+            case "/api/chat", "/api/chat/stream" -> chatRule;
+            case "/api/auth/login", "/api/auth/register", "/api/auth/guest" -> authRule;
+            default -> null;
+        };
+    }
+
+    // Signed-in callers by user id, anyone else by client IP
+    private static String caller(HttpServletRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof AuthenticatedUser user) {
+            return "user:" + user.id();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private void sweepLoop(long intervalMs) {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(intervalMs));
+            limiter.evictIdle();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.devaraj.AIClone.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.devaraj.AIClone.service.BoundedMaps;
+
+/**
+ * Token buckets keyed by an arbitrary string (e.g. "chat:user:42").
+ *
+ * Each bucket is a single AtomicLong packing the refill timestamp and the token count, updated
+ * with a CAS, so the hot path takes no locks; the ConcurrentHashMap around it is striped.
+ * A bucket that has been idle long enough to refill completely is indistinguishable from a
+ * new one, so {@link #evictIdle()} drops those without changing any decision.
+ */
+public final class TokenBucketLimiter {
+
+    public record Rule(String name, int capacity, int refillPerMinute) {
+
+        public Rule {
+            if (capacity < 1 || capacity > MAX_CAPACITY || refillPerMinute < 1) {
+                throw new IllegalArgumentException("Invalid rate limit rule " + name);
+            }
+        }
+    }
+
+    // Low 22 bits: tokens in thousandths; high 42 bits: last refill, in ms since the limiter started
+    private static final int TOKEN_BITS = 22;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final int MILLI = 1000;
+    static final int MAX_CAPACITY = (int) (TOKEN_MASK / MILLI);
+
+    // The bucket is its own state word: one object per key, one cache line to touch
+    private static final class Bucket extends AtomicLong {
+        private final Rule rule;
+
+        private Bucket(Rule rule, long state) {
+            super(state);
+            this.rule = rule;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier clockMs;
+    private final long epochMs;
+    private final int maxKeys;
+
+    public TokenBucketLimiter(LongSupplier clockMs, int maxKeys) {
+        this.clockMs = clockMs;
+        this.epochMs = clockMs.getAsLong();
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Takes one token from the bucket for {@code key}. Returns 0 if the call is allowed,
+     * otherwise how many milliseconds until a token will be available.
+     */
+    public long tryAcquire(String key, Rule rule) {
+        long now = clockMs.getAsLong() - epochMs;
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(rule, pack(now, (long) rule.capacity() * MILLI)));
+        }
+        while (true) {
+            long current = bucket.get();
+            long last = current >>> TOKEN_BITS;
+            long tokens = tokensAt(current, now, rule);
+            if (tokens < MILLI) {
+                long missing = MILLI - tokens;
+                return Math.max(1, (missing * 60 + rule.refillPerMinute() - 1) / rule.refillPerMinute());
+            }
+            if (bucket.compareAndSet(current, pack(Math.max(now, last), tokens - MILLI))) {
+                return 0;
+            }
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    public boolean overCapacity() {
+        return buckets.size() > maxKeys;
+    }
+
+    // Drops buckets that have refilled completely; at maxKeys (e.g. a flood of distinct client IPs) arbitrary ones too, see BoundedMaps
+    public void evictIdle() {
+        long now = clockMs.getAsLong() - epochMs;
+        BoundedMaps.evict(buckets, maxKeys, (key, b) -> tokensAt(b.get(), now, b.rule) == (long) b.rule.capacity() * MILLI);
+    }
+
+    // refillPerMinute tokens per 60 000 ms, counted in thousandths of a token
+    private static long tokensAt(long state, long now, Rule rule) {
+        long elapsed = Math.max(0, now - (state >>> TOKEN_BITS));
+        return Math.min((long) rule.capacity() * MILLI, (state & TOKEN_MASK) + elapsed * rule.refillPerMinute() / 60);
+    }
+
+    private static long pack(long timestampMs, long milliTokens) {
+        return (timestampMs << TOKEN_BITS) | milliTokens;
+    }
+}
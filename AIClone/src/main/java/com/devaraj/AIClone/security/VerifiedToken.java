@@ -0,0 +1,4 @@
+package com.devaraj.AIClone.security;
+
+// The parts of a verified JWT the app needs; userId is null for tokens issued before the "uid" claim existed
+public record VerifiedToken(String email, Long userId, long expiresAtMs) {}
@@ -0,0 +1,309 @@
+package com.devaraj.AIClone.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Decides which upstream LLM calls may run now.
+ *
+ * At most {@code limit} calls are in flight. Callers beyond that wait in per-caller FIFO
+ * queues that are served round-robin, so one user's burst only delays that user. A caller
+ * with max-queue-per-user waiters, or any caller once max-queue are waiting, is shed at once
+ * with 503 instead of queueing; so is a waiter not admitted within the wait timeout.
+ *
+ * With adaptive limits on, the limit follows observed latency (a gradient limiter): while
+ * recent calls are as fast as the long-term average it grows by about sqrt(limit), and when
+ * they slow down it shrinks in proportion, between min-limit and max-limit. The caller reports
+ * the latency of one upstream attempt (e.g. time to first chunk for a stream), so a long reply
+ * or a retry backoff does not read as congestion.
+ */
+@Service
+public class AdmissionController {
+
+    /**
+     * A call shed here rather than by upstream. Every model shares this controller, so another model
+     * would be shed the same way, and the model itself was never asked.
+     */
+    public static final class ShedException extends ResponseStatusException {
+        ShedException() {
+            super(HttpStatus.SERVICE_UNAVAILABLE, "The assistant is busy, please try again shortly");
+        }
+    }
+
+    /**
+     * One admitted call. Call {@link #complete(long)} on success with the upstream latency of the call
+     * (it feeds the limiter) or {@link #release()} otherwise.
+     */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public void complete(long latencyNanos) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(latencyNanos, true);
+            }
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                onRelease(0, false);
+            }
+        }
+    }
+
+    private record Waiter(CompletableFuture<Permit> future, long enqueuedAt) {}
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_WINDOW = 600;
+    private static final double SHORT_WINDOW = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final int maxQueuePerCaller;
+    private final long waitTimeoutMs;
+    private final boolean adaptive;
+
+    // Guarded by 'this'
+    private final LinkedHashMap<String, ArrayDeque<Waiter>> queues = new LinkedHashMap<>();
+    private int queued;
+    private int inFlight;
+    private double limit;
+    private double longRttNanos;
+    private double shortRttNanos;
+
+    private final Timer waitTimer;
+    private final Counter shedQueueFull;
+    private final Counter shedCallerQueueFull;
+    private final Counter shedTimeout;
+
+    public AdmissionController(
+            MeterRegistry meterRegistry,
+            @Value("${gemini.admission.adaptive:true}") boolean adaptive,
+            @Value("${gemini.admission.initial-limit:16}") int initialLimit,
+            @Value("${gemini.admission.min-limit:4}") int minLimit,
+            @Value("${gemini.max-concurrency:64}") int maxLimit,
+            @Value("${gemini.admission.max-queue:256}") int maxQueue,
+            @Value("${gemini.admission.max-queue-per-user:4}") int maxQueuePerCaller,
+            @Value("${gemini.acquire-timeout-ms:10000}") long waitTimeoutMs
+    ) {
+        this.adaptive = adaptive;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = adaptive ? Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit)) : this.maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxQueuePerCaller = maxQueuePerCaller;
+        this.waitTimeoutMs = waitTimeoutMs;
+
+        Gauge.builder("llm.admission.limit", this, AdmissionController::limit).register(meterRegistry);
+        Gauge.builder("llm.admission.in_flight", this, AdmissionController::inFlight).register(meterRegistry);
+        Gauge.builder("llm.admission.queue.depth", this, AdmissionController::queued).register(meterRegistry);
+        this.waitTimer = Timer.builder("llm.admission.wait")
+                .description("Time from arrival to admission, for calls that were admitted")
+                .register(meterRegistry);
+        this.shedQueueFull = shed(meterRegistry, "queue_full");
+        this.shedCallerQueueFull = shed(meterRegistry, "user_queue_full");
+        this.shedTimeout = shed(meterRegistry, "timeout");
+    }
+
+    // A plain concurrency cap with a deep queue and no metrics, for tests and tools that build GeminiService by hand
+    static AdmissionController fixed(int limit, long waitTimeoutMs) {
+        return new AdmissionController(new SimpleMeterRegistry(), false, limit, 1, limit, 1024, 1024, waitTimeoutMs);
+    }
+
+    private static Counter shed(MeterRegistry registry, String reason) {
+        return Counter.builder("llm.admission.shed").tag("reason", reason).register(registry);
+    }
+
+    public int maxLimit() {
+        return maxLimit;
+    }
+
+    // Blocks the calling (possibly virtual) thread until admitted; throws 503 if shed
+    public Permit acquire(String caller) {
+        CompletableFuture<Permit> future = enqueue(caller);
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(caller, future);
+            shedTimeout.increment();
+            throw busy();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(caller, future);
+            throw busy();
+        } catch (ExecutionException e) {
+            throw busy();
+        }
+    }
+
+    // Non-blocking variant for streams: cancelling the Mono gives up the place in the queue (or the permit)
+    public Mono<Permit> admit(String caller) {
+        return Mono.defer(() -> {
+            CompletableFuture<Permit> future;
+            try {
+                future = enqueue(caller);
+            } catch (ShedException e) {
+                return Mono.error(e);
+            }
+            return Mono.fromFuture(future, true)
+                    .timeout(Duration.ofMillis(waitTimeoutMs), Mono.defer(() -> {
+                        shedTimeout.increment();
+                        return Mono.error(busy());
+                    }))
+                    .doOnCancel(() -> abandon(caller, future))
+                    .doOnError(e -> abandon(caller, future));
+        });
+    }
+
+    private CompletableFuture<Permit> enqueue(String caller) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (inFlight < (int) limit && queued == 0) {
+                inFlight++;
+                waitTimer.record(0, TimeUnit.NANOSECONDS);
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            if (queued >= maxQueue) {
+                shedQueueFull.increment();
+                throw busy();
+            }
+            ArrayDeque<Waiter> own = queues.get(caller);
+            if (own != null && own.size() >= maxQueuePerCaller) {
+                shedCallerQueueFull.increment();
+                throw busy();
+            }
+            if (own == null) {
+                own = new ArrayDeque<>();
+                queues.put(caller, own);
+            }
+            CompletableFuture<Permit> future = new CompletableFuture<>();
+            own.addLast(new Waiter(future, now));
+            queued++;
+            return future;
+        }
+    }
+
+    // The waiter gave up: leave the queue, or hand the permit back if it was admitted in the meantime
+    private void abandon(String caller, CompletableFuture<Permit> future) {
+        if (future.cancel(false)) {
+            synchronized (this) {
+                ArrayDeque<Waiter> own = queues.get(caller);
+                if (own != null && own.removeIf(w -> w.future() == future)) {
+                    queued--;
+                    if (own.isEmpty()) {
+                        queues.remove(caller);
+                    }
+                }
+            }
+        } else if (!future.isCompletedExceptionally()) {
+            future.join().release();
+        }
+    }
+
+    private void onRelease(long latencyNanos, boolean sample) {
+        List<Waiter> admitted;
+        synchronized (this) {
+            if (sample && adaptive) {
+                updateLimit(latencyNanos);
+            }
+            inFlight--;
+            admitted = dispatch();
+        }
+        // Completing a future runs the waiter's continuation (e.g. a stream subscribing upstream), so not under the lock
+        for (Waiter waiter : admitted) {
+            if (waiter.future().complete(new Permit())) {
+                waitTimer.record(System.nanoTime() - waiter.enqueuedAt(), TimeUnit.NANOSECONDS);
+            } else {
+                onRelease(0, false); // cancelled just before we got to it
+            }
+        }
+    }
+
+    // Takes waiters while there is room, one from each caller in turn, and counts them as in flight
+    private List<Waiter> dispatch() {
+        List<Waiter> admitted = List.of();
+        while (inFlight < (int) limit && queued > 0) {
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> it = queues.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Waiter>> next = it.next();
+            String caller = next.getKey();
+            ArrayDeque<Waiter> own = next.getValue();
+            // Move this caller to the back of the rotation, or drop it if it has nobody left waiting
+            it.remove();
+            Waiter waiter = own.pollFirst();
+            if (!own.isEmpty()) {
+                queues.put(caller, own);
+            }
+            queued--;
+            inFlight++;
+            if (admitted.isEmpty()) {
+                admitted = new ArrayList<>(2);
+            }
+            admitted.add(waiter);
+        }
+        return admitted;
+    }
+
+    // Gradient limiter: compare recent latency with the long-term average
+    synchronized void updateLimit(long rttNanos) {
+        if (rttNanos <= 0) {
+            return;
+        }
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+            shortRttNanos += (rttNanos - shortRttNanos) / SHORT_WINDOW;
+            // When latency recovers after a long slow period, pull the baseline down faster than the EWMA would
+            if (longRttNanos / shortRttNanos > 2) {
+                longRttNanos *= 0.95;
+            }
+        }
+        // Only a limit that is actually being used says anything about upstream capacity
+        if (inFlight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    public synchronized double limit() {
+        return limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queued() {
+        return queued;
+    }
+
+    private static ShedException busy() {
+        return new ShedException();
+    }
+}
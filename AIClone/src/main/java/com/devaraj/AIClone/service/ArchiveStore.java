@@ -0,0 +1,229 @@
+package com.devaraj.AIClone.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import com.devaraj.AIClone.dto.MessageView;
+
+/**
+ * Append-only segment files holding archived conversations, one compressed record each.
+ *
+ * A record is [int raw length][int CRC-32 of the raw bytes][deflated messages]. Writers append
+ * to the newest segment (a new one is started past segmentMaxBytes) and force it to disk before
+ * returning the record's {@link Location}; the caller keeps that as the offset index. Readers map
+ * segments read-only and inflate the record in place, so a cold read is one page-cache lookup
+ * rather than a file open and seek.
+ */
+public final class ArchiveStore implements AutoCloseable {
+
+    /** Where one archived conversation lives. */
+    public record Location(int segment, long offset, int length) {}
+
+    private static final int HEADER = 8;
+
+    private final Path dir;
+    private final long segmentMaxBytes;
+
+    // Read-only mappings; remapped when a read falls past the end of what was mapped
+    private final ConcurrentHashMap<Integer, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+
+    private int segment;
+    private FileChannel appender;
+
+    public ArchiveStore(Path dir, long segmentMaxBytes) {
+        this.dir = dir;
+        this.segmentMaxBytes = segmentMaxBytes;
+        // The directory is created by the first append
+        if (!Files.isDirectory(dir)) {
+            segment = 1;
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith("segment-") && n.endsWith(".arc"))
+                    .mapToInt(n -> Integer.parseInt(n.substring(8, n.length() - 4)))
+                    .max().orElse(1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // raw is what encode() returns; the record on disk is its compressed form
+    public synchronized Location append(byte[] raw) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(raw.length / 3 + HEADER);
+        DataOutputStream header = new DataOutputStream(record);
+        header.writeInt(raw.length);
+        header.writeInt((int) crc.getValue());
+        try (DeflaterOutputStream out = new DeflaterOutputStream(record, new Deflater(Deflater.DEFAULT_COMPRESSION))) {
+            out.write(raw);
+        }
+        byte[] bytes = record.toByteArray();
+
+        FileChannel channel = appender();
+        if (channel.size() > 0 && channel.size() + bytes.length > segmentMaxBytes) {
+            channel.close();
+            segment++;
+            appender = null;
+            channel = appender();
+        }
+        long offset = channel.size();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        return new Location(segment, offset, bytes.length);
+    }
+
+    public List<MessageView> read(Location location) throws IOException {
+        ByteBuffer record = map(location).slice((int) location.offset(), location.length());
+        int rawLength = record.getInt();
+        int expectedCrc = record.getInt();
+
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(record);
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, rawLength - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != rawLength) {
+                throw new IOException("Archive record at " + location + " is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Archive record at " + location + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Archive record at " + location + " failed its checksum");
+        }
+        return decode(raw);
+    }
+
+    // Bytes on disk across all segments
+    public long sizeOnDisk() {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.mapToLong(p -> p.toFile().length()).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (appender != null) {
+            appender.close();
+            appender = null;
+        }
+        mappings.clear();
+    }
+
+    private FileChannel appender() throws IOException {
+        if (appender == null) {
+            Files.createDirectories(dir);
+            appender = FileChannel.open(file(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return appender;
+    }
+
+    private MappedByteBuffer map(Location location) throws IOException {
+        long end = location.offset() + location.length();
+        MappedByteBuffer mapped = mappings.get(location.segment());
+        if (mapped != null && mapped.capacity() >= end) {
+            return mapped;
+        }
+        // The segment has grown since it was mapped (or was never mapped): map all of it again
+        try (FileChannel channel = FileChannel.open(file(location.segment()), StandardOpenOption.READ)) {
+            if (channel.size() < end) {
+                throw new IOException("Archive record at " + location + " is past the end of its segment");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mappings.put(location.segment(), mapped);
+        return mapped;
+    }
+
+    private Path file(int segment) {
+        return dir.resolve("segment-%06d.arc".formatted(segment));
+    }
+
+    // Marks the current encoding; records written before it start with a message count (never negative) and
+    // carry createdAt as epoch milliseconds, which decode() still reads
+    private static final int FORMAT_NANOS = -1;
+
+    // createdAt has no zone; it is encoded as if UTC, as epoch seconds plus nanos, so it decodes back to the same
+    // LocalDateTime (it is the first key of the history cursors). [FORMAT_NANOS][count] then per message
+    // [id][role][createdAt epoch s][createdAt nanos][content length][content UTF-8]; content has no size limit
+    public static byte[] encode(List<MessageView> messages) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FORMAT_NANOS);
+        out.writeInt(messages.size());
+        for (MessageView m : messages) {
+            byte[] content = m.content() == null ? new byte[0] : m.content().getBytes(StandardCharsets.UTF_8);
+            out.writeLong(m.id());
+            out.writeUTF(m.role() == null ? "" : m.role());
+            out.writeLong(m.createdAt().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(m.createdAt().getNano());
+            out.writeInt(content.length);
+            out.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<MessageView> decode(byte[] raw) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        int first = in.readInt();
+        boolean nanos = first == FORMAT_NANOS;
+        int count = nanos ? in.readInt() : first;
+        List<MessageView> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            String role = in.readUTF();
+            LocalDateTime createdAt = nanos
+                    ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC)
+                    : LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC);
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+            messages.add(new MessageView(id, role, new String(content, StandardCharsets.UTF_8), createdAt));
+        }
+        return messages;
+    }
+}
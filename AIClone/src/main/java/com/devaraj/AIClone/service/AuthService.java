@@ -4,10 +4,13 @@ import com.devaraj.AIClone.dto.*;
 import com.devaraj.AIClone.entity.User;
 import com.devaraj.AIClone.repository.UserRepository;
 import com.devaraj.AIClone.security.JwtService;
+import com.devaraj.AIClone.security.PasswordHasher;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
-import java.util.UUID;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -15,64 +18,74 @@ public class AuthService {
 
     private final UserRepository repo;
     private final JwtService jwtService;
-    private final BCryptPasswordEncoder encoder;
+    private final PasswordHasher passwordHasher;
+    private final UserCache userCache;
+    private final GuestSessions guestSessions;
+    private final ConversationTransfer conversationTransfer;
+    private final TransactionTemplate tx;
 
-    // 1. REGISTER
-    public AuthResponse register(AuthRequest req) {
+    // 1. REGISTER (a guest registering with its token keeps the session's conversations)
+    public CompletableFuture<AuthResponse> register(AuthRequest req, String authorizationHeader) {
         if (repo.findByEmail(req.email()).isPresent()) {
             throw new RuntimeException("Email already registered");
         }
+        Long guestId = guestId(authorizationHeader);
+
+        return passwordHasher.encode(req.password()).thenApply(hash -> {
+            User u = new User();
+            u.setUsername(req.username());
+            u.setEmail(req.email());
+            u.setPassword(hash);
 
-        User u = new User();
-        u.setUsername(req.username());
-        u.setEmail(req.email());
-        u.setPassword(encoder.encode(req.password()));
-        repo.save(u);
+            // The account and the guest's conversations commit together; the guest session ends only once they have
+            tx.executeWithoutResult(status -> {
+                repo.save(u);
+                if (guestId != null) {
+                    conversationTransfer.importLines(u.getId(), guestSessions.snapshot(guestId));
+                }
+            });
+            userCache.invalidate(u);
+            if (guestId != null) {
+                guestSessions.promote(guestId);
+            }
 
-        return new AuthResponse(u.getUsername(), u.getEmail(), u.getPassword());
+            return new AuthResponse(u.getUsername(), u.getEmail(), u.getPassword());
+        });
     }
 
-    // 2. LOGIN
-    public LoginResponse login(AuthRequest req) {
+    // 2. LOGIN (a hash weaker than password.bcrypt.strength is replaced on the way)
+    public CompletableFuture<LoginResponse> login(AuthRequest req) {
         User u = repo.findByEmail(req.email())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        if (!encoder.matches(req.password(), u.getPassword())) {
-            throw new RuntimeException("Invalid credentials");
-        }
+        return passwordHasher.verify(req.password(), u.getPassword()).thenApply(result -> {
+            if (!result.matches()) {
+                throw new RuntimeException("Invalid credentials");
+            }
+            if (result.upgradedHash() != null) {
+                u.setPassword(result.upgradedHash());
+                repo.save(u);
+                userCache.invalidate(u);
+            }
 
-        String token = jwtService.generateToken(u.getEmail());
-        return new LoginResponse(token);
+            String token = jwtService.generateToken(u.getId(), u.getEmail());
+            return new LoginResponse(token);
+        });
     }
 
-  // 3. NEW: GUEST LOGIN (FIXED)
+    // 3. GUEST LOGIN: an in-memory session (GuestSessions), no database row
     public LoginResponse guestLogin() {
-        // 1. Check if the "Guest User" already exists in the DB
-        var existingGuest = repo.findByUsername("Guest User");
-        
-        if (existingGuest.isPresent()) {
-            // 2. If exists, just log them in!
-            User u = existingGuest.get();
-            String token = jwtService.generateToken(u.getEmail());
-            return new LoginResponse(token);
-        }
-
-        // 3. If NOT exists, create it (This only happens once)
-        String uniqueId = UUID.randomUUID().toString();
-        String guestEmail = "guest_" + uniqueId.substring(0, 8) + "@temp.com";
-        
-        User u = new User();
-        u.setUsername("Guest User"); // This name is fixed
-        u.setEmail(guestEmail);
-        u.setPassword(encoder.encode(uniqueId)); 
-        repo.save(u);
-
-        String token = jwtService.generateToken(u.getEmail());
+        long guestId = guestSessions.create();
+        String token = jwtService.generateToken(guestId, "guest-" + Long.toHexString(-guestId) + "@guest.invalid");
         return new LoginResponse(token);
     }
+
     // 4. GET PROFILE
-    public UserProfileResponse getUserProfile(String email) {
-        User u = repo.findByEmail(email)
+    public UserProfileResponse getUserProfile(Long userId) {
+        if (GuestSessions.isGuest(userId)) {
+            return new UserProfileResponse(userId, "Guest User", null);
+        }
+        User u = userCache.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         return new UserProfileResponse(
@@ -81,4 +94,17 @@ public class AuthService {
                 u.getEmail()
         );
     }
-}
\ No newline at end of file
+
+    // The guest id in a valid guest token, otherwise null (no header, a real user's token, expired...)
+    private Long guestId(String authorizationHeader) {
+        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+            return null;
+        }
+        try {
+            Long userId = jwtService.verify(authorizationHeader.substring(7)).userId();
+            return GuestSessions.isGuest(userId) ? userId : null;
+        } catch (JwtException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.devaraj.AIClone.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * Eviction for the in-memory maps with a size cap (PromptCache, UserCache, TokenBucketLimiter).
+ *
+ * Stale entries go first. If the map is still at its cap, arbitrary live ones go until it is at 90%
+ * of it: freeing a tenth at once means one pass per cap/10 inserts rather than a scan on every insert
+ * once full, and arbitrary order needs no LRU bookkeeping on the hot path. A dropped entry only costs
+ * a cache miss, or for a rate limit a fresh full bucket, which errs towards letting requests through.
+ */
+public final class BoundedMaps {
+
+    private BoundedMaps() {
+    }
+
+    public static <K, V> void evict(Map<K, V> map, int maxEntries, BiPredicate<K, V> stale) {
+        evict(map, maxEntries, stale, (k, v) -> {});
+    }
+
+    // onRemove sees every dropped entry, e.g. to keep a secondary index in step
+    public static <K, V> void evict(Map<K, V> map, int maxEntries, BiPredicate<K, V> stale, BiConsumer<K, V> onRemove) {
+        Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, V> e = it.next();
+            if (stale.test(e.getKey(), e.getValue())) {
+                onRemove.accept(e.getKey(), e.getValue());
+                it.remove();
+            }
+        }
+        if (map.size() < maxEntries) {
+            return;
+        }
+        int toDrop = map.size() - maxEntries + Math.max(1, maxEntries / 10);
+        it = map.entrySet().iterator();
+        while (toDrop-- > 0 && it.hasNext()) {
+            Map.Entry<K, V> e = it.next();
+            onRemove.accept(e.getKey(), e.getValue());
+            it.remove();
+        }
+    }
+}
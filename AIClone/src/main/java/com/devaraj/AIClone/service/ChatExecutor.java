@@ -0,0 +1,51 @@
+package com.devaraj.AIClone.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Decides where the chat pipeline runs.
+ *
+ * "blocking" (default) runs it on the servlet thread, exactly as before.
+ * "async" hands it to a virtual thread and releases the servlet thread right away,
+ * so the number of in-flight chats is bounded by the Gemini permits and the DB pool
+ * rather than by Tomcat's worker pool.
+ */
+@Component
+public class ChatExecutor {
+
+    private final boolean async;
+    private final ExecutorService executor;
+
+    public ChatExecutor(@Value("${chat.execution-mode:blocking}") String mode) {
+        this.async = "async".equalsIgnoreCase(mode);
+        this.executor = async
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chat-", 0).factory())
+                : null;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (!async) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.close();
+        }
+    }
+}
@@ -1,90 +1,363 @@
 package com.devaraj.AIClone.service;
 
+import com.devaraj.AIClone.dto.ChatStreamEvent;
+import com.devaraj.AIClone.dto.ConversationChange;
+import com.devaraj.AIClone.dto.ConversationChanges;
 import com.devaraj.AIClone.dto.ConversationResponse;
+import com.devaraj.AIClone.dto.MessageView;
+import com.devaraj.AIClone.dto.PromptContext;
+import com.devaraj.AIClone.dto.SearchHit;
+import com.devaraj.AIClone.dto.SearchResults;
 import com.devaraj.AIClone.entity.Conversation;
 import com.devaraj.AIClone.entity.Message;
-import com.devaraj.AIClone.entity.User;
+import com.devaraj.AIClone.entity.TimeOrderedIdGenerator;
 import com.devaraj.AIClone.repository.ConversationRepository;
 import com.devaraj.AIClone.repository.MessageRepository;
 import com.devaraj.AIClone.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class ChatService {
-    private final GeminiService geminiService;
+    private final LlmProvider llm;
     private final UserRepository userRepo;
     private final ConversationRepository convoRepo;
     private final MessageRepository msgRepo;
+    private final ContextAssembler contextAssembler;
+    private final MessageWriter messageWriter;
+    private final ConversationPurger purger;
+    private final PromptCache promptCache;
+    private final MeterRegistry meterRegistry;
+    private final SearchIndex searchIndex;
+    private final ConversationArchiver archiver;
+    private final GuestSessions guests;
+    private final HistoryVersions versions;
+    private final TransactionTemplate tx;
 
-    // 1. Get List of all chats for sidebar
-    public List<ConversationResponse> getHistory(String email) {
-        User user = userRepo.findByEmail(email).orElseThrow();
-        return convoRepo.findAllByUserOrderByCreatedAtDesc(user).stream()
-                .map(c -> new ConversationResponse(c.getId(), c.getTitle(), c.getCreatedAt()))
-                .collect(java.util.stream.Collectors.toList());
+    @Value("${chat.history.max-page-size:200}")
+    private int maxPageSize;
+
+    // Longer than any transaction that stamps a conversation version (see getHistoryChanges)
+    @Value("${chat.history.changes.settle-ms:5000}")
+    private long changesSettleMs;
+
+    @Value("${chat.search.max-page-size:50}")
+    private int maxSearchPageSize;
+
+    // Deep offsets cost the index a top-(offset + size) collection per request
+    @Value("${chat.search.max-results:1000}")
+    private int maxSearchResults;
+
+    private static final Comparator<MessageView> NEWEST_FIRST =
+            Comparator.comparing(MessageView::createdAt).thenComparing(MessageView::id).reversed();
+
+    // 1. Get one page of chats for the sidebar, newest first: the latest page, or the page before conversation `beforeId`
+    public List<ConversationResponse> getHistory(Long userId, Long beforeId, int limit) {
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        if (GuestSessions.isGuest(userId)) {
+            return guests.history(userId, beforeId, size);
+        }
+        return beforeId == null
+                ? convoRepo.findLatestPage(userId, Limit.of(size))
+                : convoRepo.findPageBefore(userId, beforeId, Limit.of(size));
     }
 
-    // 2. Get all messages for a specific chat
-    public List<Message> getConversationMessages(Long convoId) {
-        return msgRepo.findByConversationIdOrderByCreatedAtAsc(convoId);
+    // 1b. Sidebar delta: chats created, renamed or deleted since `since` (a version from a previous call, or 0)
+    public ConversationChanges getHistoryChanges(Long userId, long since, int limit) {
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        if (GuestSessions.isGuest(userId)) {
+            // A guest's list is small and in memory: always the whole of it, at version 0
+            return new ConversationChanges(guests.history(userId, null, Integer.MAX_VALUE), List.of(), 0, false);
+        }
+        List<ConversationChange> rows = convoRepo.findChangesSince(userId, since, Limit.of(size));
+
+        // Versions are stamped before their transaction commits, so a lower one can still become visible after a
+        // higher one was read. The returned version only moves past changes older than settle-ms; newer ones are
+        // sent now and again next time (clients apply changes by id, so a repeat is harmless).
+        long settled = TimeOrderedIdGenerator.lowestAt(System.currentTimeMillis() - changesSettleMs);
+
+        List<ConversationResponse> changed = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        long version = since;
+        for (ConversationChange row : rows) {
+            if (row.deletedAt() != null) {
+                deleted.add(row.id());
+            } else {
+                changed.add(new ConversationResponse(row.id(), row.title(), row.createdAt()));
+            }
+            if (row.version() <= settled) {
+                version = row.version();
+            }
+        }
+        // A full page that is all unsettled would come back unchanged: the rest follows once it settles
+        return new ConversationChanges(changed, deleted, version, rows.size() == size && version > since);
     }
 
-    // 3. Chat Logic
-    public String chat(String message, String email, Long conversationId) {
-        User user = userRepo.findByEmail(email).orElseThrow();
-        
-        Conversation convo;
-        if (conversationId != null) {
-            convo = convoRepo.findById(conversationId).orElseThrow();
-        } else {
-            convo = new Conversation();
-            convo.setUser(user);
-            convo.setTitle(message.length() > 30 ? message.substring(0, 30) + "..." : message);
-            convo = convoRepo.save(convo);
+    // 2. Get one page of a chat's messages, oldest first: the latest page, or the page before message `beforeId`
+    public List<MessageView> getConversationMessages(Long convoId, Long userId, Long beforeId, int limit) {
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        if (GuestSessions.isGuest(userId)) {
+            return guests.messages(userId, convoId, beforeId, size);
+        }
+        // An archived conversation is moved back before any page is read; otherwise this is one primary-key lookup
+        archiver.rehydrate(convoId, userId);
+        if (beforeId != null) {
+            return oldestFirst(msgRepo.findPageBefore(convoId, userId, beforeId, Limit.of(size)));
+        }
+
+        // Write-behind: the newest messages may still be queued (snapshot them before reading the table)
+        List<Message> pending = messageWriter.pending(convoId);
+        List<MessageView> page = msgRepo.findLatestPage(convoId, userId, Limit.of(size));
+        if (pending.isEmpty() || !pending.get(0).getConversation().getUser().getId().equals(userId)) {
+            return oldestFirst(page);
+        }
+
+        Set<Long> seen = new HashSet<>();
+        List<MessageView> merged = new ArrayList<>(page);
+        page.forEach(m -> seen.add(m.id()));
+        for (Message m : pending) {
+            if (seen.add(m.getId())) {
+                merged.add(new MessageView(m.getId(), m.getRole(), m.getContent(), m.getCreatedAt()));
+            }
         }
+        merged.sort(NEWEST_FIRST);
+        return oldestFirst(merged.subList(0, Math.min(size, merged.size())));
+    }
 
-        msgRepo.save(createMsg("user", message, convo));
-        String reply = geminiService.generateText(message);
-        msgRepo.save(createMsg("assistant", reply, convo));
+    // 2b. Full-text search over the user's messages, best match first
+    public SearchResults search(Long userId, String query, int page, int size) {
+        if (query == null || query.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query is required");
+        }
+        if (GuestSessions.isGuest(userId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Register to search your conversations");
+        }
+        int pageSize = Math.max(1, Math.min(size, maxSearchPageSize));
+        int offset = Math.max(0, page) * pageSize;
+        if (offset >= maxSearchResults) {
+            return new SearchResults(List.of(), 0, false);
+        }
+        SearchIndex.Page found = searchIndex.search(userId, query, offset, Math.min(pageSize, maxSearchResults - offset));
+        if (found.hits().isEmpty()) {
+            return new SearchResults(List.of(), found.total(), false);
+        }
+
+        // Titles are read live, so renames show at once; hits in conversations deleted since indexing are dropped
+        Map<Long, String> titles = new HashMap<>();
+        Set<Long> ids = new HashSet<>();
+        found.hits().forEach(h -> ids.add(h.conversationId()));
+        convoRepo.findLiveByIds(userId, ids).forEach(c -> titles.put(c.id(), c.title()));
+
+        List<SearchHit> hits = new ArrayList<>(found.hits().size());
+        for (SearchIndex.Hit h : found.hits()) {
+            String title = titles.get(h.conversationId());
+            if (title != null) {
+                hits.add(new SearchHit(h.messageId(), h.conversationId(), title, h.role(), h.snippet(),
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(h.createdAtMs()), ZoneOffset.UTC), h.score()));
+            }
+        }
+        boolean hasMore = offset + found.hits().size() < Math.min(found.total(), maxSearchResults);
+        return new SearchResults(hits, found.total(), hasMore);
+    }
+
+    // 3. Chat Logic
+    public String chat(String message, Long userId, Long conversationId) {
+        return chat(message, userId, conversationId, true);
+    }
+
+    // useCache=false skips the prompt cache for this request (it is only consulted when chat.cache.enabled)
+    public String chat(String message, Long userId, Long conversationId, boolean useCache) {
+        Turn turn = startTurn(message, userId, conversationId);
+        String reply = stage("llm", () -> promptCache.generateText(turn.context(), "user:" + userId, useCache));
+        stage("assistant_message", () -> saveReply(userId, turn, reply));
 
         return reply;
     }
 
+    // 3b. Streaming Chat: relays tokens as they arrive and stores the full reply once the stream completes
+    public Flux<ChatStreamEvent> streamChat(String message, Long userId, Long conversationId) {
+        long startedAt = System.nanoTime();
+        Turn turn = startTurn(message, userId, conversationId);
+        Long convoId = turn.conversationId();
+
+        StringBuilder reply = new StringBuilder();
+        AtomicLong firstTokenAt = new AtomicLong();
+
+        Flux<ChatStreamEvent> tokens = llm.streamText(turn.context(), "user:" + userId)
+                .doOnNext(text -> {
+                    firstTokenAt.compareAndSet(0, System.nanoTime());
+                    reply.append(text);
+                })
+                .map(ChatStreamEvent::token);
+
+        // Persisting is blocking JPA work, so it must not run on the HTTP client's event loop
+        Mono<ChatStreamEvent> done = Mono.fromCallable(() -> {
+                    saveReply(userId, turn, reply.toString());
+                    long finishedAt = System.nanoTime();
+                    long firstToken = firstTokenAt.get() == 0 ? finishedAt : firstTokenAt.get();
+                    return ChatStreamEvent.done(convoId, toMillis(firstToken - startedAt), toMillis(finishedAt - startedAt));
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+
+        return Flux.just(ChatStreamEvent.start(convoId, turn.title()))
+                .concatWith(tokens)
+                .concatWith(done)
+                .onErrorResume(e -> Mono.just(ChatStreamEvent.error("Sorry, the reply could not be completed.")));
+    }
+
+    // convo is null for guests, whose conversations live in GuestSessions; title is set when the turn created the conversation
+    private record Turn(Long conversationId, String title, Conversation convo, PromptContext context) {}
+
+    // Resolves (or creates) the conversation, assembles the prompt from prior turns and stores the user's message
+    private Turn startTurn(String message, Long userId, Long conversationId) {
+        if (GuestSessions.isGuest(userId)) {
+            GuestSessions.Turn turn = stage("context", () -> guests.startTurn(userId, conversationId, message));
+            return new Turn(turn.conversationId(), turn.title(), null, turn.context());
+        }
+        if (conversationId != null) {
+            // The row stays locked until the message is stored, so the archiver cannot move the history out
+            // from under the prompt or the new message; an archived conversation comes back before it is read
+            return tx.execute(status -> {
+                Conversation existing = stage("conversation", () -> {
+                    Conversation c = findLive(conversationId);
+                    requireOwner(c, userId);
+                    archiver.lockForWrite(c.getId(), userId);
+                    return c;
+                });
+                PromptContext context = stage("context", () -> contextAssembler.assemble(existing, false, message));
+                stage("user_message", () -> saveMsg("user", message, existing));
+                return new Turn(existing.getId(), null, existing, context);
+            });
+        }
+        Conversation convo = stage("conversation", () -> {
+            Conversation created = new Conversation();
+            // A reference is all the foreign key needs; the users table is not read
+            created.setUser(userRepo.getReferenceById(userId));
+            created.setTitle(message.length() > 30 ? message.substring(0, 30) + "..." : message);
+            Conversation saved = convoRepo.save(created);
+            versions.historyChanged(userId);
+            return saved;
+        });
+
+        PromptContext context = stage("context", () -> contextAssembler.assemble(convo, true, message));
+        stage("user_message", () -> saveMsg("user", message, convo));
+        return new Turn(convo.getId(), convo.getTitle(), convo, context);
+    }
+
     // 4. NEW: Delete Conversation
     @Transactional
-    public void deleteConversation(Long id, String email) {
-        User user = userRepo.findByEmail(email).orElseThrow();
-        Conversation convo = convoRepo.findById(id).orElseThrow();
+    public void deleteConversation(Long id, Long userId) {
+        if (GuestSessions.isGuest(userId)) {
+            guests.delete(userId, id);
+            return;
+        }
+        Conversation convo = findLive(id);
 
         // Security Check: Only allow if user owns the conversation
-        if (!convo.getUser().getId().equals(user.getId())) {
+        requireOwner(convo, userId);
+
+        // Tombstone the conversation: it disappears from history now and delta sync reports the deletion
+        messageWriter.discard(id);
+        convo.setDeletedAt(LocalDateTime.now());
+        convo.setVersion(TimeOrderedIdGenerator.next());
+        convoRepo.save(convo);
+        contextAssembler.evict(id);
+        searchIndex.deleteConversation(id);
+
+        // Its messages are removed in the background, in small batches
+        purger.schedule(id);
+        versions.historyChanged(userId);
+        versions.conversationChanged(userId, id);
+    }
+
+    // 5. NEW: Update Title
+    public void updateTitle(Long id, String newTitle, Long userId) {
+        if (GuestSessions.isGuest(userId)) {
+            guests.rename(userId, id, newTitle);
+            return;
+        }
+        if (convoRepo.rename(id, userId, newTitle, TimeOrderedIdGenerator.next()) == 0) {
             throw new RuntimeException("Unauthorized: You do not own this conversation");
         }
+        versions.historyChanged(userId);
+    }
 
-        // Delete all messages first
-        List<Message> messages = msgRepo.findByConversationIdOrderByCreatedAtAsc(id);
-        msgRepo.deleteAll(messages);
-        
-        // Delete conversation
-        convoRepo.delete(convo);
+    private Conversation findLive(Long id) {
+        return convoRepo.findById(id)
+                .filter(c -> c.getDeletedAt() == null)
+                .orElseThrow(() -> new RuntimeException("Conversation not found"));
     }
 
-    // 5. NEW: Update Title
-    public void updateTitle(Long id, String newTitle, String email) {
-        User user = userRepo.findByEmail(email).orElseThrow();
-        Conversation convo = convoRepo.findById(id).orElseThrow();
+    // convo.getUser() is a lazy proxy; reading its id does not load the user
+    private static void requireOwner(Conversation convo, Long userId) {
+        if (!convo.getUser().getId().equals(userId)) {
+            throw new RuntimeException("Unauthorized: You do not own this conversation");
+        }
+    }
+
+    private static List<MessageView> oldestFirst(List<MessageView> newestFirst) {
+        List<MessageView> page = new ArrayList<>(newestFirst);
+        Collections.reverse(page);
+        return page;
+    }
 
-        if (!convo.getUser().getId().equals(user.getId())) {
-            throw new RuntimeException("Unauthorized");
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    // Latency of one step of a chat turn, as chat.stage{stage} (histogram buckets are enabled in application.properties)
+    private <T> T stage(String name, Supplier<T> step) {
+        return meterRegistry.timer("chat.stage", "stage", name).record(step);
+    }
+
+    private void stage(String name, Runnable step) {
+        meterRegistry.timer("chat.stage", "stage", name).record(step);
+    }
+
+    private void saveReply(Long userId, Turn turn, String reply) {
+        if (turn.convo() == null) {
+            guests.addReply(userId, turn.conversationId(), reply);
+        } else {
+            // Locked like the user's message: the conversation may have been archived while the model answered
+            tx.executeWithoutResult(status -> {
+                archiver.lockForWrite(turn.conversationId(), userId);
+                saveMsg("assistant", reply, turn.convo());
+            });
         }
+    }
 
-        convo.setTitle(newTitle);
-        convoRepo.save(convo);
+    private void saveMsg(String role, String text, Conversation c) {
+        Message m = createMsg(role, text, c);
+        messageWriter.save(m);
+        versions.conversationChanged(c.getUser().getId(), c.getId());
+        contextAssembler.record(c.getId(), m.getId(), role, text);
+        searchIndex.add(m, c.getUser().getId());
     }
 
     private Message createMsg(String role, String text, Conversation c) {
@@ -0,0 +1,112 @@
+package com.devaraj.AIClone.service;
+
+/**
+ * Count-based circuit breaker for upstream calls.
+ *
+ * Closed: calls go through and outcomes fill a ring of the last {@code window} calls; once
+ * the ring is full and at least {@code failureRate} of it failed, the breaker opens.
+ * Open: calls fail fast for {@code openMs}. Half-open: a single probe call is let through;
+ * its success closes the breaker, its failure opens it again.
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    static final class OpenException extends RuntimeException {
+        OpenException() {
+            super("Circuit breaker is open", null, false, false);
+        }
+    }
+
+    private final double failureRate;
+    private final boolean[] outcomes;
+    private final long openMs;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private long openUntilMs;
+    private boolean probeInFlight;
+
+    CircuitBreaker(double failureRate, int window, long openMs) {
+        this.failureRate = failureRate;
+        this.outcomes = new boolean[Math.max(1, window)];
+        this.openMs = openMs;
+    }
+
+    // False while open (or while the half-open probe is still running): the caller must not call upstream
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() < openUntilMs) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset(State.CLOSED);
+            return;
+        }
+        record(false);
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            trip();
+            return;
+        }
+        record(true);
+        if (recorded == outcomes.length && failures >= failureRate * outcomes.length) {
+            trip();
+        }
+    }
+
+    // The call was abandoned (e.g. it lost a hedge race): it says nothing about upstream health
+    synchronized void onCancel() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void trip() {
+        reset(State.OPEN);
+        openUntilMs = System.currentTimeMillis() + openMs;
+    }
+
+    private void reset(State to) {
+        state = to;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        probeInFlight = false;
+    }
+}
@@ -0,0 +1,319 @@
+package com.devaraj.AIClone.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import com.devaraj.AIClone.dto.ChatTurn;
+import com.devaraj.AIClone.dto.PromptContext;
+import com.devaraj.AIClone.entity.Conversation;
+import com.devaraj.AIClone.entity.Message;
+import com.devaraj.AIClone.repository.ConversationRepository;
+import com.devaraj.AIClone.repository.MessageRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Builds the multi-turn prompt for a conversation under a token budget.
+ *
+ * Recent turns are kept in a per-conversation ring held in an LRU cache, so a
+ * conversation that is being actively chatted in never re-reads its history.
+ * Turns that fall out of the ring (or out of the budget) are folded into a short
+ * rolling summary stored on the conversation row. The row is written every
+ * chat.context.summary-save-folds folds, when the window leaves the cache and at
+ * shutdown, not on every message; a crash loses at most the last few summary lines.
+ *
+ * With chat.multi-instance=true another instance may have served the last turns: a cached
+ * window is checked against the conversation's newest message id (one indexed lookup) and
+ * reloaded, summary included, when it is behind. Every fold is then saved at once, so the
+ * row carries the one summary all instances build on.
+ */
+@Service
+public class ContextAssembler {
+
+    // Rough per-turn bookkeeping cost (deque slot, record, String headers) used for the memory cap
+    private static final int TURN_OVERHEAD_BYTES = 96;
+
+    private final MessageRepository msgRepo;
+    private final ConversationRepository convoRepo;
+    private final MessageWriter messageWriter;
+
+    private final int tokenBudget;
+    private final int summaryTokenBudget;
+    private final int windowTurns;
+    private final long cacheMaxBytes;
+    private final int summarySaveFolds;
+    private final boolean multiInstance;
+
+    private final LinkedHashMap<Long, Window> windows = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    public ContextAssembler(
+            MessageRepository msgRepo,
+            ConversationRepository convoRepo,
+            MessageWriter messageWriter,
+            @Value("${chat.context.token-budget:8000}") int tokenBudget,
+            @Value("${chat.context.summary-token-budget:600}") int summaryTokenBudget,
+            @Value("${chat.context.window-turns:20}") int windowTurns,
+            @Value("${chat.context.cache-max-bytes:33554432}") long cacheMaxBytes,
+            @Value("${chat.context.summary-save-folds:10}") int summarySaveFolds,
+            @Value("${chat.multi-instance:false}") boolean multiInstance
+    ) {
+        this.msgRepo = msgRepo;
+        this.convoRepo = convoRepo;
+        this.messageWriter = messageWriter;
+        this.tokenBudget = tokenBudget;
+        this.summaryTokenBudget = summaryTokenBudget;
+        this.windowTurns = windowTurns;
+        this.cacheMaxBytes = cacheMaxBytes;
+        this.summarySaveFolds = multiInstance ? 1 : Math.max(1, summarySaveFolds);
+        this.multiInstance = multiInstance;
+    }
+
+    /**
+     * Returns the prompt for {@code message}, which must not have been recorded yet.
+     * Only a cache miss on an existing conversation touches the database (on multi-instance
+     * deployments, also the newest-id check of a cached window).
+     */
+    public PromptContext assemble(Conversation convo, boolean isNew, String message) {
+        Window window = window(convo, isNew);
+        int messageTokens = estimateTokens(message);
+
+        PromptContext context;
+        long delta;
+        synchronized (window) {
+            long before = window.bytes;
+            // Newest turns win; whatever does not fit is folded into the summary
+            int available = tokenBudget - messageTokens - estimateTokens(window.summary);
+            List<ChatTurn> included = new ArrayList<>();
+            Iterator<ChatTurn> newestFirst = window.turns.descendingIterator();
+            while (newestFirst.hasNext()) {
+                ChatTurn turn = newestFirst.next();
+                int cost = estimateTokens(turn.text());
+                if (cost > available) {
+                    break;
+                }
+                available -= cost;
+                included.add(turn);
+            }
+
+            int overflow = window.turns.size() - included.size();
+            if (overflow > 0) {
+                for (int i = 0; i < overflow; i++) {
+                    fold(window, window.turns.removeFirst());
+                }
+                saveSummaryEvery(convo.getId(), window);
+            }
+
+            Collections.reverse(included);
+            included.add(new ChatTurn("user", message));
+            context = new PromptContext(window.summary, included);
+            delta = window.bytes - before;
+        }
+        resized(convo.getId(), window, delta);
+        return context;
+    }
+
+    // Called once a message has been persisted (messageId is its id) so the ring mirrors the table
+    public void record(Long conversationId, Long messageId, String role, String text) {
+        Window window;
+        synchronized (this) {
+            window = windows.get(conversationId);
+        }
+        if (window == null) {
+            return; // not cached; the next assemble() loads it from the table
+        }
+
+        long delta;
+        synchronized (window) {
+            long before = window.bytes;
+            window.add(new ChatTurn(role, text), messageId);
+            while (window.turns.size() > windowTurns) {
+                fold(window, window.turns.removeFirst());
+            }
+            saveSummaryEvery(conversationId, window);
+            delta = window.bytes - before;
+        }
+        resized(conversationId, window, delta);
+    }
+
+    // The conversation is gone: its summary is not worth saving
+    public synchronized void evict(Long conversationId) {
+        Window removed = windows.remove(conversationId);
+        if (removed != null) {
+            cachedBytes -= removed.bytes;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Map<Long, Window> cached;
+        synchronized (this) {
+            cached = new LinkedHashMap<>(windows);
+        }
+        saveSummaries(cached);
+    }
+
+    private Window window(Conversation convo, boolean isNew) {
+        Window cached;
+        synchronized (this) {
+            cached = windows.get(convo.getId());
+        }
+        if (cached != null && !(multiInstance && behind(convo.getId(), cached))) {
+            return cached;
+        }
+        if (cached != null) {
+            // Another instance wrote since: its summary is on the row (convo was just read), ours is stale
+            synchronized (this) {
+                if (windows.remove(convo.getId(), cached)) {
+                    cachedBytes -= cached.bytes;
+                }
+            }
+        }
+
+        Window loaded = new Window(convo.getSummary());
+        if (!isNew) {
+            List<Message> recent = messageWriter.withPending(convo.getId(), () -> {
+                List<Message> newestFirst = new ArrayList<>(
+                        msgRepo.findByConversationIdOrderByCreatedAtDesc(convo.getId(), Limit.of(windowTurns)));
+                Collections.reverse(newestFirst);
+                return newestFirst;
+            });
+            for (Message m : recent.subList(Math.max(0, recent.size() - windowTurns), recent.size())) {
+                loaded.add(new ChatTurn(m.getRole(), m.getContent()), m.getId());
+            }
+        }
+
+        Map<Long, Window> evicted;
+        synchronized (this) {
+            Window raced = windows.putIfAbsent(convo.getId(), loaded);
+            if (raced != null) {
+                return raced;
+            }
+            cachedBytes += loaded.bytes;
+            evicted = evictToCap();
+        }
+        saveSummaries(evicted);
+        return loaded;
+    }
+
+    // True when the table has a message newer than any the window has seen. Ids are time-ordered across
+    // instances, so this instance's own queued (write-behind) messages never make it look behind
+    private boolean behind(Long conversationId, Window window) {
+        Long newest = msgRepo.findNewestId(conversationId);
+        synchronized (window) {
+            return newest != null && newest > window.newestMessageId;
+        }
+    }
+
+    private void resized(Long conversationId, Window window, long delta) {
+        Map<Long, Window> evicted;
+        synchronized (this) {
+            if (delta == 0 || windows.get(conversationId) != window) {
+                return;
+            }
+            cachedBytes += delta;
+            evicted = evictToCap();
+        }
+        saveSummaries(evicted);
+    }
+
+    // Returns the windows dropped, to have their summaries saved once the cache lock is released
+    private Map<Long, Window> evictToCap() {
+        Map<Long, Window> evicted = new LinkedHashMap<>();
+        Iterator<Map.Entry<Long, Window>> eldest = windows.entrySet().iterator();
+        while (cachedBytes > cacheMaxBytes && eldest.hasNext()) {
+            Map.Entry<Long, Window> entry = eldest.next();
+            cachedBytes -= entry.getValue().bytes;
+            evicted.put(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+        return evicted;
+    }
+
+    // Extractive rolling summary: one line per folded turn, oldest lines dropped first to stay in budget
+    private void fold(Window window, ChatTurn turn) {
+        window.bytes -= turnBytes(turn);
+        String line = ("assistant".equals(turn.role()) ? "Assistant: " : "User: ") + firstSentence(turn.text());
+        String summary = window.summary == null ? line : window.summary + "\n" + line;
+
+        int maxChars = summaryTokenBudget * 4;
+        if (summary.length() > maxChars) {
+            int cut = summary.indexOf('\n', summary.length() - maxChars);
+            summary = cut < 0 ? summary.substring(summary.length() - maxChars) : summary.substring(cut + 1);
+        }
+        window.bytes += 2L * (summary.length() - (window.summary == null ? 0 : window.summary.length()));
+        window.summary = summary;
+        window.unsavedFolds++;
+    }
+
+    // Caller holds the window's lock
+    private void saveSummaryEvery(Long conversationId, Window window) {
+        if (window.unsavedFolds >= summarySaveFolds) {
+            saveSummary(conversationId, window);
+        }
+    }
+
+    private void saveSummaries(Map<Long, Window> windows) {
+        windows.forEach((conversationId, window) -> {
+            synchronized (window) {
+                if (window.unsavedFolds > 0) {
+                    saveSummary(conversationId, window);
+                }
+            }
+        });
+    }
+
+    private void saveSummary(Long conversationId, Window window) {
+        convoRepo.updateSummary(conversationId, window.summary);
+        window.unsavedFolds = 0;
+    }
+
+    private static String firstSentence(String text) {
+        String flat = text.replaceAll("\\s+", " ").trim();
+        int end = flat.indexOf(". ");
+        if (end > 0 && end < 200) {
+            return flat.substring(0, end + 1);
+        }
+        return flat.length() > 200 ? flat.substring(0, 200) + "..." : flat;
+    }
+
+    // ~4 characters per token is close enough for budgeting English text
+    static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    private static long turnBytes(ChatTurn turn) {
+        return TURN_OVERHEAD_BYTES + 2L * turn.text().length();
+    }
+
+    private static final class Window {
+        private final ArrayDeque<ChatTurn> turns = new ArrayDeque<>();
+        private String summary;
+        private long bytes;
+        private int unsavedFolds;
+        // The newest message the ring has mirrored, 0 if none
+        private long newestMessageId;
+
+        private Window(String summary) {
+            this.summary = summary;
+            this.bytes = summary == null ? 0 : 2L * summary.length();
+        }
+
+        private void add(ChatTurn turn, Long messageId) {
+            turns.addLast(turn);
+            bytes += turnBytes(turn);
+            if (messageId != null && messageId > newestMessageId) {
+                newestMessageId = messageId;
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.devaraj.AIClone.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.devaraj.AIClone.dto.MessageView;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves idle conversations out of the message table into compressed archive segments
+ * ({@link ArchiveStore}), and back again the first time someone opens one.
+ *
+ * A background sweep archives conversations with no message newer than idle-days: their messages
+ * are appended to the current segment as one record, then one transaction stores the record's
+ * location on the conversation row and deletes the rows. The update re-checks that no message
+ * arrived meanwhile, in the table or still queued in {@link MessageWriter}, so a conversation that
+ * woke up is left alone. A writer adding a message first calls {@link #lockForWrite} in its own
+ * transaction: the archiver's update then waits for that transaction and sees its message, and a
+ * conversation archived before it is brought back first. Rehydration reverses archiving in one
+ * transaction; reads that only need the content (exports) use {@link #read} and leave it archived.
+ */
+@Slf4j
+@Service
+public class ConversationArchiver {
+
+    private static final String CANDIDATES_SQL = """
+            select c.id from conversation c
+            where c.deleted_at is null and c.archived_at is null and c.created_at < ? and c.id > ?
+              and not exists (select 1 from message m where m.conversation_id = c.id and m.created_at >= ?)
+            order by c.id
+            limit ?""";
+    private static final String MESSAGES_SQL =
+            "select id, role, content, created_at from message where conversation_id = ? order by created_at, id";
+    private static final String MARK_ARCHIVED_SQL = """
+            update conversation
+            set archived_at = ?, archive_segment = ?, archive_offset = ?, archive_length = ?
+            where id = ? and archived_at is null and deleted_at is null
+              and not exists (select 1 from message m where m.conversation_id = ? and m.id > ?)""";
+    private static final String LOCK_SQL = "select archived_at from conversation where id = ? for update";
+    private static final String DELETE_ARCHIVED_SQL = "delete from message where conversation_id = ? and id <= ?";
+    private static final String LOCATION_SQL = """
+            select archive_segment, archive_offset, archive_length from conversation
+            where id = ? and user_id = ? and archived_at is not null and deleted_at is null""";
+    private static final String UNMARK_SQL = """
+            update conversation set archived_at = null, archive_segment = null, archive_offset = null, archive_length = null
+            where id = ? and archived_at is not null""";
+    private static final String INSERT_SQL =
+            "insert into message (id, role, content, conversation_id, created_at) values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final MessageWriter messageWriter;
+    private final ArchiveStore store;
+    private final Duration idleAge;
+    private final int sweepSize;
+    private final long sweepIntervalMs;
+
+    private final Counter archived;
+    private final Counter rehydrated;
+    private final Counter messagesOut;
+    private final Counter messagesBack;
+    private final Counter rawBytes;
+    private final Counter compressedBytes;
+    private final Timer archiveTimer;
+    private final Timer rehydrateTimer;
+    private final Timer readTimer;
+
+    private final Thread archiver;
+    private volatile boolean running = true;
+
+    public ConversationArchiver(
+            JdbcTemplate jdbc,
+            PlatformTransactionManager transactionManager,
+            MessageWriter messageWriter,
+            MeterRegistry meterRegistry,
+            @Value("${chat.archive.enabled:false}") boolean enabled,
+            @Value("${chat.archive.dir:archive}") String dir,
+            @Value("${chat.archive.idle-days:90}") long idleDays,
+            @Value("${chat.archive.segment-max-bytes:67108864}") long segmentMaxBytes,
+            @Value("${chat.archive.sweep-size:100}") int sweepSize,
+            @Value("${chat.archive.sweep-interval-ms:3600000}") long sweepIntervalMs
+    ) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.messageWriter = messageWriter;
+        // Opened even when the sweep is off: conversations archived earlier must stay readable
+        this.store = new ArchiveStore(Path.of(dir), segmentMaxBytes);
+        this.idleAge = Duration.ofDays(idleDays);
+        this.sweepSize = sweepSize;
+        this.sweepIntervalMs = sweepIntervalMs;
+
+        this.archived = Counter.builder("chat.archive.conversations").tag("op", "archived").register(meterRegistry);
+        this.rehydrated = Counter.builder("chat.archive.conversations").tag("op", "rehydrated").register(meterRegistry);
+        // out minus back = rows the message table no longer holds
+        this.messagesOut = Counter.builder("chat.archive.messages").tag("op", "archived")
+                .description("Messages moved from the message table into archive segments")
+                .register(meterRegistry);
+        this.messagesBack = Counter.builder("chat.archive.messages").tag("op", "rehydrated")
+                .description("Messages moved back into the message table")
+                .register(meterRegistry);
+        // compressed / raw = compression ratio of what was archived
+        this.rawBytes = Counter.builder("chat.archive.bytes").tag("form", "raw").register(meterRegistry);
+        this.compressedBytes = Counter.builder("chat.archive.bytes").tag("form", "compressed").register(meterRegistry);
+        meterRegistry.gauge("chat.archive.disk.bytes", store, ArchiveStore::sizeOnDisk);
+        this.archiveTimer = Timer.builder("chat.archive.archive").register(meterRegistry);
+        this.rehydrateTimer = Timer.builder("chat.archive.rehydrate")
+                .description("Opening an archived conversation: read, decompress and restore its messages")
+                .register(meterRegistry);
+        this.readTimer = Timer.builder("chat.archive.read")
+                .description("Reading and decompressing one archived conversation")
+                .register(meterRegistry);
+
+        archiver = enabled ? Thread.ofPlatform().name("conversation-archiver").daemon().start(this::archiveLoop) : null;
+    }
+
+    /** Archives one conversation; false if it has no messages or received one while being archived. */
+    public boolean archive(Long conversationId) {
+        long start = System.nanoTime();
+        if (!messageWriter.pending(conversationId).isEmpty()) {
+            return false;
+        }
+        List<MessageView> messages = jdbc.query(MESSAGES_SQL, (rs, i) -> new MessageView(
+                rs.getLong(1), rs.getString(2), rs.getString(3), rs.getTimestamp(4).toLocalDateTime()), conversationId);
+        if (messages.isEmpty()) {
+            return false;
+        }
+        long maxId = messages.stream().mapToLong(MessageView::id).max().getAsLong();
+
+        byte[] raw;
+        ArchiveStore.Location location;
+        try {
+            raw = ArchiveStore.encode(messages);
+            location = store.append(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // If the conversation changed meanwhile the record just written is never referenced (segments are append-only)
+        Boolean done = tx.execute(status -> {
+            // Waits for a writer that holds the row (lockForWrite), so the check below sees the message it added
+            if (jdbc.query(LOCK_SQL, (rs, i) -> rs.getTimestamp(1), conversationId).isEmpty()) {
+                return false;
+            }
+            int marked = jdbc.update(MARK_ARCHIVED_SQL, Timestamp.valueOf(LocalDateTime.now()), location.segment(),
+                    location.offset(), location.length(), conversationId, conversationId, maxId);
+            if (marked == 0) {
+                return false;
+            }
+            // The row check only sees inserted messages; one still queued for write-behind lands after this
+            if (!messageWriter.pending(conversationId).isEmpty()) {
+                status.setRollbackOnly();
+                return false;
+            }
+            jdbc.update(DELETE_ARCHIVED_SQL, conversationId, maxId);
+            return true;
+        });
+        if (!Boolean.TRUE.equals(done)) {
+            return false;
+        }
+        archived.increment();
+        messagesOut.increment(messages.size());
+        rawBytes.increment(raw.length);
+        compressedBytes.increment(location.length());
+        archiveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    /**
+     * For a writer about to add a message to this user's conversation, inside the transaction that adds it:
+     * locks the conversation row until that transaction ends, and rehydrates the conversation if it is archived.
+     */
+    public void lockForWrite(Long conversationId, Long userId) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("lockForWrite must run in the transaction that adds the message");
+        }
+        List<Timestamp> archivedAt = jdbc.query(LOCK_SQL, (rs, i) -> rs.getTimestamp(1), conversationId);
+        if (!archivedAt.isEmpty() && archivedAt.get(0) != null) {
+            rehydrate(conversationId, userId);
+        }
+    }
+
+    /**
+     * Moves an archived conversation of this user back into the message table.
+     * Returns false, after one primary-key lookup, if it was not archived (the usual case).
+     */
+    public boolean rehydrate(Long conversationId, Long userId) {
+        Optional<ArchiveStore.Location> location = location(conversationId, userId);
+        if (location.isEmpty()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        Boolean restored = tx.execute(status -> {
+            // Locks the row: a concurrent rehydration of the same conversation waits here, then finds nothing to do
+            if (jdbc.update(UNMARK_SQL, conversationId) == 0) {
+                return false;
+            }
+            List<MessageView> messages = readArchive(location.get());
+            jdbc.batchUpdate(INSERT_SQL, messages, 500, (ps, m) -> {
+                ps.setLong(1, m.id());
+                ps.setString(2, m.role());
+                ps.setString(3, m.content());
+                ps.setLong(4, conversationId);
+                ps.setTimestamp(5, Timestamp.valueOf(m.createdAt()));
+            });
+            messagesBack.increment(messages.size());
+            return true;
+        });
+        if (!Boolean.TRUE.equals(restored)) {
+            return false;
+        }
+        rehydrated.increment();
+        rehydrateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    // An archived conversation's messages, oldest first, left in the archive; empty if it is not archived
+    public List<MessageView> read(Long conversationId, Long userId) {
+        return location(conversationId, userId).map(this::readArchive).orElse(List.of());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        running = false;
+        if (archiver != null) {
+            archiver.interrupt();
+            archiver.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        store.close();
+    }
+
+    private Optional<ArchiveStore.Location> location(Long conversationId, Long userId) {
+        return jdbc.query(LOCATION_SQL, (rs, i) -> new ArchiveStore.Location(rs.getInt(1), rs.getLong(2), rs.getInt(3)),
+                conversationId, userId).stream().findFirst();
+    }
+
+    private List<MessageView> readArchive(ArchiveStore.Location location) {
+        long start = System.nanoTime();
+        try {
+            return store.read(location);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            readTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void archiveLoop() {
+        while (running) {
+            sweep();
+            try {
+                Thread.sleep(sweepIntervalMs);
+            } catch (InterruptedException e) {
+                // Shutdown is signalled through 'running'
+            }
+        }
+    }
+
+    // One pass over every conversation idle for longer than idleAge, sweepSize ids at a time
+    void sweep() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(idleAge);
+        long after = 0;
+        int count = 0;
+        try {
+            List<Long> ids;
+            do {
+                ids = jdbc.queryForList(CANDIDATES_SQL, Long.class,
+                        Timestamp.valueOf(cutoff), after, Timestamp.valueOf(cutoff), sweepSize);
+                for (Long id : ids) {
+                    if (!running) {
+                        return;
+                    }
+                    if (archive(id)) {
+                        count++;
+                    }
+                    after = id;
+                }
+            } while (ids.size() == sweepSize);
+        } catch (DataAccessException | UncheckedIOException e) {
+            log.warn("Conversation archive sweep failed, will retry on the next sweep: {}", e.getMessage());
+        }
+        if (count > 0) {
+            log.info("Archived {} idle conversations", count);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.devaraj.AIClone.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Removes the messages of tombstoned conversations in the background.
+ *
+ * Each batch is its own short DELETE ... LIMIT statement, so a 100k-message conversation
+ * never holds locks for long or gets loaded into memory. Conversations are queued when
+ * their delete commits; a periodic sweep picks up anything left over from a restart.
+ */
+@Slf4j
+@Service
+public class ConversationPurger {
+
+    private static final String DELETE_BATCH_SQL = "delete from message where conversation_id = ? limit ?";
+    private static final String BACKLOG_SQL =
+            "select id from conversation where deleted_at is not null and purged_at is null order by deleted_at limit ?";
+    private static final String MARK_PURGED_SQL = "update conversation set purged_at = ? where id = ?";
+    private static final int SWEEP_SIZE = 100;
+
+    private final JdbcTemplate jdbc;
+    private final int batchSize;
+    private final long pauseMs;
+    private final long sweepIntervalMs;
+
+    private final BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+
+    private final Counter messagesDeleted;
+    private final Counter conversationsPurged;
+    private final Timer batchTimer;
+
+    private final Thread purger;
+    private volatile boolean running = true;
+
+    public ConversationPurger(
+            JdbcTemplate jdbc,
+            MeterRegistry meterRegistry,
+            @Value("${chat.purge.enabled:true}") boolean enabled,
+            @Value("${chat.purge.batch-size:1000}") int batchSize,
+            @Value("${chat.purge.pause-ms:10}") long pauseMs,
+            @Value("${chat.purge.sweep-interval-ms:30000}") long sweepIntervalMs
+    ) {
+        this.jdbc = jdbc;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+        this.sweepIntervalMs = sweepIntervalMs;
+
+        meterRegistry.gauge("chat.purge.backlog", queue, BlockingQueue::size);
+        this.messagesDeleted = Counter.builder("chat.purge.messages.deleted")
+                .description("Messages removed from tombstoned conversations")
+                .register(meterRegistry);
+        this.conversationsPurged = Counter.builder("chat.purge.conversations")
+                .description("Tombstoned conversations whose messages are all removed")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("chat.purge.batch")
+                .description("Time to delete one batch of messages")
+                .register(meterRegistry);
+
+        purger = enabled ? Thread.ofPlatform().name("conversation-purger").daemon().start(this::purgeLoop) : null;
+    }
+
+    // Queues the conversation once the surrounding transaction (which tombstones it) has committed
+    public void schedule(Long conversationId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(conversationId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(conversationId);
+            }
+        });
+    }
+
+    /**
+     * Deletes every message of the conversation in batches of batchSize, then marks it purged.
+     * Returns the number of messages deleted.
+     */
+    public long purge(Long conversationId) {
+        long total = 0;
+        int deleted;
+        do {
+            long start = System.nanoTime();
+            deleted = jdbc.update(DELETE_BATCH_SQL, conversationId, batchSize);
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            messagesDeleted.increment(deleted);
+            total += deleted;
+            if (deleted == batchSize) {
+                pause();
+            }
+        } while (deleted == batchSize && running);
+
+        if (deleted < batchSize) {
+            jdbc.update(MARK_PURGED_SQL, LocalDateTime.now(), conversationId);
+            conversationsPurged.increment();
+        }
+        return total;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (purger != null) {
+            purger.interrupt();
+            purger.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void enqueue(Long conversationId) {
+        if (queued.add(conversationId)) {
+            queue.add(conversationId);
+        }
+    }
+
+    private void purgeLoop() {
+        sweep(); // tombstones left unpurged by a previous run
+        while (running) {
+            try {
+                Long id = queue.poll(sweepIntervalMs, TimeUnit.MILLISECONDS);
+                if (id == null) {
+                    sweep();
+                    continue;
+                }
+                try {
+                    purge(id);
+                } finally {
+                    queued.remove(id);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown is signalled through 'running'; unfinished conversations are swept on the next start
+            } catch (DataAccessException e) {
+                log.warn("Conversation purge failed, will retry on the next sweep: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void sweep() {
+        try {
+            List<Long> backlog = jdbc.queryForList(BACKLOG_SQL, Long.class, SWEEP_SIZE);
+            backlog.forEach(this::enqueue);
+        } catch (DataAccessException e) {
+            log.warn("Conversation purge sweep failed: {}", e.getMessage());
+        }
+    }
+
+    // Lets chat traffic in between batches
+    private void pause() {
+        if (pauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
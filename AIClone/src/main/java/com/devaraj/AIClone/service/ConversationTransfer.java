@@ -0,0 +1,327 @@
+package com.devaraj.AIClone.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devaraj.AIClone.dto.ConversationResponse;
+import com.devaraj.AIClone.dto.ExportLine;
+import com.devaraj.AIClone.dto.ImportResult;
+import com.devaraj.AIClone.dto.MessageView;
+import com.devaraj.AIClone.entity.Conversation;
+import com.devaraj.AIClone.entity.Message;
+import com.devaraj.AIClone.entity.TimeOrderedIdGenerator;
+import com.devaraj.AIClone.repository.ConversationRepository;
+import com.devaraj.AIClone.repository.MessageRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Bulk export and import of a user's conversations as NDJSON ({@link ExportLine} per line).
+ *
+ * Both directions work in fixed-size pages, so memory stays flat whatever the size of the history:
+ * the export reads keyset pages of DTOs (no managed entities, no connection held while the client
+ * reads) and writes each line straight to the response; the import inserts page-size lines per
+ * transaction. A failed import keeps the pages committed before the bad line.
+ */
+@Service
+public class ConversationTransfer {
+
+    private static final String INSERT_CONVERSATION_SQL =
+            "insert into conversation (user_id, title, created_at, version) values (?, ?, ?, ?)";
+    private static final String INSERT_MESSAGE_SQL =
+            "insert into message (id, role, content, conversation_id, created_at) values (?, ?, ?, ?, ?)";
+
+    // Conversation.title's column size; messages are capped well below Message.content's
+    private static final int MAX_TITLE = 255;
+    private static final int MAX_CONTENT = 1_000_000;
+    // Longest line an import reads: a full message, JSON-escaped, with room to spare
+    private static final int MAX_LINE = 8 * 1024 * 1024;
+
+    private record Line(long number, ExportLine line) {}
+
+    private final ConversationRepository convoRepo;
+    private final MessageRepository msgRepo;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final SearchIndex searchIndex;
+    private final ConversationArchiver archiver;
+    private final HistoryVersions versions;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final int pageSize;
+    private final long pageMaxBytes;
+
+    private final Counter exported;
+    private final Counter imported;
+
+    public ConversationTransfer(
+            ConversationRepository convoRepo,
+            MessageRepository msgRepo,
+            JdbcTemplate jdbc,
+            PlatformTransactionManager transactionManager,
+            SearchIndex searchIndex,
+            ConversationArchiver archiver,
+            HistoryVersions versions,
+            MeterRegistry meterRegistry,
+            @Value("${chat.transfer.page-size:200}") int pageSize,
+            @Value("${chat.transfer.page-max-bytes:4194304}") long pageMaxBytes
+    ) {
+        this.convoRepo = convoRepo;
+        this.msgRepo = msgRepo;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.searchIndex = searchIndex;
+        this.archiver = archiver;
+        this.versions = versions;
+        this.pageSize = pageSize;
+        this.pageMaxBytes = pageMaxBytes;
+        this.exported = Counter.builder("chat.transfer.messages").tag("direction", "export").register(meterRegistry);
+        this.imported = Counter.builder("chat.transfer.messages").tag("direction", "import").register(meterRegistry);
+    }
+
+    // Messages still in the write-behind queue (at most flush-interval-ms old) are not included
+    public void export(Long userId, OutputStream out) throws IOException {
+        requireAccount(userId);
+        long afterConversation = 0;
+        List<ConversationResponse> conversations;
+        do {
+            conversations = convoRepo.findExportPage(userId, afterConversation, Limit.of(pageSize));
+            for (ConversationResponse c : conversations) {
+                writeLine(out, ExportLine.conversation(c));
+                exportMessages(userId, c.id(), out);
+                afterConversation = c.id();
+            }
+            out.flush();
+        } while (conversations.size() == pageSize);
+    }
+
+    private void exportMessages(Long userId, Long conversationId, OutputStream out) throws IOException {
+        // Archived (a primary-key lookup says so): its segment record first, read without moving it back
+        List<MessageView> archived = archiver.read(conversationId, userId);
+        for (MessageView m : archived) {
+            writeLine(out, ExportLine.message(conversationId, m));
+        }
+        exported.increment(archived.size());
+        // Anything in the table is newer than the archive, unless it was rehydrated since: those ids are skipped
+        long archivedUpTo = archived.stream().mapToLong(MessageView::id).max().orElse(Long.MIN_VALUE);
+
+        List<MessageView> page = msgRepo.findOldestPage(conversationId, Limit.of(pageSize));
+        while (!page.isEmpty()) {
+            int written = 0;
+            for (MessageView m : page) {
+                if (m.id() > archivedUpTo) {
+                    writeLine(out, ExportLine.message(conversationId, m));
+                    written++;
+                }
+            }
+            exported.increment(written);
+            if (page.size() < pageSize) {
+                return;
+            }
+            page = msgRepo.findPageAfter(conversationId, page.get(page.size() - 1).id(), Limit.of(pageSize));
+        }
+    }
+
+    private void writeLine(OutputStream out, ExportLine line) throws IOException {
+        out.write(mapper.writeValueAsBytes(line));
+        out.write('\n');
+    }
+
+    /** Imports an export (possibly from another account or server) as new conversations of this user. */
+    public ImportResult importFrom(Long userId, InputStream in) throws IOException {
+        requireAccount(userId);
+        // Export id -> new id; one entry per conversation, never per message
+        Map<Long, Long> conversationIds = new HashMap<>();
+        List<Line> page = new ArrayList<>(pageSize);
+        long pageBytes = 0;
+        long[] counts = new long[2];
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        String text;
+        while ((text = readLine(reader, lineNumber + 1)) != null) {
+            lineNumber++;
+            if (text.isBlank()) {
+                continue;
+            }
+            page.add(new Line(lineNumber, parse(text, lineNumber)));
+            pageBytes += text.length();
+            // Lines can be megabytes long: a page is also cut at page-max-bytes, so memory stays flat
+            if (page.size() == pageSize || pageBytes >= pageMaxBytes) {
+                importPage(userId, page, conversationIds, counts);
+                page.clear();
+                pageBytes = 0;
+            }
+        }
+        if (!page.isEmpty()) {
+            importPage(userId, page, conversationIds, counts);
+        }
+        return new ImportResult(counts[0], counts[1]);
+    }
+
+    /** Stores conversations already in export form, e.g. a guest session kept on registering; joins the caller's transaction. */
+    public ImportResult importLines(Long userId, List<ExportLine> lines) {
+        Map<Long, Long> conversationIds = new HashMap<>();
+        long[] counts = new long[2];
+        List<Line> page = new ArrayList<>(pageSize);
+        long pageBytes = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            ExportLine line = lines.get(i);
+            page.add(new Line(i + 1, line));
+            pageBytes += line.content() == null ? 0 : line.content().length();
+            if (page.size() == pageSize || pageBytes >= pageMaxBytes || i == lines.size() - 1) {
+                importPage(userId, page, conversationIds, counts);
+                page.clear();
+                pageBytes = 0;
+            }
+        }
+        return new ImportResult(counts[0], counts[1]);
+    }
+
+    // BufferedReader.readLine would buffer a line of any length; this stops at MAX_LINE
+    private static String readLine(BufferedReader reader, long lineNumber) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1 && c != '\n') {
+            if (line.length() == MAX_LINE) {
+                throw invalid(lineNumber, "longer than " + MAX_LINE + " characters");
+            }
+            line.append((char) c);
+        }
+        return c == -1 && line.isEmpty() ? null : line.toString();
+    }
+
+    private ExportLine parse(String text, long lineNumber) {
+        ExportLine line;
+        try {
+            line = mapper.readValue(text, ExportLine.class);
+        } catch (JacksonException e) {
+            throw invalid(lineNumber, "not valid JSON");
+        }
+        if (ExportLine.CONVERSATION.equals(line.type())) {
+            if (line.id() == null) {
+                throw invalid(lineNumber, "conversation without an id");
+            }
+        } else if (ExportLine.MESSAGE.equals(line.type())) {
+            if (line.conversationId() == null || line.content() == null
+                    || !("user".equals(line.role()) || "assistant".equals(line.role()))) {
+                throw invalid(lineNumber, "message needs a conversationId, a role (user or assistant) and content");
+            }
+            if (line.content().length() > MAX_CONTENT) {
+                throw invalid(lineNumber, "message longer than " + MAX_CONTENT + " characters");
+            }
+        } else {
+            throw invalid(lineNumber, "unknown type " + line.type());
+        }
+        return line;
+    }
+
+    // One transaction: conversations first (they need their generated ids), then the messages as one JDBC batch
+    private void importPage(Long userId, List<Line> page, Map<Long, Long> conversationIds, long[] counts) {
+        List<Message> messages = new ArrayList<>();
+        tx.executeWithoutResult(status -> {
+            for (Line numbered : page) {
+                ExportLine line = numbered.line();
+                if (ExportLine.CONVERSATION.equals(line.type())) {
+                    conversationIds.put(line.id(), insertConversation(userId, line));
+                    counts[0]++;
+                } else {
+                    Long conversationId = conversationIds.get(line.conversationId());
+                    if (conversationId == null) {
+                        throw invalid(numbered.number(), "message before its conversation line");
+                    }
+                    messages.add(message(line, conversationId));
+                }
+            }
+            jdbc.batchUpdate(INSERT_MESSAGE_SQL, messages, messages.size(), (ps, m) -> {
+                ps.setLong(1, m.getId());
+                ps.setString(2, m.getRole());
+                ps.setString(3, m.getContent());
+                ps.setLong(4, m.getConversation().getId());
+                ps.setTimestamp(5, Timestamp.valueOf(m.getCreatedAt()));
+            });
+        });
+        counts[1] += messages.size();
+        imported.increment(messages.size());
+        // Once committed: importLines may run inside a caller's transaction (registering a guest) that can still roll back
+        afterCommit(() -> searchIndex.addAll(messages, userId));
+        versions.historyChanged(userId);
+        messages.stream().map(m -> m.getConversation().getId()).distinct()
+                .forEach(id -> versions.conversationChanged(userId, id));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private Long insertConversation(Long userId, ExportLine line) {
+        String title = line.title() == null ? "Imported conversation" : line.title();
+        LocalDateTime createdAt = line.createdAt() == null ? LocalDateTime.now() : line.createdAt();
+        GeneratedKeyHolder key = new GeneratedKeyHolder();
+        jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_CONVERSATION_SQL, new String[] { "id" });
+            ps.setLong(1, userId);
+            ps.setString(2, title.length() > MAX_TITLE ? title.substring(0, MAX_TITLE) : title);
+            ps.setTimestamp(3, Timestamp.valueOf(createdAt));
+            ps.setLong(4, TimeOrderedIdGenerator.next());
+            return ps;
+        }, key);
+        return key.getKey().longValue();
+    }
+
+    private static Message message(ExportLine line, Long conversationId) {
+        Conversation c = new Conversation();
+        c.setId(conversationId);
+        Message m = new Message();
+        m.setId(TimeOrderedIdGenerator.next());
+        m.setRole(line.role());
+        m.setContent(line.content());
+        m.setConversation(c);
+        m.setCreatedAt(line.createdAt() == null ? LocalDateTime.now() : line.createdAt());
+        return m;
+    }
+
+    private static void requireAccount(Long userId) {
+        if (GuestSessions.isGuest(userId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Register to export or import conversations");
+        }
+    }
+
+    private static ResponseStatusException invalid(long lineNumber, String problem) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Line " + lineNumber + ": " + problem);
+    }
+}
@@ -0,0 +1,47 @@
+package com.devaraj.AIClone.service;
+
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.devaraj.AIClone.entity.TimeOrderedIdGenerator;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stamps a version on conversations created before delta sync existed. "version > :since" never
+ * matches NULL, so without this they would never reach a syncing client. Each row gets its own
+ * fresh version (equal ones could be split across a page boundary and skipped). Safe to run on
+ * several instances at once: a row already stamped is left alone.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationVersionBackfill {
+
+    private static final int BATCH = 1000;
+
+    private final JdbcTemplate jdbc;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        long total = 0;
+        List<Long> ids;
+        do {
+            ids = jdbc.queryForList("select id from conversation where version is null limit " + BATCH, Long.class);
+            jdbc.batchUpdate("update conversation set version = ? where id = ? and version is null", ids, ids.size(),
+                    (ps, id) -> {
+                        ps.setLong(1, TimeOrderedIdGenerator.next());
+                        ps.setLong(2, id);
+                    });
+            total += ids.size();
+        } while (ids.size() == BATCH);
+        if (total > 0) {
+            log.info("Stamped a sync version on {} existing conversations", total);
+        }
+    }
+}
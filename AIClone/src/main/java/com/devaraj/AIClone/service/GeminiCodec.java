@@ -0,0 +1,198 @@
+package com.devaraj.AIClone.service;
+
+import java.io.ByteArrayOutputStream;
+
+import com.devaraj.AIClone.dto.ChatTurn;
+import com.devaraj.AIClone.dto.GeminiReply;
+import com.devaraj.AIClone.dto.PromptContext;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Writes generateContent requests and reads responses with Jackson's streaming API.
+ *
+ * Requests go straight from the PromptContext to UTF-8 bytes (no intermediate Map or String).
+ * Responses are read token by token: only candidates[0].content.parts[*].text, its
+ * finishReason and usageMetadata are kept, everything else is skipped without building a tree.
+ * Thread-safe; one instance is shared by all calls.
+ */
+public final class GeminiCodec {
+
+    private static final String SUMMARY_PREFIX = "Summary of the earlier part of this conversation:\n";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // Gemini calls the assistant side "model"; the rolling summary goes in as a system instruction
+    public byte[] encode(PromptContext context) {
+        int estimate = 64 + (context.summary() == null ? 0 : context.summary().length() + 96);
+        for (ChatTurn turn : context.turns()) {
+            estimate += turn.text().length() + 48;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(estimate);
+        try (JsonGenerator g = mapper.createGenerator(out)) {
+            g.writeStartObject();
+            if (context.summary() != null) {
+                g.writeName("systemInstruction");
+                writeParts(g, SUMMARY_PREFIX + context.summary());
+            }
+            g.writeName("contents");
+            g.writeStartArray();
+            for (ChatTurn turn : context.turns()) {
+                g.writeStartObject();
+                g.writeStringProperty("role", "assistant".equals(turn.role()) ? "model" : "user");
+                g.writeName("parts");
+                g.writeStartArray();
+                g.writeStartObject();
+                g.writeStringProperty("text", turn.text());
+                g.writeEndObject();
+                g.writeEndArray();
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    public GeminiReply decode(byte[] json) {
+        if (json == null || json.length == 0) {
+            return GeminiReply.EMPTY;
+        }
+        try (JsonParser p = mapper.createParser(json)) {
+            return read(p);
+        }
+    }
+
+    // Streamed SSE chunks arrive as Strings
+    public GeminiReply decode(String json) {
+        if (json == null || json.isEmpty()) {
+            return GeminiReply.EMPTY;
+        }
+        try (JsonParser p = mapper.createParser(json)) {
+            return read(p);
+        }
+    }
+
+    private static void writeParts(JsonGenerator g, String text) {
+        g.writeStartObject();
+        g.writeName("parts");
+        g.writeStartArray();
+        g.writeStartObject();
+        g.writeStringProperty("text", text);
+        g.writeEndObject();
+        g.writeEndArray();
+        g.writeEndObject();
+    }
+
+    private static GeminiReply read(JsonParser p) {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            return GeminiReply.EMPTY;
+        }
+        Candidate candidate = new Candidate();
+        GeminiReply.Usage usage = null;
+        while (p.nextToken() == JsonToken.PROPERTY_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("candidates".equals(name) && value == JsonToken.START_ARRAY) {
+                // Only the first candidate is used; the rest are skipped
+                JsonToken first = p.nextToken();
+                if (first == JsonToken.START_OBJECT) {
+                    readCandidate(p, candidate);
+                } else {
+                    p.skipChildren();
+                }
+                if (first != JsonToken.END_ARRAY) {
+                    while (p.nextToken() != JsonToken.END_ARRAY) {
+                        p.skipChildren();
+                    }
+                }
+            } else if ("usageMetadata".equals(name) && value == JsonToken.START_OBJECT) {
+                usage = readUsage(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return new GeminiReply(candidate.text(), candidate.finishReason, usage);
+    }
+
+    private static void readCandidate(JsonParser p, Candidate candidate) {
+        while (p.nextToken() == JsonToken.PROPERTY_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("content".equals(name) && value == JsonToken.START_OBJECT) {
+                readContent(p, candidate);
+            } else if ("finishReason".equals(name) && value == JsonToken.VALUE_STRING) {
+                candidate.finishReason = p.getString();
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void readContent(JsonParser p, Candidate candidate) {
+        while (p.nextToken() == JsonToken.PROPERTY_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if (!"parts".equals(name) || value != JsonToken.START_ARRAY) {
+                p.skipChildren();
+                continue;
+            }
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.PROPERTY_NAME) {
+                    String field = p.currentName();
+                    if (p.nextToken() == JsonToken.VALUE_STRING && "text".equals(field)) {
+                        candidate.append(p.getString());
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    private static GeminiReply.Usage readUsage(JsonParser p) {
+        int prompt = 0;
+        int candidates = 0;
+        int total = 0;
+        while (p.nextToken() == JsonToken.PROPERTY_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if (value != JsonToken.VALUE_NUMBER_INT) {
+                p.skipChildren();
+                continue;
+            }
+            switch (name) {
+                case "promptTokenCount" -> prompt = p.getIntValue();
+                case "candidatesTokenCount" -> candidates = p.getIntValue();
+                case "totalTokenCount" -> total = p.getIntValue();
+                default -> { }
+            }
+        }
+        return new GeminiReply.Usage(prompt, candidates, total);
+    }
+
+    // Almost every reply is a single part, which is kept as is; only further parts pay for a copy
+    private static final class Candidate {
+        private String first;
+        private StringBuilder joined;
+        private String finishReason;
+
+        private void append(String part) {
+            if (first == null) {
+                first = part;
+            } else {
+                if (joined == null) {
+                    joined = new StringBuilder(first.length() + part.length()).append(first);
+                }
+                joined.append(part);
+            }
+        }
+
+        private String text() {
+            return joined != null ? joined.toString() : first;
+        }
+    }
+}
@@ -1,63 +1,346 @@
 package com.devaraj.AIClone.service;
 
-import org.springframework.beans.factory.annotation.Value;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.stereotype.Service;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devaraj.AIClone.dto.PromptContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+import tools.jackson.core.JacksonException;
+
+/**
+ * One Gemini model over the REST API, with admission, retries, hedging and a circuit breaker of its own.
+ * Built per configured model by LlmConfig; the models share one AdmissionController (one API key's quota).
+ */
+public class GeminiService implements LlmProvider {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    // Returned when a response cannot be parsed; callers must not treat it as a real answer (e.g. cache it)
+    public static final String FALLBACK_REPLY = "Sorry, I couldn't understand the response.";
+
+    // Fairness key for calls that do not say who they are for
+    private static final String DEFAULT_CALLER = "anonymous";
+
+    private final String apiKey;
+    private final String model;
+    private final WebClient webClient;
+    private final GeminiCodec codec = new GeminiCodec();
 
-import tools.jackson.databind.JsonNode;
-import tools.jackson.databind.ObjectMapper;
+    // Caps in-flight upstream calls and queues the rest fairly per caller; see AdmissionController
+    private final AdmissionController admission;
 
-@Service
-public class GeminiService {
+    // Per attempt: the whole response for generateContent, the gap between chunks when streaming
+    private final Duration timeout;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration hedgeDelay;
+    private final CircuitBreaker breaker;
+    private final MeterRegistry meterRegistry;
 
-    @Value("${gemini.api.key}")
-    private String apiKey;
+    public GeminiService(
+            String apiKey,
+            String baseUrl,
+            String model,
+            AdmissionController admission,
+            MeterRegistry meterRegistry,
+            int connectTimeoutMs,
+            long timeoutMs,
+            int maxAttempts,
+            long backoffMs,
+            long hedgeDelayMs,
+            double breakerFailureRate,
+            int breakerWindow,
+            long breakerOpenMs
+    ) {
+        this.apiKey = apiKey;
+        this.model = model;
+        this.admission = admission;
+        this.meterRegistry = meterRegistry;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoff = Duration.ofMillis(backoffMs);
+        this.hedgeDelay = Duration.ofMillis(hedgeDelayMs);
+        this.breaker = new CircuitBreaker(breakerFailureRate, breakerWindow, breakerOpenMs);
 
-    private final WebClient webClient = WebClient.builder()
-            .baseUrl("https://generativelanguage.googleapis.com")
-            .build();
+        // The default pool allows only 2x cores connections, far fewer than the permits we hand out.
+        // A hedged call can hold two connections for one permit.
+        int maxConcurrency = admission.maxLimit();
+        ConnectionProvider pool = ConnectionProvider.builder("gemini-" + model)
+                .maxConnections(hedgeDelayMs > 0 ? 2 * maxConcurrency : maxConcurrency)
+                .pendingAcquireTimeout(Duration.ofMillis(connectTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .evictInBackground(Duration.ofSeconds(60))
+                .build();
+        HttpClient http = HttpClient.create(pool)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .keepAlive(true);
+        this.webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(http))
+                .build();
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
 
     public String generateText(String prompt) {
+        return generateText(PromptContext.of(prompt));
+    }
+
+    public String generateText(PromptContext context) {
+        return generateText(context, DEFAULT_CALLER);
+    }
+
+    /**
+     * Upstream failures surface as 502/503/504 (see translate); only an unparseable 200 becomes FALLBACK_REPLY.
+     * {@code caller} is the fairness key for admission (e.g. "user:42").
+     */
+    @Override
+    public String generateText(PromptContext context, String caller) {
+        return generateText(context, caller, () -> {});
+    }
 
-        String body = """
-        {
-          "contents": [
-            {
-              "parts": [
-                { "text": "%s" }
-              ]
+    @Override
+    public String generateText(PromptContext context, String caller, Runnable onAdmitted) {
+        AdmissionController.Permit permit = admission.acquire(caller);
+        // The limiter is fed the last attempt only: earlier attempts and their backoffs say nothing about load
+        AtomicLong attemptStart = new AtomicLong();
+        long latencyNanos = -1;
+        try {
+            onAdmitted.run();
+            byte[] body = codec.encode(context);
+            Mono<byte[]> call = guarded("generate", webClient.post()
+                    .uri("/v1/models/" + model + ":generateContent?key=" + apiKey)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(body)
+                    .retrieve()
+                    .bodyToMono(byte[].class)
+                    .timeout(timeout));
+
+            byte[] response = hedged(call)
+                    .doOnSubscribe(s -> attemptStart.set(System.nanoTime()))
+                    .retryWhen(retry(e -> true))
+                    .onErrorMap(GeminiService::translate)
+                    .block();
+
+            latencyNanos = System.nanoTime() - attemptStart.get();
+            return extractText(response);
+        } finally {
+            if (latencyNanos >= 0) {
+                permit.complete(latencyNanos);
+            } else {
+                permit.release();
             }
-          ]
         }
-        """.formatted(prompt.replace("\"", "\\\""));
+    }
 
-        String response = webClient.post()
-                .uri("/v1/models/gemini-2.5-flash:generateContent?key=" + apiKey)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(String.class)
-                .block();
+    /**
+     * Streams the reply as it is generated. Each element is the text delta of one
+     * streamGenerateContent chunk; cancelling the subscription aborts the upstream call.
+     */
+    public Flux<String> streamText(String prompt) {
+        return streamText(PromptContext.of(prompt));
+    }
 
-        return extractText(response);
+    public Flux<String> streamText(PromptContext context) {
+        return streamText(context, DEFAULT_CALLER);
     }
 
-    private String extractText(String response) {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(response);
+    // A stream waits for admission without blocking, and holds its permit until it completes, fails or is cancelled.
+    // The limiter is fed the time to the first chunk of the last attempt, not the length of the reply
+    @Override
+    public Flux<String> streamText(PromptContext context, String caller) {
+        return streamText(context, caller, () -> {});
+    }
 
-            return root.path("candidates")
-                    .get(0)
-                    .path("content")
-                    .path("parts")
-                    .get(0)
-                    .path("text")
-                    .asText();
+    @Override
+    public Flux<String> streamText(PromptContext context, String caller, Runnable onAdmitted) {
+        return admission.admit(caller).flatMapMany(permit -> {
+            onAdmitted.run();
+            // Once a token has been relayed a retry would repeat it, so only failures before that are retried
+            AtomicBoolean started = new AtomicBoolean();
+            AtomicLong attemptStart = new AtomicLong();
+            AtomicLong firstChunkNanos = new AtomicLong();
+            byte[] body = codec.encode(context);
+            return guarded("stream", webClient.post()
+                    .uri("/v1/models/" + model + ":streamGenerateContent?alt=sse&key=" + apiKey)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .bodyValue(body)
+                    .retrieve()
+                    .bodyToFlux(SSE_TYPE)
+                    .timeout(timeout)
+                    .mapNotNull(ServerSentEvent::data)
+                    .map(this::extractChunkText)
+                    .filter(text -> !text.isEmpty())
+                    .doOnNext(text -> {
+                        if (started.compareAndSet(false, true)) {
+                            firstChunkNanos.set(System.nanoTime() - attemptStart.get());
+                        }
+                    }))
+                    .doOnSubscribe(s -> attemptStart.set(System.nanoTime()))
+                    .retryWhen(retry(e -> !started.get()))
+                    .onErrorMap(GeminiService::translate)
+                    .doOnComplete(() -> permit.complete(started.get()
+                            ? firstChunkNanos.get() : System.nanoTime() - attemptStart.get()))
+                    .doFinally(signal -> permit.release());
+        });
+    }
 
-        } catch (Exception e) {
-            return "Sorry, I couldn't understand the response.";
+    CircuitBreaker.State breakerState() {
+        return breaker.state();
+    }
+
+    // One attempt: fails fast while the breaker is open, and reports its outcome to the breaker and to llm.upstream
+    private <T> Mono<T> guarded(String call, Mono<T> attempt) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            if (!breaker.tryAcquire()) {
+                record(sample, call, "breaker_open");
+                return Mono.error(new CircuitBreaker.OpenException());
+            }
+            return attempt.doOnSuccess(v -> {
+                        breaker.onSuccess();
+                        record(sample, call, "ok");
+                    })
+                    .doOnError(e -> recordFailure(sample, call, e))
+                    .doOnCancel(() -> {
+                        breaker.onCancel();
+                        record(sample, call, "cancelled");
+                    });
+        });
+    }
+
+    private <T> Flux<T> guarded(String call, Flux<T> attempt) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            if (!breaker.tryAcquire()) {
+                record(sample, call, "breaker_open");
+                return Flux.error(new CircuitBreaker.OpenException());
+            }
+            return attempt.doOnComplete(() -> {
+                        breaker.onSuccess();
+                        record(sample, call, "ok");
+                    })
+                    .doOnError(e -> recordFailure(sample, call, e))
+                    .doOnCancel(() -> {
+                        breaker.onCancel();
+                        record(sample, call, "cancelled");
+                    });
+        });
+    }
+
+    private void record(Timer.Sample sample, String call, String status) {
+        sample.stop(meterRegistry.timer("llm.upstream", "model", model, "call", call, "status", status));
+    }
+
+    // A rejected request (4xx other than 429) is our problem, not a sign that upstream is unhealthy
+    private void recordFailure(Timer.Sample sample, String call, Throwable e) {
+        record(sample, call, status(e));
+        if (isTransient(e)) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+
+    // If the first attempt has not answered after hedgeDelay, race a second one and take whichever answers first
+    private <T> Mono<T> hedged(Mono<T> call) {
+        if (hedgeDelay.isZero() || hedgeDelay.isNegative()) {
+            return call;
+        }
+        return Mono.firstWithValue(call, Mono.delay(hedgeDelay).then(call))
+                .onErrorMap(NoSuchElementException.class, e -> e.getSuppressed().length > 0 ? e.getSuppressed()[0] : e);
+    }
+
+    // Exponential backoff with 50% jitter, on 429/5xx, timeouts and connection failures only
+    private Retry retry(Predicate<Throwable> allowed) {
+        return Retry.backoff(maxAttempts - 1, backoff)
+                .maxBackoff(backoff.multipliedBy(16))
+                .jitter(0.5)
+                .filter(e -> isTransient(e) && allowed.test(e))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    // HTTP status for upstream responses, otherwise the kind of failure; a small, fixed set of tag values
+    private static String status(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return String.valueOf(response.getStatusCode().value());
+        }
+        if (e instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof WebClientRequestException) {
+            return "connect_error";
+        }
+        return "error";
+    }
+
+    private static boolean isTransient(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().value() == 429 || response.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+
+    private static Throwable translate(Throwable e) {
+        if (e instanceof ResponseStatusException) {
+            return e;
         }
+        if (e instanceof CircuitBreaker.OpenException) {
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "The assistant is temporarily unavailable, please try again shortly");
+        }
+        if (e instanceof TimeoutException) {
+            return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "The assistant took too long to answer", e);
+        }
+        if (e instanceof WebClientResponseException response && response.getStatusCode().value() == 429) {
+            return busy();
+        }
+        return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "The assistant could not be reached", e);
+    }
+
+    private static ResponseStatusException busy() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The assistant is busy, please try again shortly");
+    }
+
+    private String extractText(byte[] response) {
+        try {
+            String text = codec.decode(response).text();
+            return text == null ? FALLBACK_REPLY : text;
+        } catch (JacksonException e) {
+            return FALLBACK_REPLY;
+        }
+    }
+
+    // A streamed chunk may carry only metadata (e.g. the final finishReason), so missing text is empty, not an error
+    private String extractChunkText(String chunk) {
+        String text = codec.decode(chunk).text();
+        return text == null ? "" : text;
     }
 }
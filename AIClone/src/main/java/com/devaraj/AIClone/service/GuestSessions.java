@@ -0,0 +1,328 @@
+package com.devaraj.AIClone.service;
+
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devaraj.AIClone.dto.ChatTurn;
+import com.devaraj.AIClone.dto.ConversationResponse;
+import com.devaraj.AIClone.dto.ExportLine;
+import com.devaraj.AIClone.dto.MessageView;
+import com.devaraj.AIClone.dto.PromptContext;
+import com.devaraj.AIClone.entity.TimeOrderedIdGenerator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Memory-only chat sessions for guests: each guest has its own conversations, nothing is written
+ * to the database, and everything is gone after a restart.
+ *
+ * Guests are identified by a random negative user id (real users' ids are positive), carried in
+ * their JWT like any other user id. Sessions are kept in least-recently-used order and dropped
+ * after guest.ttl-ms without a request, or eldest first when there are more than guest.max-sessions
+ * or they hold more than guest.max-bytes between them. A session over guest.max-session-bytes
+ * loses its oldest conversations, then the oldest messages of the one being written to, so one
+ * guest cannot push out everyone else; a message over half of it is refused with a 413.
+ */
+@Service
+public class GuestSessions {
+
+    // Rough bookkeeping cost per message / conversation (objects, list slot, String headers) on top of 2 bytes a char
+    private static final int MESSAGE_OVERHEAD_BYTES = 96;
+    private static final int CONVERSATION_OVERHEAD_BYTES = 256;
+
+    // title is set when this turn created the conversation
+    public record Turn(Long conversationId, String title, PromptContext context) {}
+
+    private static final class Session {
+        private final LinkedHashMap<Long, Chat> chats = new LinkedHashMap<>();
+        private long nextChatId = 1;
+        private long lastAccessMs;
+        private long bytes;
+    }
+
+    private static final class Chat {
+        private final long id;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final List<MessageView> messages = new ArrayList<>();
+        private String title;
+        private long bytes;
+
+        private Chat(long id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+    }
+
+    private final SecureRandom random = new SecureRandom();
+    private final long ttlMs;
+    private final int maxSessions;
+    private final long maxBytes;
+    private final long maxSessionBytes;
+    private final int tokenBudget;
+
+    // Access order: the eldest entry is the least recently used, which is also the longest idle
+    private final LinkedHashMap<Long, Session> sessions = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytesHeld;
+
+    private final Counter expired;
+    private final Counter evictedForRoom;
+    private final Counter promoted;
+
+    public GuestSessions(
+            MeterRegistry meterRegistry,
+            @Value("${guest.ttl-ms:7200000}") long ttlMs,
+            @Value("${guest.max-sessions:10000}") int maxSessions,
+            @Value("${guest.max-bytes:67108864}") long maxBytes,
+            @Value("${guest.max-session-bytes:1048576}") long maxSessionBytes,
+            @Value("${chat.context.token-budget:8000}") int tokenBudget
+    ) {
+        this.ttlMs = ttlMs;
+        this.maxSessions = maxSessions;
+        this.maxBytes = maxBytes;
+        this.maxSessionBytes = maxSessionBytes;
+        this.tokenBudget = tokenBudget;
+
+        meterRegistry.gauge("guest.sessions", this, GuestSessions::liveSessions);
+        meterRegistry.gauge("guest.bytes", this, GuestSessions::bytesHeld);
+        this.expired = Counter.builder("guest.sessions.evicted").tag("reason", "idle").register(meterRegistry);
+        this.evictedForRoom = Counter.builder("guest.sessions.evicted").tag("reason", "capacity").register(meterRegistry);
+        this.promoted = Counter.builder("guest.sessions.promoted").register(meterRegistry);
+    }
+
+    public static boolean isGuest(Long userId) {
+        return userId != null && userId < 0;
+    }
+
+    /** Starts a session and returns the guest's user id. */
+    public synchronized long create() {
+        long id;
+        do {
+            id = -1 - (random.nextLong() & Long.MAX_VALUE);
+        } while (id == Long.MIN_VALUE || sessions.containsKey(id));
+        session(id);
+        return id;
+    }
+
+    public synchronized int liveSessions() {
+        return sessions.size();
+    }
+
+    public synchronized long bytesHeld() {
+        return bytesHeld;
+    }
+
+    // Sidebar page, newest first, like ConversationRepository.findLatestPage / findPageBefore
+    public synchronized List<ConversationResponse> history(long guestId, Long beforeId, int limit) {
+        List<ConversationResponse> page = new ArrayList<>();
+        List<Chat> chats = new ArrayList<>(session(guestId).chats.values());
+        Collections.reverse(chats);
+        boolean started = beforeId == null;
+        for (Chat chat : chats) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (started) {
+                page.add(new ConversationResponse(chat.id, chat.title, chat.createdAt));
+            } else if (chat.id == beforeId) {
+                started = true;
+            }
+        }
+        return page;
+    }
+
+    // One page of messages, oldest first: the latest page, or the page before message beforeId. A beforeId the
+    // per-session cap has trimmed ends the history, as in history()
+    public synchronized List<MessageView> messages(long guestId, Long conversationId, Long beforeId, int limit) {
+        Chat chat = session(guestId).chats.get(conversationId);
+        if (chat == null) {
+            return List.of();
+        }
+        int end = chat.messages.size();
+        if (beforeId != null) {
+            end = 0;
+            while (end < chat.messages.size() && !chat.messages.get(end).id().equals(beforeId)) {
+                end++;
+            }
+            if (end == chat.messages.size()) {
+                return List.of();
+            }
+        }
+        return List.copyOf(chat.messages.subList(Math.max(0, end - limit), end));
+    }
+
+    /**
+     * Records the user's message (in a new conversation if conversationId is null) and returns the
+     * prompt: the newest earlier turns that fit the token budget, then the message.
+     */
+    public synchronized Turn startTurn(long guestId, Long conversationId, String message) {
+        // Half the cap leaves room for the reply, which would otherwise trim the message straight away
+        if (MESSAGE_OVERHEAD_BYTES + 2L * message.length() > maxSessionBytes / 2) {
+            throw new ResponseStatusException(HttpStatus.CONTENT_TOO_LARGE, "Message is too long for a guest session");
+        }
+        Session session = session(guestId);
+        Chat chat;
+        if (conversationId == null) {
+            chat = new Chat(session.nextChatId++, message.length() > 30 ? message.substring(0, 30) + "..." : message);
+            session.chats.put(chat.id, chat);
+            grow(session, chat, CONVERSATION_OVERHEAD_BYTES + 2L * chat.title.length());
+        } else {
+            chat = session.chats.get(conversationId);
+            if (chat == null) {
+                throw new RuntimeException("Conversation not found");
+            }
+        }
+
+        int available = tokenBudget - ContextAssembler.estimateTokens(message);
+        List<ChatTurn> included = new ArrayList<>();
+        for (int i = chat.messages.size() - 1; i >= 0; i--) {
+            MessageView m = chat.messages.get(i);
+            int cost = ContextAssembler.estimateTokens(m.content());
+            if (cost > available) {
+                break;
+            }
+            available -= cost;
+            included.add(new ChatTurn(m.role(), m.content()));
+        }
+        Collections.reverse(included);
+        included.add(new ChatTurn("user", message));
+
+        add(guestId, session, chat, "user", message);
+        return new Turn(chat.id, conversationId == null ? chat.title : null, new PromptContext(null, included));
+    }
+
+    public synchronized void addReply(long guestId, Long conversationId, String text) {
+        Session session = session(guestId);
+        Chat chat = session.chats.get(conversationId);
+        if (chat != null) {
+            add(guestId, session, chat, "assistant", text);
+        }
+    }
+
+    public synchronized void rename(long guestId, Long conversationId, String title) {
+        Session session = session(guestId);
+        Chat chat = session.chats.get(conversationId);
+        if (chat == null) {
+            throw new RuntimeException("Unauthorized: You do not own this conversation");
+        }
+        grow(session, chat, 2L * (title.length() - chat.title.length()));
+        chat.title = title;
+    }
+
+    public synchronized void delete(long guestId, Long conversationId) {
+        Session session = session(guestId);
+        Chat chat = session.chats.remove(conversationId);
+        if (chat == null) {
+            throw new RuntimeException("Conversation not found");
+        }
+        release(session, chat.bytes);
+    }
+
+    /** The session's conversations in export form, ready to be stored for a new account; the session stays. */
+    public synchronized List<ExportLine> snapshot(long guestId) {
+        Session session = sessions.get(guestId);
+        if (session == null) {
+            return List.of();
+        }
+        List<ExportLine> lines = new ArrayList<>();
+        for (Chat chat : session.chats.values()) {
+            lines.add(ExportLine.conversation(new ConversationResponse(chat.id, chat.title, chat.createdAt)));
+            chat.messages.forEach(m -> lines.add(ExportLine.message(chat.id, m)));
+        }
+        return lines;
+    }
+
+    // Ends the session once its snapshot is stored for the new account
+    public synchronized void promote(long guestId) {
+        Session session = sessions.remove(guestId);
+        if (session != null) {
+            bytesHeld -= session.bytes;
+            promoted.increment();
+        }
+    }
+
+    // The guest's session, touched; a new empty one if it expired or was evicted
+    private Session session(long guestId) {
+        long now = System.currentTimeMillis();
+        expireIdle(now);
+        Session session = sessions.get(guestId);
+        if (session == null) {
+            session = new Session();
+            sessions.put(guestId, session);
+            evictForRoom(guestId);
+        }
+        session.lastAccessMs = now;
+        return session;
+    }
+
+    private void add(long guestId, Session session, Chat chat, String role, String text) {
+        chat.messages.add(new MessageView(TimeOrderedIdGenerator.next(), role, text, LocalDateTime.now()));
+        grow(session, chat, MESSAGE_OVERHEAD_BYTES + 2L * text.length());
+
+        // Over its own cap: drop this guest's oldest other conversations first
+        Iterator<Chat> oldest = session.chats.values().iterator();
+        while (session.bytes > maxSessionBytes && oldest.hasNext()) {
+            Chat victim = oldest.next();
+            if (victim != chat) {
+                oldest.remove();
+                release(session, victim.bytes);
+            }
+        }
+        // Still over: the chat itself is too long, so it forgets its oldest messages
+        int trimmed = 0;
+        while (session.bytes > maxSessionBytes && trimmed < chat.messages.size()) {
+            grow(session, chat, -(MESSAGE_OVERHEAD_BYTES + 2L * chat.messages.get(trimmed++).content().length()));
+        }
+        chat.messages.subList(0, trimmed).clear();
+        evictForRoom(guestId);
+    }
+
+    private void grow(Session session, Chat chat, long delta) {
+        chat.bytes += delta;
+        session.bytes += delta;
+        bytesHeld += delta;
+    }
+
+    private void release(Session session, long bytes) {
+        session.bytes -= bytes;
+        bytesHeld -= bytes;
+    }
+
+    private void expireIdle(long now) {
+        Iterator<Session> eldest = sessions.values().iterator();
+        while (eldest.hasNext()) {
+            Session session = eldest.next();
+            if (now - session.lastAccessMs < ttlMs) {
+                break;
+            }
+            eldest.remove();
+            bytesHeld -= session.bytes;
+            expired.increment();
+        }
+    }
+
+    // Least recently used sessions go first; the one being served (keep) is spared
+    private void evictForRoom(long keep) {
+        Iterator<Map.Entry<Long, Session>> eldest = sessions.entrySet().iterator();
+        while ((sessions.size() > maxSessions || bytesHeld > maxBytes) && eldest.hasNext()) {
+            Map.Entry<Long, Session> entry = eldest.next();
+            if (entry.getKey() == keep) {
+                continue;
+            }
+            eldest.remove();
+            bytesHeld -= entry.getValue().bytes;
+            evictedForRoom.increment();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.devaraj.AIClone.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.WebRequest;
+
+import com.devaraj.AIClone.entity.TimeOrderedIdGenerator;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Version stamps for a user's sidebar list and for the messages of each of their conversations,
+ * sent as ETags so a client that already has the current copy gets a 304 without any query.
+ *
+ * Versions are kept in memory and bumped after every change made through this instance
+ * (ChatService, ConversationTransfer). A key with no change recorded has the floor version, which
+ * is raised whenever the map is cleared (at max-entries). Versions are TimeOrderedIdGenerator
+ * values, so a new one is above anything issued before, by this process or an earlier one: a tag
+ * only matches while nothing has changed since it was sent. With several instances behind a load
+ * balancer each would miss the others' changes, so tags are off by default with chat.multi-instance=true
+ * and startup fails if chat.history.etags.enabled=true asks for them there.
+ *
+ * Guests get no tags: their history is in memory anyway, and expiry changes it without a bump.
+ */
+@Service
+public class HistoryVersions {
+
+    // conversationId null: the sidebar list
+    private record Key(Long userId, Long conversationId) {}
+
+    private final ConcurrentHashMap<Key, Long> versions = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxEntries;
+    private volatile long floor = TimeOrderedIdGenerator.next();
+
+    public HistoryVersions(
+            MeterRegistry meterRegistry,
+            @Value("${chat.multi-instance:false}") boolean multiInstance,
+            @Value("${chat.history.etags.enabled:}") String enabled,
+            @Value("${chat.history.etags.max-entries:100000}") int maxEntries
+    ) {
+        if (enabled.isBlank()) {
+            this.enabled = !multiInstance;
+        } else if (Boolean.parseBoolean(enabled.trim()) && multiInstance) {
+            throw new IllegalStateException("chat.history.etags.enabled=true cannot be used with chat.multi-instance=true:"
+                    + " each instance would answer 304 without seeing the others' changes");
+        } else {
+            this.enabled = Boolean.parseBoolean(enabled.trim());
+        }
+        this.meterRegistry = meterRegistry;
+        this.maxEntries = maxEntries;
+    }
+
+    /** The ETag of the user's sidebar list, or null when there is none to send. */
+    public String historyTag(Long userId) {
+        return tag(new Key(userId, null));
+    }
+
+    /** The ETag of a conversation's messages as this user sees them, or null when there is none to send. */
+    public String messagesTag(Long userId, Long conversationId) {
+        return tag(new Key(userId, conversationId));
+    }
+
+    public void historyChanged(Long userId) {
+        bump(new Key(userId, null));
+    }
+
+    public void conversationChanged(Long userId, Long conversationId) {
+        bump(new Key(userId, conversationId));
+    }
+
+    /**
+     * True when the request's If-None-Match has the current tag; the 304 is then already set up on the
+     * response. Take the tag before reading the data, so a change in between makes the next request miss.
+     */
+    public boolean notModified(WebRequest request, String tag, String endpoint) {
+        if (tag == null || request.getHeader(HttpHeaders.IF_NONE_MATCH) == null) {
+            return false;
+        }
+        boolean unchanged = request.checkNotModified(tag);
+        meterRegistry.counter("chat.history.revalidated", "endpoint", endpoint, "result", unchanged ? "not_modified" : "changed")
+                .increment();
+        return unchanged;
+    }
+
+    private String tag(Key key) {
+        if (!enabled || GuestSessions.isGuest(key.userId())) {
+            return null;
+        }
+        // Weak: the body goes out gzipped or not, and Tomcat will not compress a response with a strong tag.
+        // The user id keeps one browser's tags for two accounts apart
+        String scope = key.conversationId() == null ? "h" : "c" + key.conversationId();
+        return "W/\"" + key.userId() + "-" + scope + "-" + Long.toString(versions.getOrDefault(key, floor), 36) + "\"";
+    }
+
+    // After the surrounding transaction commits: a bump readers can see before the change could vouch for old data
+    private void bump(Key key) {
+        if (!enabled || GuestSessions.isGuest(key.userId())) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(key);
+            }
+        });
+    }
+
+    private void put(Key key) {
+        if (versions.size() >= maxEntries) {
+            // Raise the floor before clearing, so a dropped key never falls back to a version already handed out
+            floor = TimeOrderedIdGenerator.next();
+            versions.clear();
+        }
+        versions.put(key, TimeOrderedIdGenerator.next());
+    }
+}
@@ -0,0 +1,50 @@
+package com.devaraj.AIClone.service;
+
+import com.devaraj.AIClone.dto.PromptContext;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * A model that answers chat prompts. {@code caller} is the fairness key for admission (e.g. "user:42").
+ *
+ * Failures surface as ResponseStatusException: 503 when the model is busy or its breaker is open,
+ * 504 when it took too long, 502 when it could not be reached.
+ */
+public interface LlmProvider {
+
+    /** A reply and the model that wrote it. */
+    record Reply(String text, String model) {}
+
+    // Reported in metrics
+    String model();
+
+    // The model that would answer this prompt now; a router picks per prompt. Part of the prompt cache key
+    default String model(PromptContext context) {
+        return model();
+    }
+
+    String generateText(PromptContext context, String caller);
+
+    // generateText, running onAdmitted once the call has left the local admission queue and goes to the model,
+    // so a router can time the model without the wait in front of it
+    default String generateText(PromptContext context, String caller, Runnable onAdmitted) {
+        onAdmitted.run();
+        return generateText(context, caller);
+    }
+
+    // generateText, also naming the model that answered (a router may have fallen back to another one)
+    default Reply generate(PromptContext context, String caller) {
+        return new Reply(generateText(context, caller), model());
+    }
+
+    // Each element is a text delta; cancelling the subscription aborts the call
+    Flux<String> streamText(PromptContext context, String caller);
+
+    // streamText, running onAdmitted as for generateText
+    default Flux<String> streamText(PromptContext context, String caller, Runnable onAdmitted) {
+        return Flux.defer(() -> {
+            onAdmitted.run();
+            return streamText(context, caller);
+        });
+    }
+}
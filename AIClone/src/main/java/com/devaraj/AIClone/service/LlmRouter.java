@@ -0,0 +1,274 @@
+package com.devaraj.AIClone.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devaraj.AIClone.dto.ChatTurn;
+import com.devaraj.AIClone.dto.PromptContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+
+/**
+ * Picks the model for each request from the configured routes and falls back to the next one when
+ * the chosen model fails.
+ *
+ * Each model keeps an EWMA of its latency (time from admission until the reply starts: the whole
+ * reply for generateText, the first chunk when streaming) and of its error rate. The wait in the
+ * admission queue is left out: every model shares that queue, so switching models would not shorten it. A model is healthy while
+ * both are under max-latency-ms / max-error-rate. Per request the router:
+ * <ol>
+ * <li>drops models whose max-prompt-tokens the prompt exceeds;</li>
+ * <li>takes the cheapest healthy model for prompts up to small-prompt-tokens, otherwise the first
+ *     healthy one in configured order (the first route is the preferred model);</li>
+ * <li>once per probe-interval-ms sends one request to an unhealthy model, so it can recover;</li>
+ * <li>with no healthy model, tries them all, lowest error rate first.</li>
+ * </ol>
+ * The remaining fitting models follow as fallbacks, tried in turn on a 5xx (busy, breaker open,
+ * timeout, unreachable). A stream only falls back before its first chunk has been relayed. A call
+ * shed by admission neither falls back nor counts against the model: it never reached it.
+ */
+public class LlmRouter implements LlmProvider {
+
+    /** One model the router may use; costPer1kTokens is in any unit, as long as every route uses the same. */
+    public record Route(LlmProvider provider, double costPer1kTokens, int maxPromptTokens) {}
+
+    private record Choice(Model model, String reason) {}
+
+    private static final class Model {
+        private final LlmProvider provider;
+        private final double cost;
+        private final int maxPromptTokens;
+        private final Timer ok;
+        private final Timer failed;
+
+        // -1 until the first successful call
+        private double latencyMs = -1;
+        private double errorRate;
+        private long lastCallMs;
+        private final AtomicLong lastProbeMs = new AtomicLong();
+
+        private Model(Route route, MeterRegistry registry) {
+            this.provider = route.provider();
+            this.cost = route.costPer1kTokens();
+            this.maxPromptTokens = route.maxPromptTokens();
+            this.ok = Timer.builder("llm.model.latency").tag("model", provider.model()).tag("outcome", "ok")
+                    .description("Time from admission until the reply starts arriving, per model")
+                    .register(registry);
+            this.failed = Timer.builder("llm.model.latency").tag("model", provider.model()).tag("outcome", "error")
+                    .register(registry);
+        }
+
+        private synchronized double latencyMs() {
+            return latencyMs;
+        }
+
+        private synchronized double errorRate() {
+            return errorRate;
+        }
+
+        private synchronized long lastCallMs() {
+            return lastCallMs;
+        }
+    }
+
+    private final List<Model> models;
+    private final MeterRegistry meterRegistry;
+    private final double alpha;
+    private final double maxErrorRate;
+    private final long maxLatencyMs;
+    private final int smallPromptTokens;
+    private final long probeIntervalMs;
+
+    public LlmRouter(List<Route> routes, MeterRegistry meterRegistry, double alpha, double maxErrorRate,
+                     long maxLatencyMs, int smallPromptTokens, long probeIntervalMs) {
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("At least one model route is required");
+        }
+        this.models = routes.stream().map(r -> new Model(r, meterRegistry)).toList();
+        this.meterRegistry = meterRegistry;
+        this.alpha = alpha;
+        this.maxErrorRate = maxErrorRate;
+        this.maxLatencyMs = maxLatencyMs;
+        this.smallPromptTokens = smallPromptTokens;
+        this.probeIntervalMs = probeIntervalMs;
+
+        for (Model m : models) {
+            meterRegistry.gauge("llm.model.latency.ewma", Tags.of("model", m.provider.model()), m, Model::latencyMs);
+            meterRegistry.gauge("llm.model.error.rate", Tags.of("model", m.provider.model()), m, Model::errorRate);
+        }
+    }
+
+    // The preferred model
+    @Override
+    public String model() {
+        return models.get(0).provider.model();
+    }
+
+    // The model plan() would start with, short of a probe
+    @Override
+    public String model(PromptContext context) {
+        int promptTokens = promptTokens(context);
+        List<Model> fitting = fitting(promptTokens);
+        return first(fitting, fitting.stream().filter(this::healthy).toList(), promptTokens, false).model().provider.model();
+    }
+
+    @Override
+    public String generateText(PromptContext context, String caller) {
+        return generate(context, caller).text();
+    }
+
+    @Override
+    public Reply generate(PromptContext context, String caller) {
+        List<Choice> plan = plan(context);
+        for (int i = 0; ; i++) {
+            Choice choice = plan.get(i);
+            routed(choice);
+            AtomicLong start = new AtomicLong(System.nanoTime());
+            try {
+                String reply = choice.model().provider.generateText(context, caller, () -> start.set(System.nanoTime()));
+                record(choice.model(), System.nanoTime() - start.get(), true);
+                return new Reply(reply, choice.model().provider.model());
+            } catch (AdmissionController.ShedException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                record(choice.model(), System.nanoTime() - start.get(), false);
+                if (i + 1 == plan.size() || !worthFallingBack(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Flux<String> streamText(PromptContext context, String caller) {
+        return Flux.defer(() -> stream(plan(context), 0, context, caller));
+    }
+
+    private Flux<String> stream(List<Choice> plan, int i, PromptContext context, String caller) {
+        Choice choice = plan.get(i);
+        return Flux.defer(() -> {
+            routed(choice);
+            AtomicLong start = new AtomicLong(System.nanoTime());
+            AtomicBoolean started = new AtomicBoolean();
+            Flux<String> attempt = choice.model().provider.streamText(context, caller, () -> start.set(System.nanoTime()))
+                    .doOnNext(text -> {
+                        if (started.compareAndSet(false, true)) {
+                            record(choice.model(), System.nanoTime() - start.get(), true);
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (started.compareAndSet(false, true)) {
+                            record(choice.model(), System.nanoTime() - start.get(), true);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (!(e instanceof AdmissionController.ShedException)) {
+                            record(choice.model(), System.nanoTime() - start.get(), false);
+                        }
+                    });
+            if (i + 1 == plan.size()) {
+                return attempt;
+            }
+            return attempt.onErrorResume(e -> !started.get() && worthFallingBack(e),
+                    e -> stream(plan, i + 1, context, caller));
+        });
+    }
+
+    // The models to try for this prompt, in order; the first carries the routing reason
+    private List<Choice> plan(PromptContext context) {
+        int promptTokens = promptTokens(context);
+        List<Model> fitting = fitting(promptTokens);
+        List<Model> healthy = fitting.stream().filter(this::healthy).toList();
+        Choice first = first(fitting, healthy, promptTokens, true);
+
+        List<Choice> plan = new ArrayList<>(fitting.size());
+        plan.add(first);
+        for (Model m : healthy) {
+            if (m != first.model()) {
+                plan.add(new Choice(m, "fallback"));
+            }
+        }
+        fitting.stream().filter(m -> !healthy.contains(m) && m != first.model())
+                .sorted(Comparator.comparingDouble(Model::errorRate))
+                .forEach(m -> plan.add(new Choice(m, "fallback")));
+        return plan;
+    }
+
+    private static int promptTokens(PromptContext context) {
+        int tokens = ContextAssembler.estimateTokens(context.summary());
+        for (ChatTurn turn : context.turns()) {
+            tokens += ContextAssembler.estimateTokens(turn.text());
+        }
+        return tokens;
+    }
+
+    private List<Model> fitting(int promptTokens) {
+        List<Model> fitting = models.stream().filter(m -> m.maxPromptTokens >= promptTokens).toList();
+        if (fitting.isEmpty()) {
+            // Nothing is large enough: the largest window truncates least
+            fitting = List.of(models.stream().max(Comparator.comparingInt(m -> m.maxPromptTokens)).orElseThrow());
+        }
+        return fitting;
+    }
+
+    private Choice first(List<Model> fitting, List<Model> healthy, int promptTokens, boolean mayProbe) {
+        long now = System.currentTimeMillis();
+        for (Model m : fitting) {
+            if (mayProbe && !healthy.contains(m) && probeDue(m, now)) {
+                return new Choice(m, "probe");
+            }
+        }
+        if (healthy.isEmpty()) {
+            return new Choice(fitting.stream().min(Comparator.comparingDouble(Model::errorRate)).orElseThrow(), "degraded");
+        }
+        return promptTokens <= smallPromptTokens
+                ? new Choice(healthy.stream().min(Comparator.comparingDouble(m -> m.cost)).orElseThrow(), "cheapest")
+                : new Choice(healthy.get(0), "preferred");
+    }
+
+    // A model with no successful call yet (latency -1) counts as fast
+    private boolean healthy(Model m) {
+        return m.errorRate() <= maxErrorRate && m.latencyMs() <= maxLatencyMs;
+    }
+
+    // One request per interval, and only if the model has not been called meanwhile (e.g. as a fallback)
+    private boolean probeDue(Model m, long now) {
+        long last = m.lastProbeMs.get();
+        return now - m.lastCallMs() >= probeIntervalMs && now - last >= probeIntervalMs
+                && m.lastProbeMs.compareAndSet(last, now);
+    }
+
+    private void record(Model m, long nanos, boolean success) {
+        (success ? m.ok : m.failed).record(nanos, TimeUnit.NANOSECONDS);
+        double ms = nanos / 1_000_000.0;
+        synchronized (m) {
+            if (success) {
+                m.latencyMs = m.latencyMs < 0 ? ms : alpha * ms + (1 - alpha) * m.latencyMs;
+            }
+            m.errorRate = alpha * (success ? 0 : 1) + (1 - alpha) * m.errorRate;
+            m.lastCallMs = System.currentTimeMillis();
+        }
+    }
+
+    private void routed(Choice choice) {
+        meterRegistry.counter("llm.route", "model", choice.model().provider.model(), "reason", choice.reason()).increment();
+    }
+
+    // Another model can help when this one was busy, down, slow or unreachable; not when the request itself was bad,
+    // nor when admission shed it (the models share one quota)
+    private static boolean worthFallingBack(Throwable e) {
+        if (e instanceof AdmissionController.ShedException) {
+            return false;
+        }
+        return !(e instanceof ResponseStatusException status) || status.getStatusCode().is5xxServerError();
+    }
+}
@@ -0,0 +1,296 @@
+package com.devaraj.AIClone.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.devaraj.AIClone.entity.Message;
+import com.devaraj.AIClone.entity.TimeOrderedIdGenerator;
+import com.devaraj.AIClone.repository.MessageRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persists chat messages, either straight through the repository or, with
+ * chat.persistence.write-behind=true, through a bounded queue that a background
+ * writer drains into batched JDBC inserts (multi-row with rewriteBatchedStatements).
+ *
+ * Queued messages already have their id and timestamp. Until they are in the table only
+ * the chat view (ChatService merges {@link #pending}) and the context assembler (through
+ * {@link #withPending}) see them; export and search read the table alone.
+ */
+@Slf4j
+@Service
+public class MessageWriter {
+
+    private static final String INSERT_SQL =
+            "insert into message (id, role, content, conversation_id, created_at) values (?, ?, ?, ?, ?)";
+    private static final int FLUSH_ATTEMPTS = 3;
+
+    private static final Comparator<Message> CHRONOLOGICAL =
+            Comparator.comparing(Message::getCreatedAt).thenComparing(Message::getId);
+
+    private final MessageRepository msgRepo;
+    private final JdbcTemplate jdbc;
+
+    private final boolean writeBehind;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long enqueueTimeoutMs;
+
+    private final BlockingQueue<Message> queue;
+    private final ConcurrentHashMap<Long, Queue<Message>> pendingByConversation = new ConcurrentHashMap<>();
+    // Held while a batch (or a written-through message) is filtered and inserted, and by discard()
+    private final Object flushLock = new Object();
+
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter dropped;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public MessageWriter(
+            MessageRepository msgRepo,
+            JdbcTemplate jdbc,
+            MeterRegistry meterRegistry,
+            @Value("${chat.persistence.write-behind:false}") boolean writeBehind,
+            @Value("${chat.persistence.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.persistence.batch-size:100}") int batchSize,
+            @Value("${chat.persistence.flush-interval-ms:50}") long flushIntervalMs,
+            @Value("${chat.persistence.enqueue-timeout-ms:1000}") long enqueueTimeoutMs
+    ) {
+        this.msgRepo = msgRepo;
+        this.jdbc = jdbc;
+        this.writeBehind = writeBehind;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        meterRegistry.gauge("chat.messages.write_behind.queue.depth", queue, Queue::size);
+        this.flushTimer = Timer.builder("chat.messages.write_behind.flush")
+                .description("Time to insert one batch of queued messages")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("chat.messages.write_behind.batch.size")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("chat.messages.write_behind.dropped")
+                .description("Queued messages that could not be inserted")
+                .register(meterRegistry);
+
+        if (writeBehind) {
+            writer = Thread.ofPlatform().name("message-writer").daemon().start(this::drainLoop);
+        } else {
+            writer = null;
+        }
+    }
+
+    public void save(Message m) {
+        if (!writeBehind) {
+            msgRepo.save(m);
+            return;
+        }
+
+        m.setId(TimeOrderedIdGenerator.next());
+        m.setCreatedAt(LocalDateTime.now());
+        pend(m);
+
+        boolean queued = false;
+        try {
+            queued = running && queue.offer(m, enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queued) {
+            // Queue saturated (or shutting down): write through rather than lose the message, unless the
+            // conversation was discarded while we waited, as flush() does
+            synchronized (flushLock) {
+                if (isPending(m)) {
+                    insert(List.of(m));
+                    unpend(m);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges messages still waiting in the queue into {@code stored}, in chronological order.
+     * Pending messages are snapshotted before the table is read, so a message flushed in between
+     * is seen exactly once.
+     */
+    public List<Message> withPending(Long conversationId, Supplier<List<Message>> stored) {
+        List<Message> snapshot = pending(conversationId);
+        List<Message> fromTable = stored.get();
+        if (snapshot.isEmpty()) {
+            return fromTable;
+        }
+
+        Set<Long> seen = new HashSet<>();
+        List<Message> merged = new ArrayList<>(fromTable.size() + snapshot.size());
+        for (Message m : fromTable) {
+            seen.add(m.getId());
+            merged.add(m);
+        }
+        for (Message m : snapshot) {
+            if (seen.add(m.getId())) {
+                merged.add(m);
+            }
+        }
+        merged.sort(CHRONOLOGICAL);
+        return merged;
+    }
+
+    // Messages of one conversation still waiting in the queue, oldest first
+    public List<Message> pending(Long conversationId) {
+        Queue<Message> pending = pendingByConversation.get(conversationId);
+        return pending == null ? List.of() : List.copyOf(pending);
+    }
+
+    /**
+     * The conversation is being deleted: its queued messages are dropped. A batch the writer has
+     * already taken, or a message being written through, either is in the table when this returns,
+     * so the purge that follows removes it, or leaves the conversation's messages out.
+     */
+    public void discard(Long conversationId) {
+        synchronized (flushLock) {
+            if (pendingByConversation.remove(conversationId) != null) {
+                queue.removeIf(m -> conversationId.equals(m.getConversation().getId()));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    // Flushes when a batch is full or flushIntervalMs after its first message, whichever comes first
+    private void drainLoop() {
+        List<Message> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Message first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    Message next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown is signalled through 'running'; keep draining what is queued
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Message> batch) {
+        synchronized (flushLock) {
+            // Discarded while the batch was being collected
+            batch.removeIf(m -> !isPending(m));
+            if (!batch.isEmpty()) {
+                insertBatch(batch);
+            }
+        }
+    }
+
+    private void insertBatch(List<Message> batch) {
+        long start = System.nanoTime();
+        try {
+            insertWithRetry(batch);
+        } catch (DataAccessException e) {
+            // One bad row (e.g. its conversation was just deleted) must not sink the whole batch
+            for (Message m : batch) {
+                try {
+                    insert(List.of(m));
+                } catch (DataAccessException rowError) {
+                    dropped.increment();
+                    log.warn("Write-behind: dropping message {}: {}", m.getId(), rowError.getMessage());
+                }
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSizes.record(batch.size());
+            batch.forEach(this::unpend);
+        }
+    }
+
+    private void insertWithRetry(List<Message> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                insert(batch);
+                return;
+            } catch (DataAccessException e) {
+                if (attempt == FLUSH_ATTEMPTS) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(100L << attempt);
+                } catch (InterruptedException ignored) {
+                    // keep retrying; shutdown waits for the queue to drain
+                }
+            }
+        }
+    }
+
+    private void insert(List<Message> batch) {
+        jdbc.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, m) -> {
+            ps.setLong(1, m.getId());
+            ps.setString(2, m.getRole());
+            ps.setString(3, m.getContent());
+            ps.setLong(4, m.getConversation().getId());
+            ps.setObject(5, m.getCreatedAt());
+        });
+    }
+
+    private void pend(Message m) {
+        pendingByConversation.compute(m.getConversation().getId(), (id, pending) -> {
+            Queue<Message> q = pending == null ? new ConcurrentLinkedQueue<>() : pending;
+            q.add(m);
+            return q;
+        });
+    }
+
+    private boolean isPending(Message m) {
+        Queue<Message> pending = pendingByConversation.get(m.getConversation().getId());
+        return pending != null && pending.contains(m);
+    }
+
+    private void unpend(Message m) {
+        pendingByConversation.computeIfPresent(m.getConversation().getId(), (id, pending) -> {
+            pending.remove(m);
+            return pending.isEmpty() ? null : pending;
+        });
+    }
+}
@@ -0,0 +1,164 @@
+package com.devaraj.AIClone.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.devaraj.AIClone.dto.ChatTurn;
+import com.devaraj.AIClone.dto.PromptContext;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Opt-in (chat.cache.enabled) response cache in front of {@link LlmProvider#generateText}.
+ *
+ * Replies are keyed by a SHA-256 of the model, the rolling summary and every turn with
+ * whitespace normalized, so only a prompt with the same context hits. A lookup uses the model
+ * the router would pick for the prompt now, and a reply is stored under the model that wrote it,
+ * so a fallback model's reply is never served as the preferred model's. Concurrent misses on
+ * one key share a single upstream call. Failed calls and the fallback reply are never cached.
+ */
+@Service
+public class PromptCache {
+
+    private record Entry(String reply, long expiresAtMs) {}
+
+    private final LlmProvider llm;
+    private final boolean enabled;
+    private final long ttlMs;
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter bypassed;
+
+    public PromptCache(
+            LlmProvider llm,
+            MeterRegistry meterRegistry,
+            @Value("${chat.cache.enabled:false}") boolean enabled,
+            @Value("${chat.cache.ttl-ms:3600000}") long ttlMs,
+            @Value("${chat.cache.max-entries:10000}") int maxEntries
+    ) {
+        this.llm = llm;
+        this.enabled = enabled;
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+
+        meterRegistry.gaugeMapSize("chat.cache.size", List.of(), entries);
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+        this.coalesced = lookups(meterRegistry, "coalesced");
+        this.bypassed = lookups(meterRegistry, "bypass");
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("chat.cache.requests")
+                .description("Prompt cache lookups; hit rate = hit / (hit + miss + coalesced)")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    // useCache=false (e.g. Cache-Control: no-cache) always calls upstream and leaves the cache untouched
+    public String generateText(PromptContext context, String caller, boolean useCache) {
+        if (!enabled || !useCache) {
+            bypassed.increment();
+            return llm.generateText(context, caller);
+        }
+
+        String model = llm.model(context);
+        String key = key(model, context);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAtMs() > System.currentTimeMillis()) {
+            hits.increment();
+            return entry.reply();
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            coalesced.increment();
+            try {
+                return leader.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        try {
+            // A leader may have finished between our cache miss and putIfAbsent
+            Entry raced = entries.get(key);
+            if (raced != null && raced.expiresAtMs() > System.currentTimeMillis()) {
+                hits.increment();
+                mine.complete(raced.reply());
+                return raced.reply();
+            }
+
+            misses.increment();
+            LlmProvider.Reply reply = llm.generate(context, caller);
+            if (!GeminiService.FALLBACK_REPLY.equals(reply.text())) {
+                put(reply.model().equals(model) ? key : key(reply.model(), context), reply.text());
+            }
+            mine.complete(reply.text());
+            return reply.text();
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private void put(String key, String reply) {
+        long now = System.currentTimeMillis();
+        if (entries.size() >= maxEntries) {
+            BoundedMaps.evict(entries, maxEntries, (k, e) -> e.expiresAtMs() <= now);
+        }
+        entries.put(key, new Entry(reply, now + ttlMs));
+    }
+
+    private static String key(String model, PromptContext context) {
+        MessageDigest digest = sha256();
+        update(digest, model);
+        update(digest, context.summary() == null ? "" : normalize(context.summary()));
+        for (ChatTurn turn : context.turns()) {
+            update(digest, turn.role());
+            update(digest, normalize(turn.text()));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Length-prefixed so ("ab", "c") and ("a", "bc") hash differently
+    private static void update(MessageDigest digest, String part) {
+        byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    static String normalize(String text) {
+        return text.strip().replaceAll("\\s+", " ");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.devaraj.AIClone.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devaraj.AIClone.entity.Message;
+import com.devaraj.AIClone.entity.TimeOrderedIdGenerator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Full-text index of message contents (embedded Lucene, on local disk), scoped per user.
+ *
+ * Messages are queued as they are saved and added by a background indexer, which makes them
+ * searchable within refresh-interval-ms and commits every commit-interval-ms. A catch-up pass
+ * at start and then every commit-interval-ms reads the stored messages past a mark, in id order,
+ * and indexes any that are missing (e.g. dropped on a full queue); it stops settle-ms short of now
+ * so rows still being committed are not passed over. A failed pass is retried with backoff.
+ * Each commit records the mark, so after a restart only newer rows are read back from the
+ * database; an empty index, or chat.search.rebuild=true, re-reads everything.
+ * Deleting a conversation removes its messages from the index.
+ */
+@Slf4j
+@Service
+public class SearchIndex {
+
+    /** One ranked match; {@code snippet} is HTML-escaped, with matched terms in {@code <mark>}. */
+    public record Hit(long messageId, long conversationId, String role, long createdAtMs, String snippet, float score) {}
+
+    public record Page(List<Hit> hits, long total) {}
+
+    // A document to add, or (doc == null) a conversation whose documents are to be deleted
+    private record Change(String id, long conversationId, Document doc) {}
+
+    private static final String CATCH_UP_SQL = """
+            select m.id, m.role, m.content, m.conversation_id, m.created_at, c.user_id
+            from message m join conversation c on c.id = m.conversation_id
+            where c.deleted_at is null and m.id > ? and m.id < ?
+            order by m.id
+            limit ?""";
+    private static final int CATCH_UP_BATCH = 5000;
+    private static final long CATCH_UP_MIN_BACKOFF_MS = 1000;
+    private static final long CATCH_UP_MAX_BACKOFF_MS = 60_000;
+    // Ids indexed live and not yet passed by catch-up; beyond this, catch-up just indexes them again
+    private static final int MAX_LIVE_IDS = 100_000;
+    private static final String MAX_ID = "maxId";
+
+    private static final FieldType CONTENT_TYPE = new FieldType(TextField.TYPE_STORED);
+
+    static {
+        // Offsets in the postings let the highlighter find passages without re-analyzing the text
+        CONTENT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        CONTENT_TYPE.freeze();
+    }
+
+    private final JdbcTemplate jdbc;
+    private final boolean enabled;
+    private final long refreshIntervalMs;
+    private final long commitIntervalMs;
+    private final long settleMs;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final IndexWriter writer;
+    private final SearcherManager searchers;
+    private final BlockingQueue<Change> queue;
+
+    // Every stored message up to this id is indexed. Only catch-up advances it, so it never passes a row that
+    // has not been read back from the database. Indexer thread only, like liveIds
+    private long caughtUpTo;
+    private final TreeSet<Long> liveIds = new TreeSet<>();
+
+    private final Counter indexed;
+    private final Counter dropped;
+    private final Timer queryTimer;
+
+    private final Thread indexer;
+    private volatile boolean running = true;
+
+    public SearchIndex(
+            JdbcTemplate jdbc,
+            MeterRegistry meterRegistry,
+            @Value("${chat.search.enabled:true}") boolean enabled,
+            @Value("${chat.search.index-dir:${java.io.tmpdir}/aiclone-search}") String indexDir,
+            @Value("${chat.search.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.search.refresh-interval-ms:1000}") long refreshIntervalMs,
+            @Value("${chat.search.commit-interval-ms:60000}") long commitIntervalMs,
+            @Value("${chat.search.settle-ms:5000}") long settleMs,
+            @Value("${chat.search.rebuild:false}") boolean rebuild
+    ) throws IOException {
+        this.jdbc = jdbc;
+        this.enabled = enabled;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.commitIntervalMs = commitIntervalMs;
+        this.settleMs = settleMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.indexed = Counter.builder("chat.search.indexed")
+                .description("Messages added to the search index")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("chat.search.dropped")
+                .description("Index updates dropped because the queue was full (a rebuild restores them)")
+                .register(meterRegistry);
+        this.queryTimer = Timer.builder("chat.search.query").register(meterRegistry);
+
+        if (!enabled) {
+            writer = null;
+            searchers = null;
+            indexer = null;
+            return;
+        }
+
+        writer = new IndexWriter(FSDirectory.open(Path.of(indexDir)), new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                .setRAMBufferSizeMB(64));
+        searchers = new SearcherManager(writer, null);
+        meterRegistry.gauge("chat.search.queue.depth", queue, BlockingQueue::size);
+        meterRegistry.gauge("chat.search.documents", writer, w -> w.getDocStats().numDocs);
+
+        long committedMaxId = 0;
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (MAX_ID.equals(entry.getKey())) {
+                    committedMaxId = Long.parseLong(entry.getValue());
+                }
+            }
+        }
+        if (rebuild || writer.getDocStats().numDocs == 0) {
+            writer.deleteAll();
+            committedMaxId = 0;
+        }
+        caughtUpTo = committedMaxId;
+        indexer = Thread.ofPlatform().name("search-indexer").daemon().start(this::indexLoop);
+    }
+
+    // Called right after the message is saved (it has its id by then)
+    public void add(Message m, Long userId) {
+        if (!enabled) {
+            return;
+        }
+        // createdAt has no zone; it is encoded as if UTC, which decodes back to the same LocalDateTime
+        long createdAtMs = m.getCreatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+        offer(new Change(m.getId().toString(), m.getConversation().getId(),
+                document(m.getId(), userId, m.getConversation().getId(), m.getRole(), m.getContent(), createdAtMs)));
+    }
+
+    // Bulk loads (imports) wait for room in the queue rather than dropping updates
+    public void addAll(List<Message> messages, Long userId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (Message m : messages) {
+                long createdAtMs = m.getCreatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+                queue.put(new Change(m.getId().toString(), m.getConversation().getId(),
+                        document(m.getId(), userId, m.getConversation().getId(), m.getRole(), m.getContent(), createdAtMs)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void deleteConversation(Long conversationId) {
+        if (enabled) {
+            offer(new Change(null, conversationId, null));
+        }
+    }
+
+    /**
+     * Ranked matches for {@code query} among the user's messages, skipping {@code offset}.
+     * The query uses simple syntax: all words must match, "quoted phrases", -exclusions, prefix*.
+     */
+    public Page search(Long userId, String query, int offset, int size) {
+        if (!enabled) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Search is not enabled");
+        }
+        long start = System.nanoTime();
+        try {
+            SimpleQueryParser parser = new SimpleQueryParser(analyzer, "content");
+            parser.setDefaultOperator(BooleanClause.Occur.MUST);
+            Query text = parser.parse(query);
+            if (text == null) {
+                return new Page(List.of(), 0); // nothing but stop words or operators
+            }
+            Query scoped = new BooleanQuery.Builder()
+                    .add(LongField.newExactQuery("uid", userId), BooleanClause.Occur.FILTER)
+                    .add(text, BooleanClause.Occur.MUST)
+                    .build();
+
+            IndexSearcher searcher = searchers.acquire();
+            try {
+                TopDocs top = searcher.search(scoped, offset + size);
+                if (top.scoreDocs.length <= offset) {
+                    return new Page(List.of(), top.totalHits.value());
+                }
+                ScoreDoc[] page = Arrays.copyOfRange(top.scoreDocs, offset, top.scoreDocs.length);
+                TopDocs pageDocs = new TopDocs(top.totalHits, page);
+                String[] snippets = UnifiedHighlighter.builder(searcher, analyzer)
+                        .withFormatter(new DefaultPassageFormatter("<mark>", "</mark>", "… ", true))
+                        .build()
+                        .highlight("content", scoped, pageDocs, 1);
+
+                StoredFields stored = searcher.storedFields();
+                List<Hit> hits = new ArrayList<>(page.length);
+                for (int i = 0; i < page.length; i++) {
+                    Document doc = stored.document(page[i].doc);
+                    hits.add(new Hit(
+                            Long.parseLong(doc.get("id")),
+                            doc.getField("cid").numericValue().longValue(),
+                            doc.get("role"),
+                            doc.getField("created").numericValue().longValue(),
+                            snippets[i],
+                            page[i].score));
+                }
+                return new Page(hits, top.totalHits.value());
+            } finally {
+                searchers.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        running = false;
+        if (indexer == null) {
+            return;
+        }
+        indexer.interrupt();
+        indexer.join(TimeUnit.SECONDS.toMillis(30));
+        searchers.close();
+        writer.close();
+    }
+
+    private void offer(Change change) {
+        if (!queue.offer(change)) {
+            dropped.increment();
+        }
+    }
+
+    private void indexLoop() {
+        long lastRefresh = System.nanoTime();
+        long lastCommit = System.nanoTime();
+        long nextCatchUp = System.nanoTime();
+        long backoffMs = CATCH_UP_MIN_BACKOFF_MS;
+        boolean dirty = false;
+        List<Change> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            if (running && System.nanoTime() - nextCatchUp >= 0) {
+                if (catchUp()) {
+                    backoffMs = CATCH_UP_MIN_BACKOFF_MS;
+                    nextCatchUp = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(commitIntervalMs);
+                } else {
+                    nextCatchUp = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+                    backoffMs = Math.min(backoffMs * 2, CATCH_UP_MAX_BACKOFF_MS);
+                }
+            }
+            try {
+                Change first = queue.poll(refreshIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, 1000);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown is signalled through 'running'; apply what is queued, then commit
+            }
+            try {
+                for (Change change : batch) {
+                    apply(change);
+                }
+                dirty |= !batch.isEmpty();
+                batch.clear();
+
+                long now = System.nanoTime();
+                if (now - lastRefresh >= TimeUnit.MILLISECONDS.toNanos(refreshIntervalMs)) {
+                    searchers.maybeRefresh();
+                    lastRefresh = now;
+                }
+                if (dirty && (!running || now - lastCommit >= TimeUnit.MILLISECONDS.toNanos(commitIntervalMs))) {
+                    commit();
+                    lastCommit = now;
+                    dirty = false;
+                }
+            } catch (IOException | RuntimeException e) {
+                batch.clear();
+                log.warn("Search indexing failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void apply(Change change) throws IOException {
+        if (change.doc() == null) {
+            writer.deleteDocuments(LongField.newExactQuery("cid", change.conversationId()));
+            return;
+        }
+        writer.updateDocument(new Term("id", change.id()), change.doc());
+        indexed.increment();
+        long id = Long.parseLong(change.id());
+        if (id > caughtUpTo && liveIds.size() < MAX_LIVE_IDS) {
+            liveIds.add(id);
+        }
+    }
+
+    // Indexes the stored messages past caughtUpTo that are not indexed yet, and moves the mark past them; false if it failed
+    private boolean catchUp() {
+        long horizon = TimeOrderedIdGenerator.lowestAt(System.currentTimeMillis() - settleMs);
+        long from = caughtUpTo;
+        long written = 0;
+        try {
+            while (running) {
+                long[] last = { caughtUpTo };
+                long[] fresh = { 0 };
+                int rows = jdbc.query(CATCH_UP_SQL, rs -> {
+                    int n = 0;
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        last[0] = id;
+                        n++;
+                        if (liveIds.remove(id)) {
+                            continue;
+                        }
+                        Timestamp created = rs.getTimestamp(5);
+                        Document doc = document(id, rs.getLong(6), rs.getLong(4), rs.getString(2), rs.getString(3),
+                                created == null ? 0 : created.toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+                        try {
+                            writer.updateDocument(new Term("id", Long.toString(id)), doc);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        fresh[0]++;
+                    }
+                    return n;
+                }, caughtUpTo, horizon, CATCH_UP_BATCH);
+                written += fresh[0];
+                indexed.increment(fresh[0]);
+                caughtUpTo = last[0];
+                liveIds.headSet(caughtUpTo, true).clear();
+                if (rows < CATCH_UP_BATCH) {
+                    break;
+                }
+            }
+            if (caughtUpTo > from) {
+                commit();
+            }
+            if (written > 0) {
+                searchers.maybeRefresh();
+                log.info("Search index caught up: {} messages indexed", written);
+            }
+            return true;
+        } catch (DataAccessException | IOException | UncheckedIOException e) {
+            log.warn("Search index catch-up failed, will retry; newer messages are still indexed as they arrive: {}",
+                    e.getMessage());
+            return false;
+        }
+    }
+
+    private void commit() throws IOException {
+        writer.setLiveCommitData(Map.of(MAX_ID, Long.toString(caughtUpTo)).entrySet());
+        writer.commit();
+    }
+
+    private static Document document(long id, long userId, long conversationId, String role, String content, long createdAtMs) {
+        Document doc = new Document();
+        doc.add(new StringField("id", Long.toString(id), Field.Store.YES));
+        doc.add(new LongField("uid", userId, Field.Store.NO));
+        doc.add(new LongField("cid", conversationId, Field.Store.YES));
+        doc.add(new StoredField("role", role == null ? "" : role));
+        doc.add(new StoredField("created", createdAtMs));
+        doc.add(new Field("content", content == null ? "" : content, CONTENT_TYPE));
+        return doc;
+    }
+}
@@ -0,0 +1,55 @@
+package com.devaraj.AIClone.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import com.devaraj.AIClone.dto.ChatTurn;
+import com.devaraj.AIClone.dto.PromptContext;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A model that never leaves the process: it answers after latency-ms with a canned reply that quotes
+ * the prompt. For development without an API key (provider=stub) and as a last-resort route.
+ */
+public class StubLlmProvider implements LlmProvider {
+
+    private final String model;
+    private final Duration latency;
+
+    public StubLlmProvider(String model, long latencyMs) {
+        this.model = model;
+        this.latency = Duration.ofMillis(latencyMs);
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public String generateText(PromptContext context, String caller) {
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return reply(context);
+    }
+
+    // The first word after the latency, the rest as they would stream: one word per chunk
+    @Override
+    public Flux<String> streamText(PromptContext context, String caller) {
+        List<String> words = Arrays.stream(reply(context).split("(?<= )")).toList();
+        return Mono.delay(latency).thenMany(Flux.fromIterable(words));
+    }
+
+    private String reply(PromptContext context) {
+        List<ChatTurn> turns = context.turns();
+        String prompt = turns.isEmpty() ? "" : turns.get(turns.size() - 1).text();
+        String quoted = prompt.length() > 200 ? prompt.substring(0, 200) + "..." : prompt;
+        return "(" + model + ") You said: " + quoted;
+    }
+}
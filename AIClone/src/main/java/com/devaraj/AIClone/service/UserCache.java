@@ -0,0 +1,86 @@
+package com.devaraj.AIClone.service;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.devaraj.AIClone.entity.User;
+import com.devaraj.AIClone.repository.UserRepository;
+
+/**
+ * In-process cache of users by id and email, so resolving the caller of an API
+ * request does not cost a users-table lookup every time.
+ *
+ * Entries live for user.cache.ttl-ms; anything that changes a user must call
+ * {@link #invalidate(User)}.
+ */
+@Service
+public class UserCache {
+
+    private record Entry(User user, long expiresAtMs) {}
+
+    private final UserRepository userRepo;
+    private final long ttlMs;
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<Long, Entry> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> idByEmail = new ConcurrentHashMap<>();
+
+    public UserCache(
+            UserRepository userRepo,
+            @Value("${user.cache.ttl-ms:600000}") long ttlMs,
+            @Value("${user.cache.max-entries:10000}") int maxEntries
+    ) {
+        this.userRepo = userRepo;
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+    }
+
+    public Optional<User> findById(Long id) {
+        Entry entry = byId.get(id);
+        if (entry != null && entry.expiresAtMs() > System.currentTimeMillis()) {
+            return Optional.of(entry.user());
+        }
+        Optional<User> loaded = userRepo.findById(id);
+        loaded.ifPresentOrElse(this::put, () -> byId.remove(id));
+        return loaded;
+    }
+
+    public Optional<User> findByEmail(String email) {
+        Long id = idByEmail.get(email);
+        if (id != null) {
+            Entry entry = byId.get(id);
+            if (entry != null && entry.expiresAtMs() > System.currentTimeMillis() && email.equals(entry.user().getEmail())) {
+                return Optional.of(entry.user());
+            }
+        }
+        Optional<User> loaded = userRepo.findByEmail(email);
+        loaded.ifPresentOrElse(this::put, () -> idByEmail.remove(email));
+        return loaded;
+    }
+
+    public void invalidate(User user) {
+        if (user.getId() != null) {
+            Entry removed = byId.remove(user.getId());
+            if (removed != null) {
+                idByEmail.remove(removed.user().getEmail(), user.getId());
+            }
+        }
+        if (user.getEmail() != null) {
+            idByEmail.remove(user.getEmail());
+        }
+    }
+
+    private void put(User user) {
+        long now = System.currentTimeMillis();
+        if (byId.size() >= maxEntries) {
+            BoundedMaps.evict(byId, maxEntries, (id, e) -> e.expiresAtMs() <= now,
+                    (id, e) -> idByEmail.remove(e.user().getEmail(), id));
+        }
+        byId.put(user.getId(), new Entry(user, now + ttlMs));
+        idByEmail.put(user.getEmail(), user.getId());
+    }
+
+}
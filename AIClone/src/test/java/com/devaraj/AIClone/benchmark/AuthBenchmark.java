@@ -0,0 +1,104 @@
+package com.devaraj.AIClone.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.devaraj.AIClone.dto.AuthRequest;
+import com.devaraj.AIClone.dto.LoginResponse;
+import com.devaraj.AIClone.entity.User;
+import com.devaraj.AIClone.repository.UserRepository;
+import com.devaraj.AIClone.security.JwtService;
+import com.devaraj.AIClone.security.PasswordHasher;
+import com.devaraj.AIClone.service.AuthService;
+import com.devaraj.AIClone.service.ConversationTransfer;
+import com.devaraj.AIClone.service.GuestSessions;
+import com.devaraj.AIClone.service.UserCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Cost of the password work behind register and login, with the encoder PasswordEncoderConfig uses.
+ *
+ * "encode" is register, "matches" the check at login, and "login" the whole AuthService.login
+ * (lookup from a stub repository, BCrypt check on the PasswordHasher pool, token issue). BCrypt dominates by design, which
+ * is why the auth endpoints are rate limited per IP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
+    private String hash;
+    private PasswordHasher hasher;
+    private AuthService authService;
+    private AuthRequest request;
+
+    @Setup
+    public void setUp() {
+        hash = encoder.encode(PASSWORD);
+
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("bench");
+        user.setEmail("bench@example.com");
+        user.setPassword(hash);
+        UserRepository repo = mock(UserRepository.class);
+        when(repo.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+
+        JwtService jwtService = new JwtService("benchmark-secret-benchmark-secret-benchmark-secret", TimeUnit.HOURS.toMillis(1), 100);
+        hasher = new PasswordHasher(encoder, new SimpleMeterRegistry(), 0, 64);
+        authService = new AuthService(repo, jwtService, hasher, new UserCache(repo, 60_000, 100),
+                mock(GuestSessions.class), mock(ConversationTransfer.class), mock(TransactionTemplate.class));
+        request = new AuthRequest("bench", user.getEmail(), PASSWORD);
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches(PASSWORD, hash);
+    }
+
+    @Benchmark
+    public LoginResponse login() {
+        return authService.login(request).join();
+    }
+
+    @TearDown
+    public void tearDown() {
+        hasher.shutdown();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AuthBenchmark.class.getSimpleName()).build()).run();
+    }
+}
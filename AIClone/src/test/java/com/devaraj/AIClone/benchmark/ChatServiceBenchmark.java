@@ -0,0 +1,110 @@
+package com.devaraj.AIClone.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.devaraj.AIClone.AiCloneApplication;
+import com.devaraj.AIClone.entity.User;
+import com.devaraj.AIClone.repository.UserRepository;
+import com.devaraj.AIClone.service.ChatService;
+import com.devaraj.AIClone.support.GeminiStub;
+
+/**
+ * A chat turn through the real ChatService, JPA and Hibernate against in-memory H2 (MySQL mode),
+ * with Gemini replaced by a local HTTP stub that answers at once, so the numbers are our own overhead.
+ *
+ * "newConversation" creates a conversation per turn; "existingConversation" keeps appending to one,
+ * so prompt assembly works from a full context window; "historyPage" is the sidebar query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatServiceBenchmark {
+
+    private static final String REPLY = "Keyset pagination seeks past the last row seen instead of "
+            + "counting an offset, so every page costs the same.";
+
+    private GeminiStub gemini;
+    private ConfigurableApplicationContext context;
+    private ChatService chatService;
+    private Long userId;
+    private Long conversationId;
+
+    @Setup
+    public void setUp() throws IOException {
+        gemini = new GeminiStub((call, stream) -> GeminiStub.Reply.text(REPLY));
+
+        // Command-line arguments, so they win over application.properties
+        context = new SpringApplicationBuilder(AiCloneApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:chat-bench;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--gemini.api.key=bench",
+                "--gemini.base-url=" + gemini.baseUrl(),
+                "--jwt.secret=benchmark-secret-benchmark-secret-benchmark-secret",
+                "--jwt.expiration-ms=3600000",
+                "--frontend.url=http://localhost:5173",
+                "--spring.security.oauth2.client.registration.google.client-id=bench",
+                "--spring.security.oauth2.client.registration.google.client-secret=bench",
+                "--chat.search.index-dir=" + System.getProperty("java.io.tmpdir") + "/aiclone-search-bench",
+                "--chat.search.rebuild=true",
+                "--logging.level.root=WARN");
+        chatService = context.getBean(ChatService.class);
+
+        User user = new User();
+        user.setUsername("bench");
+        user.setEmail("bench@example.com");
+        user.setPassword("not-a-hash");
+        userId = context.getBean(UserRepository.class).save(user).getId();
+        for (int i = 0; i < 50; i++) {
+            chatService.chat("Warm-up question " + i, userId, null);
+        }
+        conversationId = chatService.getHistory(userId, null, 1).get(0).id();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        gemini.close();
+    }
+
+    @Benchmark
+    public String newConversation() {
+        return chatService.chat("Explain keyset pagination in two sentences.", userId, null);
+    }
+
+    @Benchmark
+    public String existingConversation() {
+        return chatService.chat("And how does it compare to OFFSET?", userId, conversationId);
+    }
+
+    @Benchmark
+    public Object historyPage() {
+        return chatService.getHistory(userId, null, 100);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChatServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
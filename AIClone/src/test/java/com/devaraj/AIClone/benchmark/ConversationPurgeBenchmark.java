@@ -0,0 +1,113 @@
+package com.devaraj.AIClone.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.devaraj.AIClone.service.ConversationPurger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Deleting one conversation with 100k messages, against in-memory H2 (MySQL mode).
+ *
+ * "legacy" reproduces the old path: load every message, then delete them by id in
+ * JDBC batches of 50 inside one transaction (what deleteAll with hibernate.jdbc.batch_size=50
+ * amounts to). "purger" runs ConversationPurger's bounded DELETE ... LIMIT batches.
+ * The number that matters for other requests is the longest single transaction; the
+ * chat.purge.batch timer reports that for the purger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConversationPurgeBenchmark {
+
+    private static final long CONVERSATION_ID = 1L;
+
+    @Param("100000")
+    private int messages;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private ConversationPurger purger;
+
+    @Setup(Level.Trial)
+    public void createSchema() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:purge-bench;MODE=MySQL", "sa", "", true);
+        jdbc = new JdbcTemplate(dataSource);
+        tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbc.execute("create table conversation (id bigint primary key, deleted_at timestamp, purged_at timestamp)");
+        jdbc.execute("""
+                create table message (id bigint primary key, role varchar(16), content varchar(2000),
+                                      conversation_id bigint, created_at timestamp)""");
+        jdbc.execute("create index idx_message_conversation_created_id on message (conversation_id, created_at, id)");
+        purger = new ConversationPurger(jdbc, new SimpleMeterRegistry(), false, 1000, 0, 60_000);
+    }
+
+    @Setup(Level.Invocation)
+    public void fillConversation() {
+        jdbc.update("merge into conversation (id, deleted_at, purged_at) key (id) values (?, ?, null)",
+                CONVERSATION_ID, LocalDateTime.now());
+        String content = "x".repeat(200);
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            rows.add(new Object[] { (long) i, i % 2 == 0 ? "user" : "assistant", content, CONVERSATION_ID, now });
+        }
+        jdbc.batchUpdate("insert into message (id, role, content, conversation_id, created_at) values (?, ?, ?, ?, ?)", rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public int legacy() {
+        return tx.execute(status -> {
+            List<Object[]> loaded = jdbc.query(
+                    "select id, role, content, conversation_id, created_at from message"
+                            + " where conversation_id = ? order by created_at asc",
+                    (rs, n) -> new Object[] { rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4), rs.getObject(5) },
+                    CONVERSATION_ID);
+            List<Object[]> ids = loaded.stream().map(row -> new Object[] { row[0] }).toList();
+            jdbc.batchUpdate("delete from message where id = ?", ids);
+            return loaded.size();
+        });
+    }
+
+    @Benchmark
+    public long purger() {
+        return purger.purge(CONVERSATION_ID);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConversationPurgeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
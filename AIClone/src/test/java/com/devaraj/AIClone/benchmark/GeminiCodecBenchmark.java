@@ -0,0 +1,140 @@
+package com.devaraj.AIClone.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.devaraj.AIClone.dto.ChatTurn;
+import com.devaraj.AIClone.dto.PromptContext;
+import com.devaraj.AIClone.service.GeminiCodec;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Encoding an 11-turn prompt and decoding a generateContent response, for replies of 200 B, 4 KB and 32 KB.
+ *
+ * "legacy*" reproduce the original code: String.formatted with hand-escaped quotes for the
+ * request (newlines and backslashes are not escaped), and a new ObjectMapper plus a full
+ * JsonNode tree per response. "tree*" share one mapper but still build the tree / an
+ * intermediate Map. "codec*" use GeminiCodec.
+ * Runs with the GC profiler, so gc.alloc.rate.norm (bytes per operation) is reported next to throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeminiCodecBenchmark {
+
+    @Param({ "200", "4096", "32768" })
+    private int replyChars;
+
+    private final GeminiCodec codec = new GeminiCodec();
+    private final ObjectMapper sharedMapper = new ObjectMapper();
+
+    private byte[] response;
+    private PromptContext context;
+
+    @Setup
+    public void setUp() {
+        String reply = sentence(replyChars);
+        // Shaped like a real response: safety ratings, usage details and model version around the text
+        response = ("""
+                {"candidates":[{"content":{"parts":[{"text":"%s"}],"role":"model"},"finishReason":"STOP",\
+                "safetyRatings":[{"category":"HARM_CATEGORY_HATE_SPEECH","probability":"NEGLIGIBLE"},\
+                {"category":"HARM_CATEGORY_DANGEROUS_CONTENT","probability":"NEGLIGIBLE"},\
+                {"category":"HARM_CATEGORY_HARASSMENT","probability":"NEGLIGIBLE"},\
+                {"category":"HARM_CATEGORY_SEXUALLY_EXPLICIT","probability":"NEGLIGIBLE"}],"index":0}],\
+                "usageMetadata":{"promptTokenCount":42,"candidatesTokenCount":%d,"totalTokenCount":%d,\
+                "promptTokensDetails":[{"modality":"TEXT","tokenCount":42}]},\
+                "modelVersion":"gemini-2.5-flash","responseId":"abc123"}"""
+                .formatted(reply, replyChars / 4, 42 + replyChars / 4))
+                .getBytes(StandardCharsets.UTF_8);
+
+        String prompt = "Explain \"keyset pagination\" in a few sentences.\nKeep it short.";
+        List<ChatTurn> turns = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            turns.add(new ChatTurn("user", "Question " + i + ": " + prompt));
+            turns.add(new ChatTurn("assistant", sentence(400)));
+        }
+        turns.add(new ChatTurn("user", prompt));
+        context = new PromptContext("User: asked about databases.\nAssistant: explained indexes.", turns);
+    }
+
+    private static String sentence(int chars) {
+        StringBuilder sb = new StringBuilder(chars);
+        while (sb.length() < chars) {
+            sb.append("The quick brown fox jumps over the lazy dog. ");
+        }
+        return sb.substring(0, chars);
+    }
+
+    @Benchmark
+    public String legacyDecode() {
+        try {
+            JsonNode root = new ObjectMapper().readTree(new String(response, StandardCharsets.UTF_8));
+            return root.path("candidates").get(0).path("content").path("parts").get(0).path("text").asText();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public String treeDecode() {
+        return sharedMapper.readTree(response).path("candidates").path(0).path("content").path("parts").path(0).path("text").asText();
+    }
+
+    @Benchmark
+    public String codecDecode() {
+        return codec.decode(response).text();
+    }
+
+    @Benchmark
+    public byte[] legacyEncode() {
+        StringBuilder contents = new StringBuilder();
+        for (ChatTurn t : context.turns()) {
+            if (!contents.isEmpty()) {
+                contents.append(',');
+            }
+            contents.append("""
+                    { "role": "%s", "parts": [ { "text": "%s" } ] }""".formatted(t.role(), t.text().replace("\"", "\\\"")));
+        }
+        return "{ \"contents\": [ %s ] }".formatted(contents).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] treeEncode() {
+        return sharedMapper.writeValueAsBytes(Map.of("contents", context.turns().stream()
+                .map(t -> Map.of("role", t.role(), "parts", List.of(Map.of("text", t.text()))))
+                .toList()));
+    }
+
+    @Benchmark
+    public byte[] codecEncode() {
+        return codec.encode(context);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GeminiCodecBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+    }
+}
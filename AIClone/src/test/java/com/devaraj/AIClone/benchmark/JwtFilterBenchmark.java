@@ -0,0 +1,114 @@
+package com.devaraj.AIClone.benchmark;
+
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.devaraj.AIClone.repository.UserRepository;
+import com.devaraj.AIClone.security.JwtAuthenticationFilter;
+import com.devaraj.AIClone.security.JwtService;
+import com.devaraj.AIClone.service.UserCache;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Per-request cost of authenticating a bearer token.
+ *
+ * "legacy" reproduces the old filter path (key derivation, parser build and full HMAC
+ * verification, twice); the others go through the current JwtService and filter.
+ * "generateToken" is the cost of issuing a token at login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+
+    private JwtService jwtService;
+    private JwtService uncachedJwtService;
+    private JwtAuthenticationFilter filter;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(SECRET, TimeUnit.HOURS.toMillis(1), 10_000);
+        uncachedJwtService = new JwtService(SECRET, TimeUnit.HOURS.toMillis(1), 0);
+        // Tokens carry the user id, so the cache's repository is never consulted
+        filter = new JwtAuthenticationFilter(jwtService, new UserCache(mock(UserRepository.class), 60_000, 100),
+                new SimpleMeterRegistry());
+        token = jwtService.generateToken(1L, "bench@example.com");
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        String email = Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody()
+                .getSubject();
+        Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token);
+        return email != null;
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(1L, "bench@example.com");
+    }
+
+    @Benchmark
+    public Claims singleParse() {
+        return uncachedJwtService.parseClaims(token);
+    }
+
+    @Benchmark
+    public Object cachedVerify() {
+        return jwtService.verify(token);
+    }
+
+    @Benchmark
+    public Object filterRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/chat/history");
+        request.setServletPath("/api/chat/history");
+        request.addHeader("Authorization", "Bearer " + token);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,154 @@
+package com.devaraj.AIClone.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devaraj.AIClone.dto.AuthRequest;
+import com.devaraj.AIClone.dto.ConversationResponse;
+import com.devaraj.AIClone.entity.User;
+import com.devaraj.AIClone.repository.UserRepository;
+import com.devaraj.AIClone.security.JwtService;
+import com.devaraj.AIClone.security.PasswordHasher;
+import com.devaraj.AIClone.service.AuthService;
+import com.devaraj.AIClone.service.ConversationTransfer;
+import com.devaraj.AIClone.service.GuestSessions;
+import com.devaraj.AIClone.service.UserCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Latency of a light authenticated request (token check plus a small JSON body) on a servlet-sized
+ * pool of request threads while a storm of logins keeps STORM_IN_FLIGHT sign-ins outstanding.
+ *
+ * "none" is the baseline. "inline" hashes on the request threads, as AuthService did before
+ * PasswordHasher: the request waits behind every queued login. "offloaded" goes through
+ * AuthService.login, so request threads only hand the hash over and the storm's excess is
+ * rejected; the request should stay close to the baseline, paying only for shared CPU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class LoginStormBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+    private static final int REQUEST_THREADS = 16;
+    private static final int STORM_IN_FLIGHT = 200;
+
+    @Param({ "none", "inline", "offloaded" })
+    public String storm;
+
+    private final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ExecutorService requestThreads;
+    private PasswordHasher hasher;
+    private AuthService authService;
+    private JwtService jwtService;
+    private AuthRequest login;
+    private String hash;
+    private String token;
+    private Thread driver;
+    private volatile boolean running;
+
+    @Setup
+    public void setUp() {
+        hash = encoder.encode(PASSWORD);
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("storm");
+        user.setEmail("storm@example.com");
+        user.setPassword(hash);
+        UserRepository repo = mock(UserRepository.class);
+        when(repo.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+
+        jwtService = new JwtService("benchmark-secret-benchmark-secret-benchmark-secret", TimeUnit.HOURS.toMillis(1), 100);
+        token = jwtService.generateToken(user.getId(), user.getEmail());
+        hasher = new PasswordHasher(encoder, new SimpleMeterRegistry(), 0, 64);
+        authService = new AuthService(repo, jwtService, hasher, new UserCache(repo, 60_000, 100),
+                mock(GuestSessions.class), mock(ConversationTransfer.class), mock(TransactionTemplate.class));
+        login = new AuthRequest(user.getUsername(), user.getEmail(), PASSWORD);
+
+        requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS, Thread.ofPlatform().name("request-", 0).daemon().factory());
+        running = true;
+        if (!"none".equals(storm)) {
+            driver = Thread.ofPlatform().name("login-storm").daemon().start(this::stormLoop);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running = false;
+        if (driver != null) {
+            driver.interrupt();
+            driver.join();
+        }
+        requestThreads.shutdownNow();
+        hasher.shutdown();
+    }
+
+    @Benchmark
+    public byte[] chatRequest() throws InterruptedException, ExecutionException {
+        return requestThreads.submit(() -> {
+            jwtService.verify(token);
+            return mapper.writeValueAsBytes(new ConversationResponse(1L, "Keyset pagination", LocalDateTime.now()));
+        }).get();
+    }
+
+    private void stormLoop() {
+        Semaphore inFlight = new Semaphore(STORM_IN_FLIGHT);
+        while (running) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            requestThreads.execute(() -> {
+                if ("inline".equals(storm)) {
+                    encoder.matches(PASSWORD, hash);
+                    inFlight.release();
+                    return;
+                }
+                try {
+                    authService.login(login).whenComplete((r, e) -> inFlight.release());
+                } catch (ResponseStatusException e) {
+                    // Rejected: the pool and its queue are full, as a real client would see a 503
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LoginStormBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,169 @@
+package com.devaraj.AIClone.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.FileSystemUtils;
+
+import com.devaraj.AIClone.service.SearchIndex;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Search index build and query cost over a synthetic corpus in in-memory H2 (MySQL mode).
+ *
+ * Messages are 30 words drawn with a Zipf-like skew from a 20,000-word vocabulary and spread over
+ * 1,000 users. "rebuild" indexes the whole table from scratch (messages / score = messages per
+ * second); the query benchmarks search one random user's messages for a common word, a rare word,
+ * a two-word AND and a phrase, with snippets, as /api/chat/search does.
+ *
+ * The default corpus keeps a run short; for the millions-of-messages case add -p messages=2000000
+ * (and a heap of a few GB).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchIndexBenchmark {
+
+    private static final int USERS = 1000;
+    private static final int VOCABULARY = 20_000;
+    private static final int WORDS_PER_MESSAGE = 30;
+    private static final int MESSAGES_PER_CONVERSATION = 20;
+
+    @Param("200000")
+    private int messages;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private Path indexDir;
+    private SearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:search-bench;MODE=MySQL", "sa", "", true);
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table conversation (id bigint primary key, user_id bigint, deleted_at timestamp)");
+        jdbc.execute("""
+                create table message (id bigint primary key, role varchar(16), content varchar(5000),
+                                      conversation_id bigint, created_at timestamp)""");
+
+        int conversations = (messages + MESSAGES_PER_CONVERSATION - 1) / MESSAGES_PER_CONVERSATION;
+        List<Object[]> rows = new ArrayList<>();
+        for (long c = 1; c <= conversations; c++) {
+            rows.add(new Object[] { c, c % USERS });
+        }
+        jdbc.batchUpdate("insert into conversation (id, user_id) values (?, ?)", rows);
+
+        SplittableRandom random = new SplittableRandom(42);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        rows.clear();
+        for (long id = 1; id <= messages; id++) {
+            rows.add(new Object[] { id, id % 2 == 0 ? "assistant" : "user", sentence(random),
+                    (id - 1) / MESSAGES_PER_CONVERSATION + 1, now });
+            if (rows.size() == 10_000 || id == messages) {
+                jdbc.batchUpdate("insert into message (id, role, content, conversation_id, created_at) values (?, ?, ?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        indexDir = Files.createTempDirectory("search-bench");
+        index = build(indexDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        index.shutdown();
+        FileSystemUtils.deleteRecursively(indexDir);
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public void rebuild() throws Exception {
+        Path dir = Files.createTempDirectory("search-bench-rebuild");
+        try {
+            build(dir).shutdown();
+        } finally {
+            FileSystemUtils.deleteRecursively(dir);
+        }
+    }
+
+    @Benchmark
+    public SearchIndex.Page commonWord() {
+        return index.search(randomUser(), "w1", 0, 20);
+    }
+
+    @Benchmark
+    public SearchIndex.Page rareWord() {
+        return index.search(randomUser(), "w5000", 0, 20);
+    }
+
+    @Benchmark
+    public SearchIndex.Page twoWords() {
+        return index.search(randomUser(), "w3 w40", 0, 20);
+    }
+
+    @Benchmark
+    public SearchIndex.Page phrase() {
+        return index.search(randomUser(), "\"w1 w2\"", 0, 20);
+    }
+
+    // Opens an empty index, which catches up from the message table, and waits until it has everything
+    private SearchIndex build(Path dir) throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SearchIndex built = new SearchIndex(jdbc, registry, true, dir.toString(), 10_000, 1000, 600_000, 0, true);
+        while (registry.counter("chat.search.indexed").count() < messages) {
+            Thread.onSpinWait();
+        }
+        return built;
+    }
+
+    private static long randomUser() {
+        return ThreadLocalRandom.current().nextLong(USERS);
+    }
+
+    // Word rank r is drawn with probability ~ 1/r, so "w1" is everywhere and "w5000" is rare
+    private static String sentence(SplittableRandom random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < WORDS_PER_MESSAGE; i++) {
+            int rank = (int) Math.exp(random.nextDouble() * Math.log(VOCABULARY));
+            text.append('w').append(rank).append(' ');
+        }
+        return text.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SearchIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,189 @@
+package com.devaraj.AIClone.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.devaraj.AIClone.dto.ChatStreamEvent;
+import com.devaraj.AIClone.security.JwtService;
+import com.devaraj.AIClone.security.RateLimitFilter;
+import com.devaraj.AIClone.service.ChatService;
+import com.devaraj.AIClone.service.UserCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+class ChatSocketHandlerTest {
+
+    private static final String SECRET = "a-test-secret-that-is-long-enough-for-hs256";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ChatService chatService = mock(ChatService.class);
+    private JwtService jwt = new JwtService(SECRET, 3_600_000, 100);
+    private RateLimitFilter rateLimits;
+    private ChatSocketHandler handler;
+
+    // One connection: the frames the handler sent on it and how it closed it
+    private final class Client {
+        private final WebSocketSession session = mock(WebSocketSession.class);
+        private final List<JsonNode> frames = new CopyOnWriteArrayList<>();
+        private final AtomicReference<CloseStatus> closed = new AtomicReference<>();
+
+        private Client(String id) throws Exception {
+            when(session.getId()).thenReturn(id);
+            when(session.isOpen()).thenReturn(true);
+            doAnswer(inv -> {
+                if (inv.getArgument(0) instanceof TextMessage text) {
+                    frames.add(mapper.readTree(text.getPayload()));
+                }
+                return null;
+            }).when(session).sendMessage(any());
+            doAnswer(inv -> {
+                closed.set(inv.getArgument(0));
+                return null;
+            }).when(session).close(any(CloseStatus.class));
+            handler.afterConnectionEstablished(session);
+        }
+
+        private void send(String json) throws Exception {
+            handler.handleMessage(session, new TextMessage(json));
+        }
+
+        private void authenticate() throws Exception {
+            send("{\"type\":\"auth\",\"token\":\"" + jwt.generateToken(7L, "u7@example.com") + "\"}");
+        }
+
+        private void chat(String requestId) throws Exception {
+            send("{\"type\":\"send\",\"requestId\":\"" + requestId + "\",\"message\":\"hi\"}");
+        }
+
+        private JsonNode last() {
+            return frames.get(frames.size() - 1);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (handler != null) {
+            handler.shutdown();
+        }
+        if (rateLimits != null) {
+            rateLimits.shutdown();
+        }
+    }
+
+    private void start(long authTimeoutMs, int maxReplies, int chatCapacity) {
+        rateLimits = new RateLimitFilter(registry, true, chatCapacity, 1, 10, 10, 1000, 60_000);
+        handler = new ChatSocketHandler(chatService, jwt, mock(UserCache.class), rateLimits, registry,
+                authTimeoutMs, 25_000, 75_000, maxReplies, 10_000, 1 << 16);
+    }
+
+    @Test
+    void theFirstFrameMustAuthenticateInTime() throws Exception {
+        start(200, 4, 100);
+
+        Client eager = new Client("eager");
+        eager.chat("r1");
+        assertEquals("Authenticate first", eager.closed.get().getReason());
+
+        Client valid = new Client("valid");
+        valid.authenticate();
+        assertEquals("ready", valid.last().get("type").asString());
+
+        Client silent = new Client("silent");
+        await(() -> silent.closed.get() != null);
+        assertEquals("Authentication timed out", silent.closed.get().getReason());
+        assertNull(valid.closed.get());
+    }
+
+    @Test
+    void theConnectionClosesWhenTheTokenExpires() throws Exception {
+        // "exp" has second precision: the token expires within the next two seconds
+        jwt = new JwtService(SECRET, 2000, 100);
+        start(5000, 4, 100);
+
+        Client client = new Client("expiring");
+        client.authenticate();
+        assertEquals("ready", client.last().get("type").asString());
+
+        await(() -> client.closed.get() != null);
+        assertEquals(CloseStatus.POLICY_VIOLATION.getCode(), client.closed.get().getCode());
+        assertEquals("Token expired", client.closed.get().getReason());
+    }
+
+    @Test
+    void repliesAreCappedPerConnectionAndCanBeCancelled() throws Exception {
+        AtomicInteger cancelled = new AtomicInteger();
+        when(chatService.streamChat(anyString(), anyLong(), any()))
+                .thenAnswer(inv -> Flux.<ChatStreamEvent>never().doOnCancel(cancelled::incrementAndGet));
+        start(5000, 2, 100);
+        Client client = new Client("busy");
+        client.authenticate();
+
+        client.chat("r1");
+        client.chat("r1");
+        assertEquals(400, client.last().get("status").asInt());
+        assertEquals("r1", client.last().get("requestId").asString());
+
+        client.chat("r2");
+        client.chat("r3");
+        assertEquals(429, client.last().get("status").asInt());
+        assertEquals("r3", client.last().get("requestId").asString());
+        assertNull(client.last().get("retryAfterMs"), "the cap is not a rate limit");
+
+        client.send("{\"type\":\"cancel\",\"requestId\":\"r1\"}");
+        await(() -> cancelled.get() == 1);
+        int before = client.frames.size();
+        client.chat("r3");
+        assertEquals(before, client.frames.size(), "accepted once a slot is free");
+        assertNull(client.closed.get());
+    }
+
+    @Test
+    void aRateLimitedSendGetsA429WithRetryAfter() throws Exception {
+        when(chatService.streamChat(anyString(), anyLong(), any())).thenAnswer(inv -> Flux.<ChatStreamEvent>empty());
+        start(5000, 4, 1);
+        Client client = new Client("fast");
+        client.authenticate();
+
+        client.chat("r1");
+        client.chat("r2");
+
+        JsonNode limited = client.last();
+        assertEquals("error", limited.get("type").asString());
+        assertEquals("r2", limited.get("requestId").asString());
+        assertEquals(429, limited.get("status").asInt());
+        assertTrue(limited.get("retryAfterMs").asLong() > 0);
+        assertEquals(1, registry.counter("rate_limit.rejected", "rule", "chat").count());
+    }
+
+    // The heartbeat thread checks once a second
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(20);
+        }
+    }
+}
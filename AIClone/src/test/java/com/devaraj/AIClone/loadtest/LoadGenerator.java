@@ -0,0 +1,541 @@
+package com.devaraj.AIClone.loadtest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Closed-loop load generator that drives the public HTTP API the way the frontend does.
+ *
+ * Each virtual user registers and logs in, then repeats a session until the run ends: a streamed
+ * (or plain) first message in a new conversation, followUps more messages in it, then the sidebar
+ * history and the conversation's messages, with thinkTime between requests. Users start evenly
+ * over rampUp. Every request's latency is recorded per operation; the report has throughput,
+ * error counts and p50/p90/p99/max, plus time to first token for streamed turns.
+ *
+ * With transport "ws" each user opens one WebSocket (/ws/chat) after logging in, authenticates it
+ * once ("ws.connect") and sends every chat turn over it: "ws.stream" / "ws.stream.first_token" for
+ * the first message, "ws.chat" for follow-ups. Against the same stub latency, these compared with
+ * "stream" / "stream.first_token" / "chat" of a "rest" run show the per-message overhead of each path.
+ *
+ * From the second session on, a user first re-reads the sidebar and the previous conversation, as
+ * when the app is opened again. Like a browser, the generator keeps each page with its ETag and
+ * sends If-None-Match (conditional=true); a 304 is reported as "history.not_modified" /
+ * "messages.not_modified". gzip=true accepts compressed bodies; "bytes/req" is what arrived on the wire.
+ */
+public final class LoadGenerator {
+
+    public record Config(
+            String baseUrl,
+            int users,
+            Duration duration,
+            Duration rampUp,
+            int followUps,
+            boolean stream,
+            String transport,
+            boolean conditional,
+            boolean gzip,
+            Duration thinkTime,
+            Duration requestTimeout
+    ) {
+
+        // -Dload.users=50 -Dload.duration-s=60 -Dload.ramp-up-s=10 -Dload.follow-ups=2 -Dload.stream=true -Dload.transport=rest -Dload.conditional=true -Dload.gzip=true ...
+        public static Config fromSystemProperties(String baseUrl) {
+            return new Config(
+                    baseUrl,
+                    Integer.getInteger("load.users", 50),
+                    Duration.ofSeconds(Long.getLong("load.duration-s", 60)),
+                    Duration.ofSeconds(Long.getLong("load.ramp-up-s", 10)),
+                    Integer.getInteger("load.follow-ups", 2),
+                    Boolean.parseBoolean(System.getProperty("load.stream", "true")),
+                    System.getProperty("load.transport", "rest"),
+                    Boolean.parseBoolean(System.getProperty("load.conditional", "true")),
+                    Boolean.parseBoolean(System.getProperty("load.gzip", "true")),
+                    Duration.ofMillis(Long.getLong("load.think-ms", 500)),
+                    Duration.ofSeconds(Long.getLong("load.request-timeout-s", 120)));
+        }
+    }
+
+    public record OpStats(String op, long count, long errors, double perSecond,
+                          double p50Ms, double p90Ms, double p99Ms, double maxMs, double bytesPerRequest) {}
+
+    public record Report(Config config, double elapsedSeconds, List<OpStats> ops, Map<String, Long> errorsByStatus) {
+
+        public void print(PrintStream out) {
+            out.printf("%n%d users, %.0f s%n", config.users(), elapsedSeconds);
+            out.printf("%-22s %8s %7s %8s %9s %9s %9s %9s %10s%n", "operation", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "bytes/req");
+            for (OpStats s : ops) {
+                out.printf("%-22s %8d %7d %8.1f %9.1f %9.1f %9.1f %9.1f %10.0f%n",
+                        s.op(), s.count(), s.errors(), s.perSecond(), s.p50Ms(), s.p90Ms(), s.p99Ms(), s.maxMs(), s.bytesPerRequest());
+            }
+            if (!errorsByStatus.isEmpty()) {
+                out.println("errors: " + errorsByStatus);
+            }
+        }
+
+        public void writeJson(Path file) throws IOException {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(this));
+        }
+    }
+
+    // Latencies of one operation, in microseconds; appended under the lock, sorted once at the end
+    private static final class Recorder {
+        private long[] samples = new long[1024];
+        private int size;
+        private long errors;
+        private long bytes;
+
+        synchronized void record(long micros, boolean ok, long bodyBytes) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = micros;
+            bytes += bodyBytes;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        synchronized OpStats stats(String op, double seconds) {
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return new OpStats(op, size, errors, size / seconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    size == 0 ? 0 : sorted[size - 1] / 1000.0, size == 0 ? 0 : (double) bytes / size);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1000.0;
+        }
+    }
+
+    // A failed request; the status is what the report groups errors by
+    private static final class RequestFailed extends RuntimeException {
+        private RequestFailed(String status) {
+            super(status, null, false, false);
+        }
+    }
+
+    // One user's WebSocket; frames are read by the user's thread, in arrival order
+    private static final class Socket implements WebSocket.Listener {
+        private static final JsonNode CLOSED = JSON.createObjectNode().put("type", "closed");
+
+        private final BlockingQueue<JsonNode> frames = new LinkedBlockingQueue<>();
+        private final StringBuilder partial = new StringBuilder();
+        private WebSocket ws;
+        private volatile boolean open = true;
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                frames.add(JSON.readTree(partial.toString()));
+                partial.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            open = false;
+            frames.add(CLOSED);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            open = false;
+            frames.add(CLOSED);
+        }
+    }
+
+    // What a user's browser keeps between requests: the last copy of each page read, with its ETag
+    private static final class Browser {
+        private record Page(String etag, String body) {}
+
+        private final Map<String, Page> pages = new HashMap<>();
+        private Long lastConversationId;
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final Config config;
+    private final HttpClient http;
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> errorsByStatus = new ConcurrentHashMap<>();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong requestIds = new AtomicLong();
+
+    public LoadGenerator(Config config) {
+        this.config = config;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public Report run() throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + config.duration().toNanos();
+        long stagger = config.users() <= 1 ? 0 : config.rampUp().toNanos() / config.users();
+
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < config.users(); i++) {
+                int user = i;
+                long startAt = start + user * stagger;
+                users.execute(() -> user(user, startAt, deadline));
+            }
+            users.shutdown();
+            users.awaitTermination(config.duration().plus(config.requestTimeout()).toSeconds(), TimeUnit.SECONDS);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        List<OpStats> ops = new ArrayList<>();
+        new TreeMap<>(recorders).forEach((op, recorder) -> ops.add(recorder.stats(op, seconds)));
+        Map<String, Long> errors = new TreeMap<>();
+        errorsByStatus.forEach((status, count) -> errors.put(status, count.get()));
+        return new Report(config, seconds, ops, errors);
+    }
+
+    private void user(int user, long startAt, long deadline) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(startAt - System.nanoTime());
+            String email = "load-" + runId + "-" + user + "@example.com";
+            String credentials = JSON.writeValueAsString(Map.of("username", "load-" + runId + "-" + user, "email", email, "password", "load-test-password"));
+            call("register", post("/api/auth/register", credentials, null));
+            String token = json(call("login", post("/api/auth/login", credentials, null))).path("token").asString();
+
+            Browser browser = new Browser();
+            if ("ws".equals(config.transport())) {
+                socketUser(token, browser, deadline);
+                return;
+            }
+            while (System.nanoTime() < deadline) {
+                session(token, browser);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RequestFailed e) {
+            // Could not sign up or log in; already counted, this user sits the run out
+        }
+    }
+
+    private void session(String token, Browser browser) throws InterruptedException {
+        try {
+            reopen(token, browser);
+            Long conversationId = config.stream()
+                    ? streamTurn(token, "Explain keyset pagination in a few sentences.")
+                    : firstTurn(token, "Explain keyset pagination in a few sentences.");
+            for (int i = 0; i < config.followUps(); i++) {
+                think();
+                call("chat", post("/api/chat", JSON.writeValueAsString(Map.of("message", "Follow-up question " + i, "conversationId", conversationId)), token));
+            }
+            think();
+            browse(token, browser, conversationId);
+            think();
+        } catch (RequestFailed e) {
+            // Counted by call(); start the next session
+            think();
+        }
+    }
+
+    // Back in the app: the sidebar and the last conversation, both unchanged since the previous session ended
+    private void reopen(String token, Browser browser) throws InterruptedException {
+        if (browser.lastConversationId != null) {
+            fetch("history", "/api/chat/history", token, browser);
+            fetch("messages", "/api/chat/history/" + browser.lastConversationId, token, browser);
+            think();
+        }
+    }
+
+    private void browse(String token, Browser browser, Long conversationId) throws InterruptedException {
+        fetch("history", "/api/chat/history", token, browser);
+        fetch("messages", "/api/chat/history/" + conversationId, token, browser);
+        browser.lastConversationId = conversationId;
+    }
+
+    // The same session as session(), with every chat turn sent over one authenticated socket
+    private void socketUser(String token, Browser browser, long deadline) throws InterruptedException {
+        Socket socket = null;
+        try {
+            while (System.nanoTime() < deadline) {
+                try {
+                    if (socket == null || !socket.open) {
+                        socket = connect(token);
+                    }
+                    reopen(token, browser);
+                    Long conversationId = socketTurn(socket, "ws.stream", null, "Explain keyset pagination in a few sentences.");
+                    for (int i = 0; i < config.followUps(); i++) {
+                        think();
+                        socketTurn(socket, "ws.chat", conversationId, "Follow-up question " + i);
+                    }
+                    think();
+                    browse(token, browser, conversationId);
+                    think();
+                } catch (RequestFailed e) {
+                    think();
+                }
+            }
+        } finally {
+            if (socket != null && socket.open) {
+                socket.ws.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+            }
+        }
+    }
+
+    // Opens the socket and authenticates it; recorded as one operation, up to the "ready" frame
+    private Socket connect(String token) throws InterruptedException {
+        long start = System.nanoTime();
+        Socket socket = new Socket();
+        String failure;
+        try {
+            URI uri = URI.create(config.baseUrl().replaceFirst("^http", "ws") + "/ws/chat");
+            socket.ws = http.newWebSocketBuilder().buildAsync(uri, socket)
+                    .get(config.requestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            socket.ws.sendText(JSON.writeValueAsString(Map.of("type", "auth", "token", token)), true).join();
+            JsonNode frame = socket.frames.poll(config.requestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            failure = frame == null ? "timeout" : "ready".equals(frame.path("type").asString()) ? null : frame.path("type").asString();
+        } catch (ExecutionException | CompletionException e) {
+            failure = e.getCause().getClass().getSimpleName();
+        } catch (TimeoutException e) {
+            failure = "timeout";
+        }
+        record("ws.connect", start, failure == null);
+        if (failure != null) {
+            errorsByStatus.computeIfAbsent("ws.connect " + failure, k -> new AtomicLong()).incrementAndGet();
+            throw new RequestFailed(failure);
+        }
+        return socket;
+    }
+
+    // Sends one turn and reads frames until its reply is done; other frames (sidebar updates) are skipped
+    private Long socketTurn(Socket socket, String op, Long conversationId, String message) throws InterruptedException {
+        String requestId = Long.toString(requestIds.incrementAndGet());
+        Map<String, Object> command = new HashMap<>(Map.of("type", "send", "requestId", requestId, "message", message));
+        if (conversationId != null) {
+            command.put("conversationId", conversationId);
+        }
+        long start = System.nanoTime();
+        Long conversation = conversationId;
+        boolean firstToken = true;
+        String failure = null;
+        try {
+            socket.ws.sendText(JSON.writeValueAsString(command), true).join();
+            while (true) {
+                JsonNode frame = socket.frames.poll(config.requestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+                if (frame == null || frame == Socket.CLOSED) {
+                    failure = frame == null ? "timeout" : "closed";
+                    break;
+                }
+                if (!requestId.equals(frame.path("requestId").asString(""))) {
+                    continue;
+                }
+                String type = frame.path("type").asString();
+                if ("start".equals(type)) {
+                    conversation = frame.path("conversationId").asLong();
+                } else if ("token".equals(type) && firstToken) {
+                    firstToken = false;
+                    record(op + ".first_token", start, true);
+                } else if ("done".equals(type)) {
+                    break;
+                } else if ("error".equals(type)) {
+                    failure = frame.has("status") ? String.valueOf(frame.path("status").asInt()) : "stream_error";
+                    break;
+                }
+            }
+        } catch (CompletionException e) {
+            failure = e.getCause().getClass().getSimpleName();
+        }
+        record(op, start, failure == null);
+        if (failure != null) {
+            errorsByStatus.computeIfAbsent(op + " " + failure, k -> new AtomicLong()).incrementAndGet();
+            throw new RequestFailed(failure);
+        }
+        return conversation;
+    }
+
+    private Long firstTurn(String token, String message) throws InterruptedException {
+        call("chat", post("/api/chat", JSON.writeValueAsString(Map.of("message", message)), token));
+        JsonNode history = json(call("history", get("/api/chat/history?limit=1", token)));
+        return history.path(0).path("id").asLong();
+    }
+
+    // Reads the SSE reply line by line, noting when the first token arrives and which conversation was created
+    private Long streamTurn(String token, String message) throws InterruptedException {
+        HttpRequest request = post("/api/chat/stream", JSON.writeValueAsString(Map.of("message", message)), token);
+        long start = System.nanoTime();
+        Long conversationId = null;
+        boolean firstToken = true;
+        String failure = null;
+        try {
+            HttpResponse<Stream<String>> response = http.send(request, HttpResponse.BodyHandlers.ofLines());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                failure = String.valueOf(response.statusCode());
+            } else {
+                try (Stream<String> lines = response.body()) {
+                    Iterator<String> it = lines.iterator();
+                    while (it.hasNext()) {
+                        String line = it.next();
+                        if (!line.startsWith("data:")) {
+                            continue;
+                        }
+                        JsonNode event = JSON.readTree(line.substring(5));
+                        switch (event.path("type").asString()) {
+                            case "start" -> conversationId = event.path("conversationId").asLong();
+                            case "token" -> {
+                                if (firstToken) {
+                                    firstToken = false;
+                                    record("stream.first_token", start, true);
+                                }
+                            }
+                            case "error" -> failure = "stream_error";
+                            default -> { }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            failure = e.getClass().getSimpleName();
+        }
+        record("stream", start, failure == null);
+        if (failure != null) {
+            errorsByStatus.computeIfAbsent("stream " + failure, k -> new AtomicLong()).incrementAndGet();
+            throw new RequestFailed(failure);
+        }
+        return conversationId;
+    }
+
+    private String call(String op, HttpRequest request) throws InterruptedException {
+        return exchange(op, request, null);
+    }
+
+    // A GET as a browser makes it: with If-None-Match for the copy it has, which a 304 confirms
+    private String fetch(String op, String path, String token, Browser browser) throws InterruptedException {
+        Browser.Page cached = browser.pages.get(path);
+        HttpRequest.Builder request = request(path, token).GET();
+        if (config.conditional() && cached != null && cached.etag() != null) {
+            request.header("If-None-Match", cached.etag());
+        }
+        return exchange(op, request.build(), (etag, body) -> {
+            if (body == null) {
+                return cached.body();
+            }
+            browser.pages.put(path, new Browser.Page(etag, body));
+            return body;
+        });
+    }
+
+    private interface Revalidation {
+        // body is null on a 304
+        String resolve(String etag, String body);
+    }
+
+    private String exchange(String op, HttpRequest request, Revalidation cache) throws InterruptedException {
+        long start = System.nanoTime();
+        String failure;
+        try {
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            long bytes = response.body().length;
+            if (response.statusCode() == 304 && cache != null) {
+                record(op + ".not_modified", start, true, bytes);
+                return cache.resolve(null, null);
+            }
+            if (response.statusCode() / 100 == 2) {
+                record(op, start, true, bytes);
+                String body = decode(response);
+                return cache == null ? body : cache.resolve(response.headers().firstValue("ETag").orElse(null), body);
+            }
+            failure = String.valueOf(response.statusCode());
+        } catch (IOException e) {
+            failure = e.getClass().getSimpleName();
+        }
+        record(op, start, false);
+        errorsByStatus.computeIfAbsent(op + " " + failure, k -> new AtomicLong()).incrementAndGet();
+        throw new RequestFailed(failure);
+    }
+
+    private static String decode(HttpResponse<byte[]> response) throws IOException {
+        if (!"gzip".equals(response.headers().firstValue("Content-Encoding").orElse(null))) {
+            return new String(response.body(), StandardCharsets.UTF_8);
+        }
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void record(String op, long startNanos, boolean ok) {
+        record(op, startNanos, ok, 0);
+    }
+
+    private void record(String op, long startNanos, boolean ok, long bytes) {
+        recorders.computeIfAbsent(op, k -> new Recorder()).record((System.nanoTime() - startNanos) / 1000, ok, bytes);
+    }
+
+    private HttpRequest post(String path, String json, String token) {
+        HttpRequest.Builder builder = request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+        return builder.build();
+    }
+
+    private HttpRequest get(String path, String token) {
+        return request(path, token).GET().build();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(config.baseUrl() + path)).timeout(config.requestTimeout());
+        if (config.gzip()) {
+            builder.header("Accept-Encoding", "gzip");
+        }
+        return token == null ? builder : builder.header("Authorization", "Bearer " + token);
+    }
+
+    private static JsonNode json(String body) {
+        return JSON.readTree(body);
+    }
+
+    private void think() throws InterruptedException {
+        if (!config.thinkTime().isZero()) {
+            Thread.sleep(config.thinkTime());
+        }
+    }
+}
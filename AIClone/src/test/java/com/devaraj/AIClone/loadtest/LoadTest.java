@@ -0,0 +1,75 @@
+package com.devaraj.AIClone.loadtest;
+
+import java.nio.file.Path;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.devaraj.AIClone.AiCloneApplication;
+import com.devaraj.AIClone.service.AdmissionController;
+import com.devaraj.AIClone.support.GeminiStub;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Runs the load generator against the application, by default a local instance on the
+ * "loadtest" profile (in-memory H2) talking to a {@link GeminiStub}, and prints the report.
+ *
+ * Run: mvn -Ploadtest verify [-Dload.users=100 -Dload.duration-s=120 -Dstub.median-ms=800 ...]
+ * Setting -Dload.target=http://host:8080 drives an already running instance instead; the stub
+ * and the embedded application are then not started.
+ */
+public final class LoadTest {
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        String target = System.getProperty("load.target");
+        GeminiStub stub = null;
+        ConfigurableApplicationContext app = null;
+        if (target == null) {
+            stub = new GeminiStub(GeminiStub.shaped(GeminiStub.Config.fromSystemProperties()));
+            app = new SpringApplicationBuilder(AiCloneApplication.class)
+                    .profiles("loadtest")
+                    .run("--server.port=0", "--gemini.base-url=" + stub.baseUrl());
+            target = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            LoadGenerator.Report report = new LoadGenerator(LoadGenerator.Config.fromSystemProperties(target)).run();
+            report.print(System.out);
+            if (stub != null) {
+                System.out.printf("gemini stub: %d calls, %d failed, at most %d at once%n",
+                        stub.calls(), stub.failures(), stub.peakInFlight());
+            }
+            if (app != null) {
+                printServerSide(app);
+            }
+            Path file = Path.of(System.getProperty("load.report", "target/loadtest-report.json"));
+            report.writeJson(file);
+            System.out.println("Report written to " + file.toAbsolutePath());
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+
+    // How chats were run, the database work for the whole run (the profile enables Hibernate statistics)
+    // and the 304s that avoided some of it
+    private static void printServerSide(ConfigurableApplicationContext app) {
+        AdmissionController admission = app.getBean(AdmissionController.class);
+        System.out.printf("execution mode %s, admission limit %.0f of %d%n",
+                app.getEnvironment().getProperty("chat.execution-mode"), admission.limit(), admission.maxLimit());
+        Statistics db = app.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        System.out.printf("database: %d statements, %d queries%n", db.getPrepareStatementCount(), db.getQueryExecutionCount());
+        app.getBean(MeterRegistry.class).find("chat.history.revalidated").counters().forEach(c ->
+                System.out.printf("revalidated %s: %s %.0f%n", c.getId().getTag("endpoint"), c.getId().getTag("result"), c.count()));
+    }
+}
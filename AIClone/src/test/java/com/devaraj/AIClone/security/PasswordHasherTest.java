@@ -0,0 +1,99 @@
+package com.devaraj.AIClone.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PasswordHasherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void tearDown() {
+        hasher.shutdown();
+    }
+
+    @Test
+    void verifiesAndRehashesWeakerHashesAtLogin() {
+        String weak = new BCryptPasswordEncoder(4).encode("secret");
+        hasher = new PasswordHasher(new BCryptPasswordEncoder(5), registry, 2, 8);
+
+        PasswordHasher.Verification ok = hasher.verify("secret", weak).join();
+        assertTrue(ok.matches());
+        assertTrue(ok.upgradedHash().startsWith("$2a$05$"), ok.upgradedHash());
+
+        PasswordHasher.Verification again = hasher.verify("secret", ok.upgradedHash()).join();
+        assertTrue(again.matches());
+        assertNull(again.upgradedHash());
+
+        PasswordHasher.Verification wrong = hasher.verify("guess", weak).join();
+        assertFalse(wrong.matches());
+        assertNull(wrong.upgradedHash());
+        assertEquals(1, registry.get("password.hash.upgraded").counter().count());
+    }
+
+    @Test
+    void rejectsAtOnceWhenThePoolAndQueueAreFull() throws InterruptedException {
+        GatedEncoder gated = new GatedEncoder();
+        hasher = new PasswordHasher(gated, registry, 1, 1);
+
+        CompletableFuture<String> running = hasher.encode("a");
+        gated.started.await();
+        CompletableFuture<String> queued = hasher.encode("b");
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> hasher.encode("c"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals(1, registry.get("password.hash.rejected").counter().count());
+
+        gated.release.countDown();
+        assertTrue(gated.matches("a", running.join()));
+        assertTrue(gated.matches("b", queued.join()));
+    }
+
+    @Test
+    void dependentStagesRunOffTheHashingThreads() throws InterruptedException {
+        GatedEncoder gated = new GatedEncoder();
+        hasher = new PasswordHasher(gated, registry, 1, 1);
+
+        CompletableFuture<String> hash = hasher.encode("secret");
+        gated.started.await();
+        CompletableFuture<String> thread = hash.thenApply(h -> Thread.currentThread().getName());
+        gated.release.countDown();
+
+        assertTrue(thread.join().startsWith("password-hash-callback-"), thread.join());
+    }
+
+    // Holds every encode until released
+    private static final class GatedEncoder extends BCryptPasswordEncoder {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private GatedEncoder() {
+            super(4);
+        }
+
+        @Override
+        protected String encodeNonNullPassword(String rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.encodeNonNullPassword(rawPassword);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.devaraj.AIClone.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RateLimitFilter filter = new RateLimitFilter(registry, true, 2, 1, 1, 1, 1000, 60_000);
+
+    @AfterEach
+    void tearDown() {
+        filter.shutdown();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void chatIsLimitedPerUserWithRetryAfter() throws Exception {
+        signIn(1L);
+        assertEquals(200, post("/api/chat", "10.0.0.1").getStatus());
+        assertEquals(200, post("/api/chat/stream", "10.0.0.2").getStatus());
+
+        MockHttpServletResponse limited = post("/api/chat", "10.0.0.3");
+        assertEquals(429, limited.getStatus());
+        assertEquals("60", limited.getHeader("Retry-After"));
+        assertEquals(1, registry.counter("rate_limit.rejected", "rule", "chat").count());
+
+        // A different user still has a full bucket
+        signIn(2L);
+        assertEquals(200, post("/api/chat", "10.0.0.1").getStatus());
+    }
+
+    @Test
+    void authRoutesAreLimitedPerIpAndOtherRoutesAreNot() throws Exception {
+        assertEquals(200, post("/api/auth/login", "10.0.0.1").getStatus());
+        assertEquals(429, post("/api/auth/guest", "10.0.0.1").getStatus());
+        assertEquals(200, post("/api/auth/login", "10.0.0.2").getStatus());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, post("/api/auth/logout", "10.0.0.1").getStatus());
+        }
+    }
+
+    private void signIn(Long userId) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new AuthenticatedUser(userId, "u" + userId + "@example.com"), null, List.of()));
+    }
+
+    private MockHttpServletResponse post(String path, String ip) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setRemoteAddr(ip);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
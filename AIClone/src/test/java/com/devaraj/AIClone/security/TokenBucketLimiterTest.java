@@ -0,0 +1,74 @@
+package com.devaraj.AIClone.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final TokenBucketLimiter limiter = new TokenBucketLimiter(clock::get, 100);
+    private final TokenBucketLimiter.Rule rule = new TokenBucketLimiter.Rule("chat", 3, 60); // 1 token per second
+
+    @Test
+    void allowsABurstThenRefillsAtTheConfiguredRate() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("u1", rule));
+        }
+        assertEquals(1000, limiter.tryAcquire("u1", rule));
+
+        clock.addAndGet(400);
+        assertEquals(600, limiter.tryAcquire("u1", rule));
+
+        clock.addAndGet(600);
+        assertEquals(0, limiter.tryAcquire("u1", rule));
+        assertTrue(limiter.tryAcquire("u1", rule) > 0);
+
+        // Other keys have their own bucket
+        assertEquals(0, limiter.tryAcquire("u2", rule));
+    }
+
+    @Test
+    void concurrentCallersNeverGetMoreThanTheCapacity() throws InterruptedException {
+        TokenBucketLimiter.Rule burst = new TokenBucketLimiter.Rule("burst", 1000, 1);
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < 5000; i++) {
+            pool.execute(() -> {
+                if (limiter.tryAcquire("shared", burst) == 0) {
+                    allowed.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(1000, allowed.get());
+    }
+
+    @Test
+    void onlyFullyRefilledBucketsAreEvictedUntilOverTheKeyCap() {
+        limiter.tryAcquire("idle", rule);
+        clock.addAndGet(500);
+        limiter.tryAcquire("busy", rule);
+        limiter.tryAcquire("busy", rule);
+
+        clock.addAndGet(600); // "idle" is full again (1 s for one token), "busy" is not
+        limiter.evictIdle();
+        assertEquals(1, limiter.size());
+
+        for (int i = 0; i < 150; i++) {
+            limiter.tryAcquire("flood-" + i, rule);
+        }
+        assertTrue(limiter.overCapacity());
+        limiter.evictIdle();
+        assertTrue(limiter.size() <= 90, "size " + limiter.size());
+    }
+}
@@ -0,0 +1,124 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AdmissionControllerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private AdmissionController controller(boolean adaptive, int initialLimit, int maxQueue, int maxQueuePerUser, long waitMs) {
+        return new AdmissionController(registry, adaptive, initialLimit, 1, adaptive ? 32 : initialLimit, maxQueue, maxQueuePerUser, waitMs);
+    }
+
+    private double shed(String reason) {
+        return registry.get("llm.admission.shed").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void oneUsersBurstDoesNotStarveAnother() throws Exception {
+        AdmissionController admission = controller(true, 1, 100, 10, 5000);
+        AdmissionController.Permit running = admission.acquire("user:1");
+
+        List<CompletableFuture<AdmissionController.Permit>> burst = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            burst.add(admission.admit("user:1").toFuture());
+        }
+        CompletableFuture<AdmissionController.Permit> other = admission.admit("user:2").toFuture();
+        assertEquals(4, admission.queued());
+
+        // Callers take turns: user 1's first queued call, then user 2, then the rest of user 1's burst
+        running.release();
+        assertTrue(burst.get(0).isDone());
+        assertFalse(other.isDone());
+
+        burst.get(0).get().release();
+        assertTrue(other.isDone());
+        assertFalse(burst.get(1).isDone());
+
+        other.get().release();
+        assertTrue(burst.get(1).isDone());
+        assertEquals(1, admission.queued());
+        assertEquals(1, admission.inFlight());
+    }
+
+    @Test
+    void shedsImmediatelyWhenQueuesAreFull() {
+        AdmissionController admission = controller(false, 1, 3, 2, 5000);
+        admission.acquire("user:1");
+        admission.admit("user:1").toFuture();
+        admission.admit("user:1").toFuture();
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> admission.acquire("user:1"));
+        assertEquals(503, e.getStatusCode().value());
+        assertEquals(1, shed("user_queue_full"));
+
+        admission.admit("user:2").toFuture();
+        assertThrows(ResponseStatusException.class, () -> admission.admit("user:3").block());
+        assertEquals(1, shed("queue_full"));
+        assertEquals(3, admission.queued());
+    }
+
+    @Test
+    void waiterGivesUpAfterTheTimeoutAndLeavesTheQueue() {
+        AdmissionController admission = controller(false, 1, 10, 10, 100);
+        AdmissionController.Permit running = admission.acquire("user:1");
+
+        long start = System.nanoTime();
+        assertThrows(ResponseStatusException.class, () -> admission.acquire("user:2"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertEquals(1, shed("timeout"));
+        assertEquals(0, admission.queued());
+
+        // The slot is not leaked to the caller that gave up
+        running.release();
+        assertEquals(0, admission.inFlight());
+        admission.acquire("user:3").release();
+    }
+
+    @Test
+    void cancellingAQueuedStreamFreesItsPlace() {
+        AdmissionController admission = controller(false, 1, 10, 1, 5000);
+        AdmissionController.Permit running = admission.acquire("user:1");
+
+        admission.admit("user:2").subscribe().dispose();
+        assertEquals(0, admission.queued());
+        admission.admit("user:2").toFuture();
+        assertEquals(1, admission.queued());
+
+        running.release();
+        assertEquals(1, admission.inFlight());
+    }
+
+    @Test
+    void limitGrowsWhileLatencyIsSteadyAndShrinksWhenItRises() {
+        AdmissionController admission = controller(true, 8, 100, 100, 5000);
+        for (int i = 0; i < 8; i++) {
+            admission.acquire("user:" + i);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            admission.updateLimit(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        double grown = admission.limit();
+        assertTrue(grown > 8, "limit " + grown);
+
+        for (int i = 0; i < 50; i++) {
+            admission.updateLimit(TimeUnit.MILLISECONDS.toNanos(1000));
+        }
+        assertTrue(admission.limit() < grown / 2, "limit " + admission.limit());
+        assertTrue(admission.limit() >= 1);
+    }
+}
@@ -0,0 +1,34 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedMapsTest {
+
+    @Test
+    void staleEntriesGoFirstAndLiveOnesOnlyAtTheCap() {
+        ConcurrentHashMap<Integer, Boolean> map = new ConcurrentHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i < 20); // true: stale
+        }
+        List<Integer> removed = new ArrayList<>();
+
+        BoundedMaps.evict(map, 100, (k, stale) -> stale, (k, v) -> removed.add(k));
+        assertEquals(80, map.size(), "under the cap once the stale ones are gone");
+        assertEquals(20, removed.size());
+        assertFalse(map.containsKey(0));
+
+        for (int i = 100; i < 120; i++) {
+            map.put(i, false);
+        }
+        BoundedMaps.evict(map, 100, (k, stale) -> stale, (k, v) -> removed.add(k));
+        assertEquals(90, map.size());
+        assertEquals(30, removed.size());
+    }
+}
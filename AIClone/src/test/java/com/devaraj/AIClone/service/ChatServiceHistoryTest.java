@@ -0,0 +1,97 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.devaraj.AIClone.dto.ConversationChange;
+import com.devaraj.AIClone.dto.ConversationChanges;
+import com.devaraj.AIClone.entity.TimeOrderedIdGenerator;
+import com.devaraj.AIClone.repository.ConversationRepository;
+import com.devaraj.AIClone.repository.MessageRepository;
+import com.devaraj.AIClone.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ChatServiceHistoryTest {
+
+    private final ConversationRepository convoRepo = mock(ConversationRepository.class);
+    private final ChatService service = new ChatService(
+            mock(LlmProvider.class), mock(UserRepository.class), convoRepo, mock(MessageRepository.class),
+            mock(ContextAssembler.class), mock(MessageWriter.class), mock(ConversationPurger.class),
+            mock(PromptCache.class), new SimpleMeterRegistry(), mock(SearchIndex.class), mock(ConversationArchiver.class),
+            mock(GuestSessions.class), mock(HistoryVersions.class), mock(TransactionTemplate.class));
+
+    ChatServiceHistoryTest() {
+        ReflectionTestUtils.setField(service, "maxPageSize", 200);
+        ReflectionTestUtils.setField(service, "changesSettleMs", 5000L);
+    }
+
+    @Test
+    void changesSplitRenamesFromTombstonesAndAdvanceTheVersion() {
+        LocalDateTime now = LocalDateTime.now();
+        when(convoRepo.findChangesSince(7L, 100L, Limit.of(2))).thenReturn(List.of(
+                new ConversationChange(1L, "renamed", now, null, 150L),
+                new ConversationChange(2L, "gone", now, now, 160L)));
+
+        ConversationChanges changes = service.getHistoryChanges(7L, 100L, 2);
+
+        assertEquals(1, changes.changed().size());
+        assertEquals("renamed", changes.changed().get(0).title());
+        assertEquals(List.of(2L), changes.deleted());
+        assertEquals(160L, changes.version());
+        assertTrue(changes.hasMore(), "a full page means the client should ask again");
+    }
+
+    @Test
+    void recentChangesAreSentButTheVersionStaysBeforeThem() {
+        LocalDateTime now = LocalDateTime.now();
+        // Stamped just now: a change with a lower version may still be committing
+        long recent = TimeOrderedIdGenerator.next();
+        when(convoRepo.findChangesSince(7L, 100L, Limit.of(2))).thenReturn(List.of(
+                new ConversationChange(1L, "settled", now, null, 150L),
+                new ConversationChange(2L, "just renamed", now, null, recent)));
+
+        ConversationChanges changes = service.getHistoryChanges(7L, 100L, 2);
+
+        assertEquals(2, changes.changed().size());
+        assertEquals(150L, changes.version());
+        assertTrue(changes.hasMore());
+
+        when(convoRepo.findChangesSince(7L, 150L, Limit.of(1))).thenReturn(List.of(
+                new ConversationChange(2L, "just renamed", now, null, recent)));
+        ConversationChanges again = service.getHistoryChanges(7L, 150L, 1);
+        assertEquals(150L, again.version());
+        assertFalse(again.hasMore(), "nothing settled to move past: the client waits for its next poll");
+    }
+
+    @Test
+    void noChangesKeepTheClientsVersion() {
+        when(convoRepo.findChangesSince(eq(7L), anyLong(), eq(Limit.of(50)))).thenReturn(List.of());
+
+        ConversationChanges changes = service.getHistoryChanges(7L, 42L, 50);
+
+        assertEquals(42L, changes.version());
+        assertFalse(changes.hasMore());
+    }
+
+    @Test
+    void pageSizeIsCapped() {
+        service.getHistory(7L, null, 10_000);
+
+        verify(convoRepo).findLatestPage(7L, Limit.of(200));
+    }
+}
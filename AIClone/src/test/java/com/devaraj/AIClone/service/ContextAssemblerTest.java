@@ -0,0 +1,155 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.devaraj.AIClone.dto.ChatTurn;
+import com.devaraj.AIClone.dto.PromptContext;
+import com.devaraj.AIClone.entity.Conversation;
+import com.devaraj.AIClone.entity.Message;
+import com.devaraj.AIClone.entity.TimeOrderedIdGenerator;
+import com.devaraj.AIClone.repository.ConversationRepository;
+import com.devaraj.AIClone.repository.MessageRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ContextAssemblerTest {
+
+    private final MessageRepository msgRepo = mock(MessageRepository.class);
+    private final ConversationRepository convoRepo = mock(ConversationRepository.class);
+    private final MessageWriter messageWriter =
+            new MessageWriter(msgRepo, mock(JdbcTemplate.class), new SimpleMeterRegistry(), false, 16, 16, 50, 100);
+
+    @Test
+    void steadyStateTurnsDoNotQueryHistory() {
+        ContextAssembler assembler = new ContextAssembler(msgRepo, convoRepo, messageWriter, 1000, 100, 10, 1 << 20, 10, false);
+        Conversation convo = conversation(1L);
+        when(msgRepo.findByConversationIdOrderByCreatedAtDesc(eq(1L), any(Limit.class)))
+                .thenReturn(List.of(message("assistant", "Hi there."), message("user", "Hello")));
+
+        assembler.assemble(convo, false, "first");
+        assembler.record(1L, TimeOrderedIdGenerator.next(), "user", "first");
+        assembler.record(1L, TimeOrderedIdGenerator.next(), "assistant", "reply one");
+        PromptContext context = assembler.assemble(convo, false, "second");
+
+        verify(msgRepo, times(1)).findByConversationIdOrderByCreatedAtDesc(eq(1L), any(Limit.class));
+        assertEquals(List.of(
+                new ChatTurn("user", "Hello"),
+                new ChatTurn("assistant", "Hi there."),
+                new ChatTurn("user", "first"),
+                new ChatTurn("assistant", "reply one"),
+                new ChatTurn("user", "second")), context.turns());
+        assertNull(context.summary());
+    }
+
+    @Test
+    void turnsOverTheBudgetAreFoldedIntoTheSummary() {
+        // 40-token budget: two 60-char turns (15 tokens each) fit next to a short message, three do not
+        ContextAssembler assembler = new ContextAssembler(msgRepo, convoRepo, messageWriter, 40, 100, 10, 1 << 20, 1, false);
+        Conversation convo = conversation(2L);
+        assembler.assemble(convo, true, "start");
+
+        assembler.record(2L, TimeOrderedIdGenerator.next(), "user", "Oldest question. " + "a".repeat(43));
+        assembler.record(2L, TimeOrderedIdGenerator.next(), "assistant", "b".repeat(60));
+        assembler.record(2L, TimeOrderedIdGenerator.next(), "user", "c".repeat(60));
+        PromptContext context = assembler.assemble(convo, false, "next");
+
+        assertEquals(3, context.turns().size());
+        assertNotNull(context.summary());
+        assertTrue(context.summary().startsWith("User: Oldest question."), context.summary());
+        verify(convoRepo).updateSummary(eq(2L), anyString());
+    }
+
+    @Test
+    void windowsAreEvictedOnceTheMemoryCapIsReached() {
+        ContextAssembler assembler = new ContextAssembler(msgRepo, convoRepo, messageWriter, 1000, 100, 10, 1000, 10, false);
+        for (long id = 1; id <= 3; id++) {
+            assembler.assemble(conversation(id), true, "hi");
+            assembler.record(id, TimeOrderedIdGenerator.next(), "user", "x".repeat(200));
+        }
+
+        // Conversation 1 was least recently used and must be reloaded from the table
+        assembler.assemble(conversation(1L), false, "again");
+        verify(msgRepo).findByConversationIdOrderByCreatedAtDesc(eq(1L), any(Limit.class));
+        verify(msgRepo, times(1)).findByConversationIdOrderByCreatedAtDesc(anyLong(), any(Limit.class));
+    }
+
+    @Test
+    void theSummaryIsSavedEveryFewFoldsAndWhenItsWindowLeaves() {
+        // Two-turn ring: every recorded turn past the second folds one
+        ContextAssembler assembler = new ContextAssembler(msgRepo, convoRepo, messageWriter, 1000, 100, 2, 1 << 20, 3, false);
+        assembler.assemble(conversation(4L), true, "start");
+        for (int i = 0; i < 4; i++) {
+            assembler.record(4L, TimeOrderedIdGenerator.next(), "user", "turn " + i);
+        }
+        verify(convoRepo, never()).updateSummary(anyLong(), anyString());
+
+        assembler.record(4L, TimeOrderedIdGenerator.next(), "user", "turn 4");
+        verify(convoRepo).updateSummary(eq(4L), anyString());
+
+        assembler.record(4L, TimeOrderedIdGenerator.next(), "user", "turn 5");
+        assembler.shutdown();
+        verify(convoRepo, times(2)).updateSummary(eq(4L), anyString());
+
+        assembler.evict(4L);
+        assembler.shutdown();
+        verify(convoRepo, times(2)).updateSummary(eq(4L), anyString());
+    }
+
+    @Test
+    void onMultiInstanceAWindowBehindTheTableIsReloadedWithTheStoredSummary() {
+        ContextAssembler assembler = new ContextAssembler(msgRepo, convoRepo, messageWriter, 1000, 100, 10, 1 << 20, 10, true);
+        Conversation convo = conversation(5L);
+        assembler.assemble(convo, true, "first");
+        long own = TimeOrderedIdGenerator.next();
+        assembler.record(5L, own, "user", "first");
+        when(msgRepo.findNewestId(5L)).thenReturn(own);
+        assembler.assemble(convo, false, "second");
+        verify(msgRepo, never()).findByConversationIdOrderByCreatedAtDesc(eq(5L), any(Limit.class));
+
+        // Another instance answered, and saved its summary on the row
+        Message elsewhere = message("assistant", "Answered elsewhere.");
+        elsewhere.setId(TimeOrderedIdGenerator.next());
+        when(msgRepo.findNewestId(5L)).thenReturn(elsewhere.getId());
+        when(msgRepo.findByConversationIdOrderByCreatedAtDesc(eq(5L), any(Limit.class)))
+                .thenReturn(List.of(elsewhere, message("user", "first")));
+        convo.setSummary("User: earlier.");
+        PromptContext context = assembler.assemble(convo, false, "third");
+
+        assertEquals(List.of(
+                new ChatTurn("user", "first"),
+                new ChatTurn("assistant", "Answered elsewhere."),
+                new ChatTurn("user", "third")), context.turns());
+        assertEquals("User: earlier.", context.summary());
+    }
+
+    private static Conversation conversation(Long id) {
+        Conversation convo = new Conversation();
+        convo.setId(id);
+        return convo;
+    }
+
+    private static Message message(String role, String content) {
+        Message m = new Message();
+        m.setRole(role);
+        m.setContent(content);
+        return m;
+    }
+}
@@ -0,0 +1,250 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.devaraj.AIClone.dto.MessageView;
+import com.devaraj.AIClone.entity.Conversation;
+import com.devaraj.AIClone.entity.Message;
+import com.devaraj.AIClone.repository.MessageRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ConversationArchiverTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // Microseconds, as datetime(6) keeps them: an archive round trip must not round them away
+    private final LocalDateTime longAgo = LocalDateTime.now().minusDays(200).truncatedTo(ChronoUnit.MICROS);
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private MessageWriter messageWriter;
+    private ConversationArchiver archiver;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:archive;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("""
+                create table conversation (id bigint primary key, user_id bigint, created_at timestamp,
+                                           deleted_at timestamp, archived_at timestamp, archive_segment int,
+                                           archive_offset bigint, archive_length int)""");
+        jdbc.execute("""
+                create table message (id bigint primary key, role varchar(16), content mediumtext,
+                                      conversation_id bigint, created_at timestamp)""");
+        messageWriter = new MessageWriter(mock(MessageRepository.class), jdbc, registry, false, 16, 16, 50, 100);
+        // Background sweep off: the test drives sweep() directly
+        archiver = new ConversationArchiver(jdbc, new DataSourceTransactionManager(dataSource), messageWriter, registry,
+                false, dir.toString(), 90, 64 << 20, 10, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        archiver.shutdown();
+        jdbc.execute("drop all objects");
+    }
+
+    @Test
+    void idleConversationsMoveToTheArchiveAndBackWhenOpened() {
+        conversation(1, longAgo);
+        conversation(2, longAgo);
+        String longReply = "A reply far longer than the old 5000-character column. ".repeat(2000);
+        message(10, 1, "user", "Old question", longAgo);
+        message(11, 1, "assistant", longReply, longAgo.plusSeconds(1));
+        message(20, 2, "user", "Still active", LocalDateTime.now().minusDays(1));
+
+        archiver.sweep();
+
+        assertEquals(0, count(1), "archived rows leave the message table");
+        assertEquals(1, count(2), "a conversation with recent messages stays");
+        assertNotNull(jdbc.queryForObject("select archived_at from conversation where id = 1", LocalDateTime.class));
+        assertEquals(2, registry.counter("chat.archive.messages", "op", "archived").count());
+        assertTrue(registry.counter("chat.archive.bytes", "form", "compressed").count()
+                < registry.counter("chat.archive.bytes", "form", "raw").count() / 10);
+
+        List<MessageView> fromArchive = archiver.read(1L, 7L);
+        assertEquals(List.of(10L, 11L), fromArchive.stream().map(MessageView::id).toList());
+        assertEquals(longReply, fromArchive.get(1).content());
+        assertEquals(longAgo, fromArchive.get(0).createdAt());
+
+        assertTrue(archiver.rehydrate(1L, 7L));
+        assertEquals(2, count(1));
+        assertEquals(longReply, jdbc.queryForObject("select content from message where id = 11", String.class));
+        // created_at leads the (createdAt, id) history cursors, so it comes back exactly
+        assertEquals(longAgo, jdbc.queryForObject("select created_at from message where id = 10", LocalDateTime.class));
+        assertEquals(longAgo.plusSeconds(1),
+                jdbc.queryForObject("select created_at from message where id = 11", LocalDateTime.class));
+        assertNull(jdbc.queryForObject("select archived_at from conversation where id = 1", LocalDateTime.class));
+        assertFalse(archiver.rehydrate(1L, 7L), "already back");
+        assertEquals(1, registry.timer("chat.archive.rehydrate").count());
+    }
+
+    @Test
+    void onlyTheOwnerCanBringAConversationBack() {
+        conversation(1, longAgo);
+        message(10, 1, "user", "Mine", longAgo);
+        assertTrue(archiver.archive(1L));
+
+        assertFalse(archiver.rehydrate(1L, 8L));
+        assertTrue(archiver.read(1L, 8L).isEmpty());
+        assertEquals(0, count(1));
+    }
+
+    @Test
+    void aConversationWithAMessageStillQueuedIsNotArchived() throws Exception {
+        conversation(1, longAgo);
+        message(10, 1, "user", "Old question", longAgo);
+        // Write-behind with an insert that never completes during the test: the reply stays queued
+        JdbcTemplate stalled = mock(JdbcTemplate.class);
+        CountDownLatch release = new CountDownLatch(1);
+        when(stalled.batchUpdate(anyString(), anyCollection(), anyInt(), ArgumentMatchers.<ParameterizedPreparedStatementSetter<Object[]>>any()))
+                .thenAnswer(inv -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return new int[0][];
+                });
+        MessageWriter writeBehind = new MessageWriter(mock(MessageRepository.class), stalled, registry, true, 16, 16, 10, 100);
+        ConversationArchiver withQueue = new ConversationArchiver(jdbc, new DataSourceTransactionManager(dataSource),
+                writeBehind, registry, false, dir.resolve("queued").toString(), 90, 64 << 20, 10, 60_000);
+        Conversation convo = new Conversation();
+        convo.setId(1L);
+        Message reply = new Message();
+        reply.setRole("assistant");
+        reply.setContent("A late reply");
+        reply.setConversation(convo);
+        writeBehind.save(reply);
+
+        assertFalse(withQueue.archive(1L));
+        assertEquals(1, count(1));
+        assertNull(jdbc.queryForObject("select archived_at from conversation where id = 1", LocalDateTime.class));
+
+        release.countDown();
+        writeBehind.shutdown();
+        withQueue.shutdown();
+    }
+
+    @Test
+    void aTurnHoldingTheConversationKeepsItOutOfTheArchive() throws Exception {
+        conversation(1, longAgo);
+        message(10, 1, "user", "Old question", longAgo);
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread turn = Thread.ofPlatform().start(() -> tx.executeWithoutResult(status -> {
+            archiver.lockForWrite(1L, 7L);
+            message(11, 1, "user", "A new question", LocalDateTime.now());
+            locked.countDown();
+            // archive() runs meanwhile and waits for this transaction
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        locked.await();
+
+        assertFalse(archiver.archive(1L));
+        turn.join();
+        assertNull(jdbc.queryForObject("select archived_at from conversation where id = 1", LocalDateTime.class));
+        assertEquals(2, count(1));
+    }
+
+    @Test
+    void aTurnInAnArchivedConversationBringsItBackFirst() {
+        conversation(1, longAgo);
+        message(10, 1, "user", "Old question", longAgo);
+        assertTrue(archiver.archive(1L));
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        tx.executeWithoutResult(status -> {
+            archiver.lockForWrite(1L, 7L);
+            message(11, 1, "user", "A new question", LocalDateTime.now());
+        });
+
+        assertNull(jdbc.queryForObject("select archived_at from conversation where id = 1", LocalDateTime.class));
+        assertEquals(2, count(1), "the archived message is back next to the new one");
+        assertThrows(IllegalStateException.class, () -> archiver.lockForWrite(1L, 7L));
+    }
+
+    @Test
+    void segmentsRollOverAndCorruptRecordsAreRejected() throws IOException {
+        ArchiveStore store = new ArchiveStore(dir.resolve("small"), 64);
+        List<MessageView> messages = List.of(new MessageView(1L, "user", "x".repeat(5000), longAgo));
+        ArchiveStore.Location first = store.append(ArchiveStore.encode(messages));
+        ArchiveStore.Location second = store.append(ArchiveStore.encode(messages));
+        store.close();
+
+        assertEquals(first.segment() + 1, second.segment(), "the second record does not fit in a 64-byte segment");
+        ArchiveStore reopened = new ArchiveStore(dir.resolve("small"), 64);
+        assertEquals(messages, reopened.read(second));
+
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("small/segment-000001.arc").toFile(), "rw")) {
+            file.seek(first.offset() + first.length() - 3);
+            file.write(0x5a);
+        }
+        ArchiveStore corrupted = new ArchiveStore(dir.resolve("small"), 64);
+        assertThrows(IOException.class, () -> corrupted.read(first));
+    }
+
+    @Test
+    void recordsWrittenWithMillisecondTimestampsStillDecode() throws IOException {
+        LocalDateTime createdAt = longAgo.truncatedTo(ChronoUnit.MILLIS);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(1);
+        out.writeLong(10L);
+        out.writeUTF("user");
+        out.writeLong(createdAt.toInstant(ZoneOffset.UTC).toEpochMilli());
+        out.writeInt(2);
+        out.write("hi".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(List.of(new MessageView(10L, "user", "hi", createdAt)), ArchiveStore.decode(bytes.toByteArray()));
+    }
+
+    private void conversation(long id, LocalDateTime createdAt) {
+        jdbc.update("insert into conversation (id, user_id, created_at) values (?, 7, ?)", id, createdAt);
+    }
+
+    private void message(long id, long conversationId, String role, String content, LocalDateTime createdAt) {
+        jdbc.update("insert into message (id, role, content, conversation_id, created_at) values (?, ?, ?, ?, ?)",
+                id, role, content, conversationId, createdAt);
+    }
+
+    private int count(long conversationId) {
+        return jdbc.queryForObject("select count(*) from message where conversation_id = ?", Integer.class, conversationId);
+    }
+}
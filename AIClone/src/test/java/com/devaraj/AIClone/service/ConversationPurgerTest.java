@@ -0,0 +1,68 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ConversationPurgerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private JdbcTemplate jdbc;
+    private ConversationPurger purger;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:purger;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbc.execute("create table conversation (id bigint primary key, deleted_at timestamp, purged_at timestamp)");
+        jdbc.execute("create table message (id bigint primary key, conversation_id bigint, content varchar(255))");
+        jdbc.execute("create index idx_message_conversation on message (conversation_id)");
+        // Background thread off: the test drives purge() directly
+        purger = new ConversationPurger(jdbc, registry, false, 1000, 0, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("drop all objects");
+    }
+
+    @Test
+    void purgesInBatchesAndLeavesOtherConversationsAlone() {
+        jdbc.update("insert into conversation (id, deleted_at) values (1, ?)", LocalDateTime.now());
+        jdbc.update("insert into conversation (id) values (2)");
+        insertMessages(1L, 2500, 0);
+        insertMessages(2L, 10, 10_000);
+
+        assertEquals(2500, purger.purge(1L));
+
+        assertEquals(0, count(1L));
+        assertEquals(10, count(2L));
+        assertNotNull(jdbc.queryForObject("select purged_at from conversation where id = 1", LocalDateTime.class));
+        assertEquals(2500, registry.counter("chat.purge.messages.deleted").count());
+        // 1000 + 1000 + 500
+        assertEquals(3, registry.timer("chat.purge.batch").count());
+    }
+
+    private void insertMessages(Long conversationId, int n, long firstId) {
+        List<Object[]> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            rows.add(new Object[] { firstId + i, conversationId, "m" + i });
+        }
+        jdbc.batchUpdate("insert into message (id, conversation_id, content) values (?, ?, ?)", rows);
+    }
+
+    private int count(Long conversationId) {
+        return jdbc.queryForObject("select count(*) from message where conversation_id = ?", Integer.class, conversationId);
+    }
+}
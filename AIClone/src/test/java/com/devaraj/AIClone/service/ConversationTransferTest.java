@@ -0,0 +1,213 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devaraj.AIClone.dto.ConversationResponse;
+import com.devaraj.AIClone.dto.ImportResult;
+import com.devaraj.AIClone.dto.MessageView;
+import com.devaraj.AIClone.repository.ConversationRepository;
+import com.devaraj.AIClone.repository.MessageRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ConversationTransferTest {
+
+    private static final int PAGE = 200;
+    private static final long ID_BLOCK = 1_000_000;
+
+    private JdbcTemplate jdbc;
+
+    @AfterEach
+    void tearDown() {
+        if (jdbc != null) {
+            jdbc.execute("drop all objects");
+        }
+    }
+
+    @Test
+    void heapStaysFlatWhileExportingGigabytes() throws IOException {
+        int conversations = 100;
+        int messagesPerConversation = 4400;
+        String content = "lorem ipsum ".repeat(416); // ~5 KB, a long reply
+
+        // Stub-only mocks keep no record of their calls, so the only allocations are the export's own
+        ConversationRepository convoRepo = mock(ConversationRepository.class, withSettings().stubOnly());
+        MessageRepository msgRepo = mock(MessageRepository.class, withSettings().stubOnly());
+        LocalDateTime now = LocalDateTime.now();
+        when(convoRepo.findExportPage(anyLong(), anyLong(), any(Limit.class))).thenAnswer(call ->
+                (long) call.getArgument(1) > 0 ? List.of() : LongStream.rangeClosed(1, conversations)
+                        .mapToObj(id -> new ConversationResponse(id, "Conversation " + id, now)).toList());
+        when(msgRepo.findOldestPage(anyLong(), any(Limit.class))).thenAnswer(call ->
+                messages((Long) call.getArgument(0) * ID_BLOCK, messagesPerConversation, content, now));
+        when(msgRepo.findPageAfter(anyLong(), anyLong(), any(Limit.class))).thenAnswer(call ->
+                messages((Long) call.getArgument(1) + 1, messagesPerConversation, content, now));
+
+        ConversationTransfer transfer = new ConversationTransfer(convoRepo, msgRepo, mock(JdbcTemplate.class),
+                mock(PlatformTransactionManager.class), mock(SearchIndex.class), mock(ConversationArchiver.class),
+                mock(HistoryVersions.class), new SimpleMeterRegistry(), PAGE, Long.MAX_VALUE);
+
+        HeapSampler out = new HeapSampler(256L << 20);
+        transfer.export(7L, out);
+
+        assertTrue(out.bytes > 2L << 30, "export was " + out.bytes + " bytes");
+        assertTrue(out.samples >= 8);
+        long growth = out.peak - out.baseline;
+        assertTrue(growth < 64L << 20, "heap grew by " + (growth >> 20) + " MB during the export");
+    }
+
+    @Test
+    void importMapsConversationIdsAndInsertsMessagesInBatches() throws IOException {
+        ConversationTransfer transfer = transferOnH2(2);
+        String ndjson = """
+                {"type":"conversation","id":42,"title":"Keyset pagination","createdAt":"2026-01-01T10:00:00"}
+                {"type":"message","conversationId":42,"role":"user","content":"How does it work?","createdAt":"2026-01-01T10:00:01"}
+                {"type":"message","conversationId":42,"role":"assistant","content":"It seeks.","createdAt":"2026-01-01T10:00:02"}
+
+                {"type":"conversation","id":43,"title":"Second"}
+                {"type":"message","conversationId":43,"role":"user","content":"Hi"}
+                """;
+
+        ImportResult result = transfer.importFrom(7L, input(ndjson));
+
+        assertEquals(new ImportResult(2, 3), result);
+        Long newId = jdbc.queryForObject("select id from conversation where title = 'Keyset pagination'", Long.class);
+        assertEquals(7L, jdbc.queryForObject("select user_id from conversation where id = ?", Long.class, newId));
+        assertEquals(List.of("How does it work?", "It seeks."), jdbc.queryForList(
+                "select content from message where conversation_id = ? order by created_at", String.class, newId));
+    }
+
+    @Test
+    void aBadLineFailsItsPageAndKeepsEarlierOnes() {
+        ConversationTransfer transfer = transferOnH2(2);
+        String ndjson = """
+                {"type":"conversation","id":1,"title":"Kept"}
+                {"type":"message","conversationId":1,"role":"user","content":"kept"}
+                {"type":"conversation","id":2,"title":"Rolled back"}
+                {"type":"message","conversationId":3,"role":"user","content":"no such conversation"}
+                """;
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> transfer.importFrom(7L, input(ndjson)));
+
+        assertTrue(e.getReason().startsWith("Line 4:"), e.getReason());
+        assertEquals(List.of("Kept"), jdbc.queryForList("select title from conversation", String.class));
+        assertEquals(1, jdbc.queryForObject("select count(*) from message", Integer.class));
+    }
+
+    @Test
+    void aPageIsAlsoCutByBytes() {
+        // Room for 200 lines, but the first two already pass 100 characters
+        ConversationTransfer transfer = transferOnH2(200, 100);
+        String ndjson = """
+                {"type":"conversation","id":1,"title":"Kept"}
+                {"type":"message","conversationId":1,"role":"user","content":"long enough to fill the page"}
+                {"type":"message","conversationId":9,"role":"user","content":"no such conversation"}
+                """;
+
+        assertThrows(ResponseStatusException.class, () -> transfer.importFrom(7L, input(ndjson)));
+
+        assertEquals(List.of("Kept"), jdbc.queryForList("select title from conversation", String.class));
+        assertEquals(1, jdbc.queryForObject("select count(*) from message", Integer.class));
+    }
+
+    private ConversationTransfer transferOnH2(int pageSize) {
+        return transferOnH2(pageSize, Long.MAX_VALUE);
+    }
+
+    private ConversationTransfer transferOnH2(int pageSize, long pageMaxBytes) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:transfer;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("""
+                create table conversation (id bigint auto_increment primary key, user_id bigint, title varchar(255),
+                                           created_at timestamp, version bigint, deleted_at timestamp)""");
+        jdbc.execute("""
+                create table message (id bigint primary key, role varchar(255), content mediumtext,
+                                      conversation_id bigint references conversation(id), created_at timestamp)""");
+        return new ConversationTransfer(mock(ConversationRepository.class), mock(MessageRepository.class), jdbc,
+                new DataSourceTransactionManager(dataSource), mock(SearchIndex.class), mock(ConversationArchiver.class),
+                mock(HistoryVersions.class), new SimpleMeterRegistry(), pageSize, pageMaxBytes);
+    }
+
+    private static ByteArrayInputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // One page of a conversation starting at message id firstId (ids count up within the conversation's block)
+    private static List<MessageView> messages(long firstId, int perConversation, String content, LocalDateTime now) {
+        int index = (int) (firstId % ID_BLOCK);
+        int n = Math.max(0, Math.min(PAGE, perConversation - index));
+        List<MessageView> page = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            page.add(new MessageView(firstId + i, i % 2 == 0 ? "user" : "assistant", content, now));
+        }
+        return page;
+    }
+
+    // Discards what is written; after a GC every sampleEvery bytes, records the heap in use
+    private static final class HeapSampler extends OutputStream {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final long sampleEvery;
+        private final long baseline;
+        private long bytes;
+        private long nextSample;
+        private long peak;
+        private int samples;
+
+        HeapSampler(long sampleEvery) {
+            this.sampleEvery = sampleEvery;
+            this.nextSample = sampleEvery;
+            this.baseline = usedAfterGc();
+        }
+
+        @Override
+        public void write(int b) {
+            count(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count(len);
+        }
+
+        private void count(int n) {
+            bytes += n;
+            if (bytes >= nextSample) {
+                nextSample += sampleEvery;
+                peak = Math.max(peak, usedAfterGc());
+                samples++;
+            }
+        }
+
+        private long usedAfterGc() {
+            System.gc();
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+    }
+}
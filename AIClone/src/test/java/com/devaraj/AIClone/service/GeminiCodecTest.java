@@ -0,0 +1,68 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.devaraj.AIClone.dto.ChatTurn;
+import com.devaraj.AIClone.dto.GeminiReply;
+import com.devaraj.AIClone.dto.PromptContext;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+class GeminiCodecTest {
+
+    private final GeminiCodec codec = new GeminiCodec();
+
+    @Test
+    void requestSurvivesQuotesNewlinesBackslashesAndUnicode() {
+        String tricky = "He said \"hi\"\nC:\\temp\\new \t tab \u0001 ünïcødé 🎉";
+        PromptContext context = new PromptContext("earlier \"stuff\"", List.of(
+                new ChatTurn("user", "first"),
+                new ChatTurn("assistant", "answer"),
+                new ChatTurn("user", tricky)));
+
+        JsonNode body = new ObjectMapper().readTree(codec.encode(context));
+
+        assertEquals("Summary of the earlier part of this conversation:\nearlier \"stuff\"",
+                body.path("systemInstruction").path("parts").path(0).path("text").asText());
+        assertEquals(3, body.path("contents").size());
+        assertEquals("model", body.path("contents").path(1).path("role").asText());
+        assertEquals(tricky, body.path("contents").path(2).path("parts").path(0).path("text").asText());
+    }
+
+    @Test
+    void readsTextFinishReasonAndUsageAndSkipsTheRest() {
+        String json = """
+                {"candidates":[
+                   {"content":{"role":"model","parts":[{"text":"Hello, "},{"inlineData":{"data":"x"}},{"text":"world"}]},
+                    "finishReason":"STOP",
+                    "safetyRatings":[{"category":"HARM","probability":"NEGLIGIBLE"}],
+                    "citationMetadata":{"citations":[{"startIndex":1,"uri":"u"}]}},
+                   {"content":{"parts":[{"text":"second candidate"}]}}],
+                 "usageMetadata":{"promptTokenCount":12,"candidatesTokenCount":3,"totalTokenCount":15,
+                                  "promptTokensDetails":[{"modality":"TEXT","tokenCount":12}]},
+                 "modelVersion":"gemini-2.5-flash"}""";
+
+        GeminiReply reply = codec.decode(json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("Hello, world", reply.text());
+        assertEquals("STOP", reply.finishReason());
+        assertEquals(new GeminiReply.Usage(12, 3, 15), reply.usage());
+    }
+
+    @Test
+    void metadataOnlyChunkHasNoText() {
+        GeminiReply reply = codec.decode("{\"candidates\":[{\"finishReason\":\"STOP\"}]}");
+
+        assertNull(reply.text());
+        assertEquals("STOP", reply.finishReason());
+        assertEquals(GeminiReply.EMPTY, codec.decode("{\"candidates\":[]}"));
+        assertEquals(GeminiReply.EMPTY, codec.decode((byte[]) null));
+    }
+}
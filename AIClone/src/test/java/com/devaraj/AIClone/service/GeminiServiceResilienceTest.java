@@ -0,0 +1,120 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devaraj.AIClone.support.GeminiStub;
+import com.devaraj.AIClone.support.GeminiStub.Reply;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Runs GeminiService against a local stub whose behaviour per call (status, delay) is scripted by each test
+class GeminiServiceResilienceTest {
+
+    private GeminiStub stub;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private volatile GeminiStub.Script script = (call, stream) -> reply(call);
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = new GeminiStub((call, stream) -> script.reply(call, stream));
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+
+    private static Reply reply(int call) {
+        return Reply.text("reply " + call);
+    }
+
+    private GeminiService gemini(long timeoutMs, int maxAttempts, long hedgeDelayMs, int breakerWindow) {
+        return new GeminiService("test-key", stub.baseUrl(), "gemini-2.5-flash",
+                AdmissionController.fixed(8, 1000),
+                registry, 1000, timeoutMs, maxAttempts, 20, hedgeDelayMs, 0.5, breakerWindow, 60_000);
+    }
+
+    @Test
+    void retriesTransientFailuresWithBackoff() {
+        script = (call, stream) -> call <= 2 ? Reply.error(call == 1 ? 503 : 429) : reply(call);
+
+        assertEquals("reply 3", gemini(5000, 3, 0, 20).generateText("hi"));
+        assertEquals(3, stub.calls());
+        for (String status : new String[] { "503", "429", "ok" }) {
+            assertEquals(1, registry.get("llm.upstream").tag("status", status).timer().count(), status);
+        }
+    }
+
+    @Test
+    void clientErrorsAreNotRetriedAndAreNotSwallowed() {
+        script = (call, stream) -> Reply.error(400);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> gemini(5000, 3, 0, 20).generateText("hi"));
+        assertEquals(HttpStatus.BAD_GATEWAY, e.getStatusCode());
+        assertEquals(1, stub.calls());
+    }
+
+    @Test
+    void slowUpstreamHitsTheDeadline() {
+        script = (call, stream) -> reply(call).after(2000);
+
+        long start = System.nanoTime();
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> gemini(200, 1, 0, 20).generateText("hi"));
+        long tookMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, e.getStatusCode());
+        assertTrue(tookMs < 1500, "took " + tookMs + " ms");
+    }
+
+    @Test
+    void breakerOpensAndThenFailsFastWithoutCallingUpstream() {
+        script = (call, stream) -> Reply.error(500);
+        GeminiService gemini = gemini(5000, 1, 0, 4);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ResponseStatusException.class, () -> gemini.generateText("hi"));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, gemini.breakerState());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> gemini.generateText("hi"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals(4, stub.calls());
+    }
+
+    @Test
+    void hedgedRequestCutsTheTail() {
+        GeminiService gemini = gemini(5000, 1, 100, 20);
+        // Warm up the client so connection setup does not delay the hedge
+        gemini.generateText("warm-up");
+
+        // The first real attempt stalls; the hedge fired after 100 ms answers straight away
+        script = (call, stream) -> call == 2 ? reply(call).after(3000) : reply(call);
+        long start = System.nanoTime();
+        String reply = gemini.generateText("hi");
+        long tookMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("reply 3", reply);
+        assertTrue(tookMs < 1500, "took " + tookMs + " ms");
+    }
+
+    @Test
+    void streamIsRetriedBeforeTheFirstToken() {
+        script = (call, stream) -> call == 1 ? Reply.error(503) : reply(call);
+
+        List<String> tokens = gemini(5000, 3, 0, 20).streamText("hi").collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("reply 2"), tokens);
+    }
+}
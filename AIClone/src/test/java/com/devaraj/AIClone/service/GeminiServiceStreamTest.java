@@ -0,0 +1,70 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.devaraj.AIClone.support.GeminiStub;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Runs GeminiService against a local stub that emits a chunked SSE response
+class GeminiServiceStreamTest {
+
+    private static final List<String> CHUNKS = List.of("Hel", "lo, ", "world");
+
+    private GeminiStub stub;
+    private GeminiService gemini;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = new GeminiStub((call, stream) -> new GeminiStub.Reply(200, 0, CHUNKS, 50));
+        gemini = new GeminiService("test-key", stub.baseUrl(), "gemini-2.5-flash",
+                AdmissionController.fixed(8, 1000),
+                new SimpleMeterRegistry(), 1000, 5000, 1, 50, 0, 0.5, 20, 10_000);
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    void relaysEachChunkAsItArrives() {
+        List<String> tokens = gemini.streamText("Say \"hello\"").collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(CHUNKS, tokens);
+        assertTrue(stub.lastRequest().contains(":streamGenerateContent?alt=sse&key=test-key"));
+    }
+
+    @Test
+    void tokensAreNotBufferedUntilTheStreamCompletes() {
+        // Warm up the client so connection setup does not swallow the gaps being measured
+        gemini.streamText("warm-up").blockLast(Duration.ofSeconds(5));
+
+        // elapsed() is the gap since the previous token; a buffered response would deliver them all back to back
+        List<Long> gaps = gemini.streamText("hi").elapsed().map(t -> t.getT1()).collectList().block(Duration.ofSeconds(5));
+        long firstToLast = gaps.subList(1, gaps.size()).stream().mapToLong(Long::longValue).sum();
+
+        assertEquals(CHUNKS.size(), gaps.size());
+        assertTrue(firstToLast >= 50, "gaps between tokens: " + gaps);
+    }
+
+    @Test
+    void cancellingTheStreamClosesTheUpstreamConnection() throws InterruptedException {
+        gemini.streamText("hi").take(1).blockLast(Duration.ofSeconds(5));
+
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (stub.disconnects() == 0) {
+            assertTrue(System.nanoTime() < deadline, "stub kept writing to a cancelled stream");
+            Thread.sleep(20);
+        }
+    }
+}
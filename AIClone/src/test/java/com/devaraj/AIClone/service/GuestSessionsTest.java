@@ -0,0 +1,156 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devaraj.AIClone.dto.ChatTurn;
+import com.devaraj.AIClone.dto.ExportLine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class GuestSessionsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private GuestSessions sessions(long ttlMs, int maxSessions, long maxBytes, long maxSessionBytes, int tokenBudget) {
+        return new GuestSessions(registry, ttlMs, maxSessions, maxBytes, maxSessionBytes, tokenBudget);
+    }
+
+    private double evicted(String reason) {
+        return registry.get("guest.sessions.evicted").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void guestsOnlySeeTheirOwnConversations() {
+        GuestSessions sessions = sessions(60_000, 100, 1 << 20, 1 << 20, 8000);
+        long alice = sessions.create();
+        long bob = sessions.create();
+        assertTrue(GuestSessions.isGuest(alice));
+        assertNotEquals(alice, bob);
+
+        Long chat = sessions.startTurn(alice, null, "hello there").conversationId();
+        sessions.addReply(alice, chat, "hi");
+
+        assertEquals(1, sessions.history(alice, null, 10).size());
+        assertEquals(List.of("hello there", "hi"),
+                sessions.messages(alice, chat, null, 10).stream().map(m -> m.content()).toList());
+        assertTrue(sessions.history(bob, null, 10).isEmpty());
+        assertTrue(sessions.messages(bob, chat, null, 10).isEmpty());
+    }
+
+    @Test
+    void promptKeepsTheNewestTurnsThatFitTheBudget() {
+        GuestSessions sessions = sessions(60_000, 100, 1 << 20, 1 << 20, 60);
+        long guest = sessions.create();
+        Long chat = sessions.startTurn(guest, null, "first " + "x".repeat(400)).conversationId();
+        sessions.addReply(guest, chat, "second");
+
+        List<ChatTurn> turns = sessions.startTurn(guest, chat, "third").context().turns();
+
+        assertEquals(List.of("second", "third"), turns.stream().map(ChatTurn::text).toList());
+    }
+
+    @Test
+    void idleSessionsExpire() throws InterruptedException {
+        GuestSessions sessions = sessions(50, 100, 1 << 20, 1 << 20, 8000);
+        long guest = sessions.create();
+        sessions.startTurn(guest, null, "hello");
+        Thread.sleep(100);
+
+        sessions.create();
+
+        assertEquals(1, sessions.liveSessions());
+        assertEquals(1, evicted("idle"));
+        assertTrue(sessions.history(guest, null, 10).isEmpty());
+    }
+
+    @Test
+    void leastRecentlyUsedSessionsMakeRoom() {
+        GuestSessions sessions = sessions(60_000, 2, 1 << 20, 1 << 20, 8000);
+        long first = sessions.create();
+        long second = sessions.create();
+        sessions.history(first, null, 10);
+
+        sessions.create();
+
+        assertEquals(2, sessions.liveSessions());
+        assertEquals(1, evicted("capacity"));
+        // second was the least recently used; first survives with its state
+        sessions.startTurn(first, null, "still here");
+        assertEquals(1, sessions.history(first, null, 10).size());
+        assertTrue(sessions.history(second, null, 10).isEmpty());
+    }
+
+    @Test
+    void memoryStaysWithinTheCaps() {
+        GuestSessions sessions = sessions(60_000, 1000, 64 * 1024, 16 * 1024, 8000);
+        String text = "y".repeat(1000);
+        for (int g = 0; g < 20; g++) {
+            long guest = sessions.create();
+            for (int c = 0; c < 10; c++) {
+                sessions.startTurn(guest, null, text);
+            }
+            assertTrue(sessions.history(guest, null, 100).size() < 10, "per-session cap drops oldest chats");
+        }
+        assertTrue(sessions.bytesHeld() <= 64 * 1024, "held " + sessions.bytesHeld());
+        assertTrue(evicted("capacity") > 0);
+    }
+
+    @Test
+    void oneLongConversationIsTrimmedInsteadOfPushingOutOtherGuests() {
+        GuestSessions sessions = sessions(60_000, 1000, 64 * 1024, 16 * 1024, 8000);
+        long quiet = sessions.create();
+        sessions.startTurn(quiet, null, "just one question");
+        long chatty = sessions.create();
+        Long chat = sessions.startTurn(chatty, null, "first").conversationId();
+        Long firstId = sessions.messages(chatty, chat, null, 1).get(0).id();
+
+        String text = "z".repeat(2000);
+        for (int i = 0; i < 100; i++) {
+            sessions.startTurn(chatty, chat, text);
+            sessions.addReply(chatty, chat, text);
+        }
+
+        assertTrue(sessions.bytesHeld() <= 64 * 1024, "held " + sessions.bytesHeld());
+        assertEquals(0, evicted("capacity"));
+        assertEquals(1, sessions.history(quiet, null, 10).size());
+        List<String> kept = sessions.messages(chatty, chat, null, 1000).stream().map(m -> m.content()).toList();
+        assertTrue(kept.size() < 10 && !kept.contains("first"), "oldest messages go first");
+        assertEquals(text, kept.get(kept.size() - 1));
+        // Paging back from a trimmed message ends there rather than starting over at the latest page
+        assertTrue(sessions.messages(chatty, chat, firstId, 10).isEmpty());
+
+        ResponseStatusException tooLong = assertThrows(ResponseStatusException.class,
+                () -> sessions.startTurn(chatty, chat, "z".repeat(8 * 1024)));
+        assertEquals(HttpStatus.CONTENT_TOO_LARGE, tooLong.getStatusCode());
+    }
+
+    @Test
+    void aSnapshotHandsOverTheConversationsAndOnlyPromoteEndsTheSession() {
+        GuestSessions sessions = sessions(60_000, 100, 1 << 20, 1 << 20, 8000);
+        long guest = sessions.create();
+        Long chat = sessions.startTurn(guest, null, "keep this").conversationId();
+        sessions.addReply(guest, chat, "kept");
+
+        List<ExportLine> lines = sessions.snapshot(guest);
+
+        assertEquals(List.of(ExportLine.CONVERSATION, ExportLine.MESSAGE, ExportLine.MESSAGE),
+                lines.stream().map(ExportLine::type).toList());
+        assertEquals(chat, lines.get(1).conversationId());
+        // Not stored yet: a failed registration leaves the guest where it was
+        assertEquals(1, sessions.liveSessions());
+
+        sessions.promote(guest);
+        assertEquals(0, sessions.liveSessions());
+        assertEquals(0, sessions.bytesHeld());
+        assertTrue(sessions.snapshot(guest).isEmpty());
+    }
+}
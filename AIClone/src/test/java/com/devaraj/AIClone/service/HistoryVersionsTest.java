@@ -0,0 +1,91 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class HistoryVersionsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final HistoryVersions versions = new HistoryVersions(registry, false, "", 100);
+
+    private ServletWebRequest get(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/chat/history");
+        request.addHeader("If-None-Match", ifNoneMatch);
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    @Test
+    void aTagMatchesUntilItsListOrConversationChanges() {
+        String history = versions.historyTag(1L);
+        String messages = versions.messagesTag(1L, 10L);
+        assertTrue(versions.notModified(get(history), versions.historyTag(1L), "history"));
+
+        versions.conversationChanged(1L, 10L);
+        assertEquals(history, versions.historyTag(1L));
+        assertNotEquals(messages, versions.messagesTag(1L, 10L));
+
+        versions.historyChanged(1L);
+        assertFalse(versions.notModified(get(history), versions.historyTag(1L), "history"));
+        assertEquals(1, registry.get("chat.history.revalidated").tag("result", "not_modified").counter().count());
+        assertEquals(1, registry.get("chat.history.revalidated").tag("result", "changed").counter().count());
+    }
+
+    @Test
+    void tagsAreNotSharedBetweenUsersOrGivenToGuests() {
+        assertNotEquals(versions.historyTag(1L), versions.historyTag(2L));
+        assertNotEquals(versions.messagesTag(1L, 10L), versions.messagesTag(2L, 10L));
+        assertNull(versions.historyTag(-5L));
+    }
+
+    @Test
+    void tagsAreOffByDefaultAndCannotBeForcedOnAcrossInstances() {
+        HistoryVersions shared = new HistoryVersions(registry, true, "", 100);
+        assertNull(shared.historyTag(1L));
+        assertNull(new HistoryVersions(registry, false, "false", 100).historyTag(1L));
+
+        assertThrows(IllegalStateException.class, () -> new HistoryVersions(registry, true, "true", 100));
+    }
+
+    @Test
+    void clearingAtMaxEntriesNeverBringsBackAnOldTag() {
+        HistoryVersions small = new HistoryVersions(registry, false, "", 2);
+        String before = small.messagesTag(1L, 10L);
+        small.conversationChanged(1L, 10L);
+        String changed = small.messagesTag(1L, 10L);
+
+        small.conversationChanged(1L, 11L);
+        small.conversationChanged(1L, 12L);
+
+        // Conversation 10 was dropped: it now has the raised floor, not its old or original version
+        String after = small.messagesTag(1L, 10L);
+        assertNotEquals(before, after);
+        assertNotEquals(changed, after);
+    }
+
+    @Test
+    void aChangeInATransactionShowsOnlyOnceCommitted() {
+        String before = versions.historyTag(1L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            versions.historyChanged(1L);
+            assertEquals(before, versions.historyTag(1L));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertNotEquals(before, versions.historyTag(1L));
+    }
+}
@@ -0,0 +1,205 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.devaraj.AIClone.dto.PromptContext;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class LlmRouterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Scripted primary = new Scripted("primary");
+    private final Scripted secondary = new Scripted("secondary");
+
+    // A model whose behaviour each test sets: wait admissionMs in the (shared) admission queue, answer after delayMs,
+    // or fail with `failure`
+    private static final class Scripted implements LlmProvider {
+        private final String model;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile long admissionMs;
+        private volatile long delayMs;
+        private volatile RuntimeException failure;
+        private volatile boolean failAfterFirstChunk;
+
+        private Scripted(String model) {
+            this.model = model;
+        }
+
+        @Override
+        public String model() {
+            return model;
+        }
+
+        @Override
+        public String generateText(PromptContext context, String caller) {
+            calls.incrementAndGet();
+            sleep(delayMs);
+            if (failure != null) {
+                throw failure;
+            }
+            return model;
+        }
+
+        @Override
+        public String generateText(PromptContext context, String caller, Runnable onAdmitted) {
+            sleep(admissionMs);
+            onAdmitted.run();
+            return generateText(context, caller);
+        }
+
+        @Override
+        public Flux<String> streamText(PromptContext context, String caller, Runnable onAdmitted) {
+            return Mono.delay(Duration.ofMillis(admissionMs)).thenMany(Flux.defer(() -> {
+                onAdmitted.run();
+                return streamText(context, caller);
+            }));
+        }
+
+        @Override
+        public Flux<String> streamText(PromptContext context, String caller) {
+            return Flux.defer(() -> {
+                calls.incrementAndGet();
+                if (failure == null) {
+                    return Flux.just(model, "!");
+                }
+                return failAfterFirstChunk ? Flux.concat(Flux.just(model), Flux.error(failure)) : Flux.error(failure);
+            });
+        }
+    }
+
+    private LlmRouter router(long maxLatencyMs, int smallPromptTokens, long probeIntervalMs, LlmRouter.Route... routes) {
+        return new LlmRouter(List.of(routes), registry, 0.5, 0.3, maxLatencyMs, smallPromptTokens, probeIntervalMs);
+    }
+
+    private LlmRouter router() {
+        return router(10_000, 0, 60_000, new LlmRouter.Route(primary, 1.0, 1000), new LlmRouter.Route(secondary, 0.1, 1000));
+    }
+
+    private double routed(String model, String reason) {
+        var counter = registry.find("llm.route").tags("model", model, "reason", reason).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    void prefersTheFirstModelAndFallsBackWhenItFails() {
+        LlmRouter router = router();
+        assertEquals("primary", router.generateText(PromptContext.of("hi"), "user:1"));
+
+        primary.failure = new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "busy");
+        assertEquals("secondary", router.generateText(PromptContext.of("hi"), "user:1"));
+
+        assertEquals(2, routed("primary", "preferred"));
+        assertEquals(1, routed("secondary", "fallback"));
+        assertEquals(1, registry.get("llm.model.latency").tags("model", "primary", "outcome", "error").timer().count());
+    }
+
+    @Test
+    void aBadRequestIsNotRetriedOnAnotherModel() {
+        LlmRouter router = router();
+        primary.failure = new ResponseStatusException(HttpStatus.BAD_REQUEST, "bad prompt");
+
+        assertThrows(ResponseStatusException.class, () -> router.generateText(PromptContext.of("hi"), "user:1"));
+        assertEquals(0, secondary.calls.get());
+    }
+
+    @Test
+    void aCallShedByAdmissionNeitherFallsBackNorCountsAgainstTheModel() {
+        LlmRouter router = router();
+        primary.failure = new AdmissionController.ShedException();
+
+        assertThrows(AdmissionController.ShedException.class, () -> router.generateText(PromptContext.of("hi"), "user:1"));
+        assertThrows(AdmissionController.ShedException.class,
+                () -> router.streamText(PromptContext.of("hi"), "user:1").blockLast());
+        assertEquals(0, secondary.calls.get());
+        assertEquals(0, registry.get("llm.model.error.rate").tags("model", "primary").gauge().value());
+        assertEquals(0, registry.get("llm.model.latency").tags("model", "primary", "outcome", "error").timer().count());
+    }
+
+    @Test
+    void avoidsASlowModelThenProbesItAgain() throws InterruptedException {
+        LlmRouter router = router(50, 0, 200, new LlmRouter.Route(primary, 1.0, 1000), new LlmRouter.Route(secondary, 0.1, 1000));
+        primary.delayMs = 120;
+        router.generateText(PromptContext.of("hi"), "user:1");
+
+        // Its latency EWMA is now over max-latency-ms
+        assertEquals("secondary", router.generateText(PromptContext.of("hi"), "user:1"));
+        assertEquals(1, routed("secondary", "preferred"));
+
+        primary.delayMs = 0;
+        Thread.sleep(250);
+        assertEquals("primary", router.generateText(PromptContext.of("hi"), "user:1"));
+        assertEquals(1, routed("primary", "probe"));
+        // One probe per interval: the next request still avoids it
+        assertEquals("secondary", router.generateText(PromptContext.of("hi"), "user:1"));
+    }
+
+    @Test
+    void timeSpentWaitingForAdmissionDoesNotMakeAModelSlow() {
+        LlmRouter router = router(50, 0, 60_000, new LlmRouter.Route(primary, 1.0, 1000), new LlmRouter.Route(secondary, 0.1, 1000));
+        primary.admissionMs = 120;
+
+        assertEquals("primary", router.generateText(PromptContext.of("hi"), "user:1"));
+        assertEquals(List.of("primary", "!"), router.streamText(PromptContext.of("hi"), "user:1").collectList().block());
+        // Still healthy: the queue is shared by every model, so the secondary would have waited the same
+        assertEquals("primary", router.generateText(PromptContext.of("hi"), "user:1"));
+        assertEquals(3, routed("primary", "preferred"));
+        assertEquals(0, secondary.calls.get());
+        Timer ok = registry.get("llm.model.latency").tags("model", "primary", "outcome", "ok").timer();
+        assertTrue(ok.max(TimeUnit.MILLISECONDS) < 50, "max " + ok.max(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void smallPromptsGoToTheCheapestModelAndLargeOnesToAModelThatFitsThem() {
+        LlmRouter router = router(10_000, 100, 60_000,
+                new LlmRouter.Route(primary, 1.0, 1_000_000), new LlmRouter.Route(secondary, 0.1, 500));
+
+        assertEquals("secondary", router.generateText(PromptContext.of("short question"), "user:1"));
+        assertEquals(1, routed("secondary", "cheapest"));
+        assertEquals("primary", router.generateText(PromptContext.of("x".repeat(1000)), "user:1"));
+        // Too large for the secondary's window: no fallback to it either
+        primary.failure = new ResponseStatusException(HttpStatus.BAD_GATEWAY, "down");
+        assertThrows(ResponseStatusException.class, () -> router.generateText(PromptContext.of("x".repeat(4000)), "user:1"));
+        assertEquals(1, secondary.calls.get());
+    }
+
+    @Test
+    void aStreamFallsBackOnlyBeforeItsFirstChunk() {
+        LlmRouter router = router();
+        primary.failure = new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "slow");
+
+        assertEquals(List.of("secondary", "!"), router.streamText(PromptContext.of("hi"), "user:1").collectList().block());
+
+        // A fresh router, as the failure above counts against the primary's health
+        LlmRouter fresh = router();
+        primary.failAfterFirstChunk = true;
+        List<String> relayed = new ArrayList<>();
+        assertThrows(ResponseStatusException.class,
+                () -> fresh.streamText(PromptContext.of("hi"), "user:1").doOnNext(relayed::add).blockLast());
+        assertEquals(List.of("primary"), relayed);
+        assertEquals(1, secondary.calls.get());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
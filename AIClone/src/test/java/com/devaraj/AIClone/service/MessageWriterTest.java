@@ -0,0 +1,136 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import com.devaraj.AIClone.entity.Conversation;
+import com.devaraj.AIClone.entity.Message;
+import com.devaraj.AIClone.repository.MessageRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MessageWriterTest {
+
+    private final MessageRepository msgRepo = mock(MessageRepository.class);
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void queuedMessagesAreReadableAndFlushedAsOneBatch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new ArrayList<>();
+        when(jdbc.batchUpdate(anyString(), anyCollection(), anyInt(), ArgumentMatchers.<ParameterizedPreparedStatementSetter<Object[]>>any()))
+                .thenAnswer(inv -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    batchSizes.add(((Collection<?>) inv.getArgument(1)).size());
+                    return new int[0][];
+                });
+        MessageWriter writer = new MessageWriter(msgRepo, jdbc, registry, true, 100, 10, 200, 100);
+
+        Conversation convo = conversation(7L);
+        for (int i = 0; i < 10; i++) {
+            writer.save(message(convo, "m" + i));
+        }
+
+        // Not flushed yet: readers still see every message, in order, without a table hit
+        List<Message> visible = writer.withPending(7L, List::of);
+        assertEquals(10, visible.size());
+        assertEquals("m0", visible.get(0).getContent());
+        assertEquals("m9", visible.get(9).getContent());
+
+        release.countDown();
+        writer.shutdown();
+
+        assertEquals(List.of(10), batchSizes);
+        assertTrue(writer.withPending(7L, List::of).isEmpty());
+        assertEquals(1, registry.get("chat.messages.write_behind.flush").timer().count());
+        verify(msgRepo, never()).save(any());
+    }
+
+    @Test
+    void pendingAndStoredCopiesOfTheSameMessageAreMergedOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbc.batchUpdate(anyString(), anyCollection(), anyInt(), ArgumentMatchers.<ParameterizedPreparedStatementSetter<Object[]>>any()))
+                .thenAnswer(inv -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return new int[0][];
+                });
+        MessageWriter writer = new MessageWriter(msgRepo, jdbc, registry, true, 100, 10, 10, 100);
+        Message m = message(conversation(8L), "hello");
+        writer.save(m);
+
+        assertEquals(1, writer.withPending(8L, () -> List.of(m)).size());
+
+        release.countDown();
+        writer.shutdown();
+    }
+
+    @Test
+    void aConversationDiscardedWhileItsBatchIsCollectedIsLeftOut() throws Exception {
+        List<String> inserted = new ArrayList<>();
+        when(jdbc.batchUpdate(anyString(), anyCollection(), anyInt(), ArgumentMatchers.<ParameterizedPreparedStatementSetter<Object[]>>any()))
+                .thenAnswer(inv -> {
+                    ((Collection<?>) inv.getArgument(1)).forEach(m -> inserted.add(((Message) m).getContent()));
+                    return new int[0][];
+                });
+        // The writer waits up to 500 ms for a batch to fill before it inserts
+        MessageWriter writer = new MessageWriter(msgRepo, jdbc, registry, true, 100, 10, 500, 100);
+        writer.save(message(conversation(5L), "deleted"));
+        writer.save(message(conversation(6L), "kept"));
+
+        // Both are out of the queue and in the batch being collected
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("chat.messages.write_behind.queue.depth").gauge().value() > 0) {
+            assertTrue(System.nanoTime() < deadline, "writer never took the batch");
+            Thread.sleep(5);
+        }
+        writer.discard(5L);
+        writer.shutdown();
+
+        assertEquals(List.of("kept"), inserted);
+        assertTrue(writer.pending(5L).isEmpty());
+    }
+
+    @Test
+    void disabledWriteBehindSavesThroughTheRepository() {
+        MessageWriter writer = new MessageWriter(msgRepo, jdbc, registry, false, 100, 10, 10, 100);
+        Message m = message(conversation(9L), "hi");
+
+        writer.save(m);
+
+        verify(msgRepo).save(m);
+    }
+
+    private static Conversation conversation(Long id) {
+        Conversation convo = new Conversation();
+        convo.setId(id);
+        return convo;
+    }
+
+    private static Message message(Conversation convo, String content) {
+        Message m = new Message();
+        m.setRole("user");
+        m.setContent(content);
+        m.setConversation(convo);
+        return m;
+    }
+}
@@ -0,0 +1,128 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.devaraj.AIClone.dto.PromptContext;
+import com.devaraj.AIClone.support.GeminiStub;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Runs PromptCache over a real GeminiService pointed at a local stub that counts generateContent calls
+class PromptCacheTest {
+
+    private GeminiStub stub;
+    private GeminiService gemini;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean failing;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = new GeminiStub((call, stream) -> {
+            // Hold the first reply until the test has piled up concurrent callers
+            release.await(5, TimeUnit.SECONDS);
+            return failing ? GeminiStub.Reply.error(500) : GeminiStub.Reply.text("reply " + call);
+        });
+        gemini = new GeminiService("test-key", stub.baseUrl(), "gemini-2.5-flash",
+                AdmissionController.fixed(64, 5000),
+                new SimpleMeterRegistry(), 1000, 10_000, 1, 50, 0, 0.5, 20, 10_000);
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    void concurrentIdenticalPromptsMakeOneUpstreamCall() throws Exception {
+        PromptCache cache = new PromptCache(gemini, registry, true, 60_000, 100);
+        int callers = 20;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        List<Future<String>> replies = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            replies.add(pool.submit(() -> cache.generateText(PromptContext.of("What can you do?"), "user:1", true)));
+        }
+        // Give every caller time to reach the cache before the single upstream call returns
+        Thread.sleep(300);
+        release.countDown();
+
+        for (Future<String> reply : replies) {
+            assertEquals("reply 1", reply.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertEquals(1, stub.calls());
+        assertEquals(1, count("miss"));
+        assertEquals(callers - 1, count("coalesced") + count("hit"));
+    }
+
+    @Test
+    void repeatsHitUntilBypassedAndWhitespaceDoesNotMatter() {
+        release.countDown();
+        PromptCache cache = new PromptCache(gemini, registry, true, 60_000, 100);
+
+        assertEquals("reply 1", cache.generateText(PromptContext.of("Tell me a joke"), "user:1", true));
+        assertEquals("reply 1", cache.generateText(PromptContext.of("  Tell me   a joke\n"), "user:1", true));
+        assertEquals("reply 2", cache.generateText(PromptContext.of("Tell me a joke"), "user:1", false));
+        assertEquals("reply 3", cache.generateText(PromptContext.of("Tell me another joke"), "user:1", true));
+
+        assertEquals(3, stub.calls());
+        assertEquals(1, count("hit"));
+        assertEquals(1, count("bypass"));
+    }
+
+    @Test
+    void aFallbackReplyIsNotServedAsThePreferredModels() {
+        release.countDown();
+        // max-error-rate 1: the primary stays preferred after failing once
+        LlmRouter router = new LlmRouter(List.of(new LlmRouter.Route(gemini, 1.0, Integer.MAX_VALUE),
+                new LlmRouter.Route(new StubLlmProvider("backup", 0), 1.0, Integer.MAX_VALUE)),
+                new SimpleMeterRegistry(), 0.5, 1.0, 10_000, 0, 60_000);
+        PromptCache cache = new PromptCache(router, registry, true, 60_000, 100);
+
+        failing = true;
+        assertEquals("(backup) You said: Hi", cache.generateText(PromptContext.of("Hi"), "user:1", true));
+        failing = false;
+        assertEquals("reply 2", cache.generateText(PromptContext.of("Hi"), "user:1", true));
+        assertEquals("reply 2", cache.generateText(PromptContext.of("Hi"), "user:1", true));
+        assertEquals(1, count("hit"));
+    }
+
+    @Test
+    void expiredEntriesAreFetchedAgain() throws InterruptedException {
+        release.countDown();
+        PromptCache cache = new PromptCache(gemini, registry, true, 50, 100);
+
+        cache.generateText(PromptContext.of("Hi"), "user:1", true);
+        Thread.sleep(100);
+        assertEquals("reply 2", cache.generateText(PromptContext.of("Hi"), "user:1", true));
+    }
+
+    @Test
+    void disabledCacheAlwaysCallsUpstream() {
+        release.countDown();
+        PromptCache cache = new PromptCache(gemini, registry, false, 60_000, 100);
+
+        cache.generateText(PromptContext.of("Hi"), "user:1", true);
+        cache.generateText(PromptContext.of("Hi"), "user:1", true);
+
+        assertEquals(2, stub.calls());
+    }
+
+    private double count(String result) {
+        return registry.counter("chat.cache.requests", "result", result).count();
+    }
+}
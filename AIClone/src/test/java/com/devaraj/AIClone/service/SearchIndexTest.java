@@ -0,0 +1,166 @@
+package com.devaraj.AIClone.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.devaraj.AIClone.entity.Conversation;
+import com.devaraj.AIClone.entity.Message;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SearchIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private JdbcTemplate jdbc;
+    private SearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:search;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbc.execute("create table conversation (id bigint primary key, user_id bigint, deleted_at timestamp)");
+        jdbc.execute("create table message (id bigint primary key, role varchar(20), content varchar(5000),"
+                + " conversation_id bigint, created_at timestamp)");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (index != null) {
+            index.shutdown();
+        }
+        jdbc.execute("drop all objects");
+    }
+
+    @Test
+    void rebuildIndexesStoredMessagesPerUserAndRanksTheBestMatchFirst() throws IOException {
+        conversation(1, 7, false);
+        conversation(2, 8, false);
+        conversation(3, 7, true);
+        message(10, 1, "Keyset pagination seeks past the last row.");
+        message(11, 1, "Pagination, pagination: keyset pagination beats OFFSET pagination.");
+        message(12, 2, "Another user's pagination notes.");
+        message(13, 3, "Pagination in a deleted conversation.");
+
+        index = open(true);
+        SearchIndex.Page page = awaitHits(7L, "pagination", 2);
+
+        assertEquals(2, page.total(), "other users and deleted conversations are not searchable");
+        assertEquals(11L, page.hits().get(0).messageId());
+        assertTrue(page.hits().get(0).snippet().contains("<mark>Pagination</mark>"), page.hits().get(0).snippet());
+        assertEquals(0, index.search(7L, "\"offset keyset\"", 0, 10).total(), "phrases match in order");
+        assertEquals(1, index.search(7L, "pagination -offset", 0, 10).total());
+    }
+
+    @Test
+    void liveMessagesAreSearchableAndLeaveWithTheirConversation() throws IOException {
+        index = open(false);
+        index.add(liveMessage(100, 5, "How do I tune the <b>JVM</b> garbage collector?"), 7L);
+        index.add(liveMessage(101, 6, "JVM flags for containers"), 7L);
+
+        SearchIndex.Page page = awaitHits(7L, "jvm", 2);
+        assertTrue(page.hits().stream().anyMatch(h -> h.snippet().contains("&lt;b&gt;<mark>JVM</mark>")),
+                "snippets are HTML-escaped");
+
+        index.deleteConversation(5L);
+        assertEquals(101L, awaitHits(7L, "jvm", 1).hits().get(0).messageId());
+        assertEquals(1, awaitHits(7L, "jvm*", 1).total(), "prefix queries");
+    }
+
+    @Test
+    void restartOnlyReadsMessagesNewerThanTheLastCommit() throws Exception {
+        conversation(1, 7, false);
+        message(10, 1, "first kafka question");
+        index = open(false);
+        awaitHits(7L, "kafka", 1);
+        index.shutdown();
+
+        message(11, 1, "second kafka question");
+        SimpleMeterRegistry restarted = new SimpleMeterRegistry();
+        index = new SearchIndex(jdbc, restarted, true, dir.toString(), 100, 10, 60_000, 0, false);
+
+        awaitHits(7L, "kafka", 2);
+        assertEquals(1, restarted.counter("chat.search.indexed").count(), "message 10 came from the index on disk");
+    }
+
+    @Test
+    void aFailedCatchUpIsRetriedAndLiveMessagesDoNotSkipItsRows() throws IOException {
+        jdbc.execute("drop table conversation");
+        index = open(false);
+        index.add(liveMessage(100, 5, "live kafka answer"), 8L);
+        awaitHits(8L, "kafka", 1);
+
+        // The database is back: the retry still indexes message 10, below the live id
+        jdbc.execute("create table conversation (id bigint primary key, user_id bigint, deleted_at timestamp)");
+        conversation(1, 7, false);
+        message(10, 1, "stored kafka question");
+        awaitHits(7L, "kafka", 1);
+    }
+
+    @Test
+    void messagesMissedLiveAreIndexedByTheNextCatchUp() throws IOException {
+        conversation(1, 7, false);
+        index = new SearchIndex(jdbc, registry, true, dir.toString(), 100, 10, 200, 0, false);
+        index.add(liveMessage(20, 1, "indexed live redis"), 7L);
+        awaitHits(7L, "redis", 1);
+
+        // Saved without reaching the queue, as when it is full
+        message(20, 1, "indexed live redis");
+        message(21, 1, "dropped redis");
+        awaitHits(7L, "redis", 2);
+        assertEquals(2, registry.counter("chat.search.indexed").count(), "message 20 was not indexed again");
+    }
+
+    private SearchIndex open(boolean rebuild) throws IOException {
+        return new SearchIndex(jdbc, registry, true, dir.toString(), 100, 10, 60_000, 0, rebuild);
+    }
+
+    // Indexing is asynchronous: poll until the expected number of hits is visible
+    private SearchIndex.Page awaitHits(Long userId, String query, int expected) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        SearchIndex.Page page;
+        do {
+            page = index.search(userId, query, 0, 10);
+            if (page.total() == expected) {
+                return page;
+            }
+            Thread.onSpinWait();
+        } while (System.nanoTime() < deadline);
+        assertEquals(expected, page.total(), "hits for " + query);
+        return page;
+    }
+
+    private void conversation(long id, long userId, boolean deleted) {
+        jdbc.update("insert into conversation (id, user_id, deleted_at) values (?, ?, ?)",
+                id, userId, deleted ? LocalDateTime.now() : null);
+    }
+
+    private void message(long id, long conversationId, String content) {
+        jdbc.update("insert into message (id, role, content, conversation_id, created_at) values (?, 'user', ?, ?, ?)",
+                id, content, conversationId, LocalDateTime.now());
+    }
+
+    private static Message liveMessage(long id, long conversationId, String content) {
+        Conversation c = new Conversation();
+        c.setId(conversationId);
+        Message m = new Message();
+        m.setId(id);
+        m.setRole("user");
+        m.setContent(content);
+        m.setConversation(c);
+        return m;
+    }
+}
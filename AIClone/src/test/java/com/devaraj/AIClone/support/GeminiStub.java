@@ -0,0 +1,242 @@
+package com.devaraj.AIClone.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for generativelanguage.googleapis.com, shared by the tests, the benchmarks and the
+ * load test: answers generateContent and streamGenerateContent (alt=sse) in Gemini's wire format.
+ *
+ * What each call gets is decided by a {@link Script}; {@link #shaped(Config)} is the one the load
+ * test uses, with realistic timing and failures.
+ */
+public final class GeminiStub implements AutoCloseable {
+
+    /**
+     * The answer to one call; calls are numbered from 1. It runs on the call's own thread, so it may
+     * block, e.g. to hold a reply until the test lets it go.
+     */
+    @FunctionalInterface
+    public interface Script {
+        Reply reply(int call, boolean stream) throws InterruptedException;
+    }
+
+    /**
+     * Sent after delayMs. A stream sends each chunk as an SSE event, gapMs apart, then a closing
+     * finishReason event; a whole reply is the chunks joined. A status other than 200 sends an error.
+     */
+    public record Reply(int status, long delayMs, List<String> chunks, long gapMs) {
+
+        public static Reply text(String text) {
+            return new Reply(200, 0, List.of(text), 0);
+        }
+
+        public static Reply error(int status) {
+            return new Reply(status, 0, List.of(), 0);
+        }
+
+        public Reply after(long delayMs) {
+            return new Reply(status, delayMs, chunks, gapMs);
+        }
+    }
+
+    public record Config(
+            long medianMs,
+            long p99Ms,
+            int tokensPerSecond,
+            int replyTokens,
+            int chunkTokens,
+            double errorRate,
+            double rateLimitRate
+    ) {
+
+        // -Dstub.median-ms=600 -Dstub.p99-ms=3000 -Dstub.tokens-per-second=80 -Dstub.reply-tokens=200 ...
+        public static Config fromSystemProperties() {
+            return new Config(
+                    Long.getLong("stub.median-ms", 600),
+                    Long.getLong("stub.p99-ms", 3000),
+                    Integer.getInteger("stub.tokens-per-second", 80),
+                    Integer.getInteger("stub.reply-tokens", 200),
+                    Integer.getInteger("stub.chunk-tokens", 10),
+                    Double.parseDouble(System.getProperty("stub.error-rate", "0")),
+                    Double.parseDouble(System.getProperty("stub.rate-limit-rate", "0")));
+        }
+    }
+
+    // 2.326 = z-score of the 99th percentile
+    private static final double Z_99 = 2.326;
+    private static final String WORD = "lorem ";
+
+    private final Script script;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger disconnects = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private volatile String lastRequest;
+
+    public GeminiStub(Script script) throws IOException {
+        this.script = script;
+        // Without TCP_NODELAY small responses sit out the 40 ms delayed-ACK timer
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Time to first token is log-normal with the configured median and p99. After it, the reply is
+     * produced at tokensPerSecond; a whole reply is sent when that is done, a stream sends a chunk
+     * every chunkTokens tokens. errorRate of calls answer 503 and rateLimitRate answer 429, after
+     * the first-token delay, as an overloaded upstream would.
+     */
+    public static Script shaped(Config config) {
+        double mu = Math.log(Math.max(1, config.medianMs()));
+        double sigma = Math.max(0, Math.log((double) Math.max(config.p99Ms(), config.medianMs()) / Math.max(1, config.medianMs())) / Z_99);
+        List<String> chunks = new ArrayList<>();
+        for (int sent = 0; sent < config.replyTokens(); sent += config.chunkTokens()) {
+            chunks.add(WORD.repeat(Math.min(config.chunkTokens(), config.replyTokens() - sent)));
+        }
+        long chunkMs = generationMs(config, config.chunkTokens());
+        long replyMs = generationMs(config, config.replyTokens());
+        return (call, stream) -> {
+            long firstToken = sigma == 0 ? config.medianMs()
+                    : Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < config.errorRate()) {
+                return Reply.error(503).after(firstToken);
+            }
+            if (roll < config.errorRate() + config.rateLimitRate()) {
+                return Reply.error(429).after(firstToken);
+            }
+            return new Reply(200, stream ? firstToken : firstToken + replyMs, chunks, chunkMs);
+        };
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int calls() {
+        return calls.get();
+    }
+
+    public int failures() {
+        return failures.get();
+    }
+
+    // Calls whose client went away before the reply was written (timeout, cancelled stream or lost hedge)
+    public int disconnects() {
+        return disconnects.get();
+    }
+
+    // The most calls open at once: how much concurrency the application actually sent upstream
+    public int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    // Path and query of the latest call
+    public String lastRequest() {
+        return lastRequest;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int call = calls.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        lastRequest = exchange.getRequestURI().toString();
+        exchange.getRequestBody().readAllBytes();
+        boolean stream = exchange.getRequestURI().getPath().endsWith(":streamGenerateContent");
+        try {
+            Reply reply = script.reply(call, stream);
+            Thread.sleep(reply.delayMs());
+            if (reply.status() != 200) {
+                failures.incrementAndGet();
+                respond(exchange, reply.status(), "application/json", "{\"error\":{\"code\":" + reply.status()
+                        + ",\"status\":\"" + reason(reply.status()) + "\"}}");
+            } else if (stream) {
+                stream(exchange, reply);
+            } else {
+                respond(exchange, 200, "application/json", chunk(String.join("", reply.chunks()), true));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            disconnects.incrementAndGet();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static void stream(HttpExchange exchange, Reply reply) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        for (int i = 0; i < reply.chunks().size(); i++) {
+            if (i > 0) {
+                Thread.sleep(reply.gapMs());
+            }
+            event(out, chunk(reply.chunks().get(i), false));
+        }
+        // Gemini closes a stream with an event that has no text, only finishReason and usage
+        event(out, chunk(null, true));
+        out.close();
+    }
+
+    private static void event(OutputStream out, String json) throws IOException {
+        out.write(("data: " + json + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // text null: no content part. The test texts need no JSON escaping
+    private static String chunk(String text, boolean last) {
+        String content = text == null ? ""
+                : "\"content\":{\"parts\":[{\"text\":\"" + text + "\"}],\"role\":\"model\"}" + (last ? "," : "");
+        return "{\"candidates\":[{" + content + (last ? "\"finishReason\":\"STOP\"" : "") + "}]"
+                + (last ? ",\"usageMetadata\":{\"promptTokenCount\":50,\"candidatesTokenCount\":50,\"totalTokenCount\":100}" : "")
+                + "}";
+    }
+
+    private static String reason(int status) {
+        return switch (status) {
+            case 429 -> "RESOURCE_EXHAUSTED";
+            case 503 -> "UNAVAILABLE";
+            case 504 -> "DEADLINE_EXCEEDED";
+            default -> status >= 500 ? "INTERNAL" : "INVALID_ARGUMENT";
+        };
+    }
+
+    private static long generationMs(Config config, int tokens) {
+        return config.tokensPerSecond() <= 0 ? 0 : tokens * 1000L / config.tokensPerSecond();
+    }
+}
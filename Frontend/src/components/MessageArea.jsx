@@ -34,7 +34,7 @@ const CodeBlock = ({ language, value }) => {
   );
 };
 
-export default function MessageArea({ messages, user, loading, scrollRef, onCardClick, onUpdateMessage }) {
+export default function MessageArea({ messages, hasOlder, onLoadOlder, user, loading, scrollRef, onCardClick, onUpdateMessage }) {
   const [editId, setEditId] = useState(null);
   const [editText, setEditText] = useState("");
 
@@ -62,6 +62,11 @@ export default function MessageArea({ messages, user, loading, scrollRef, onCard
   return (
     <div className="w-full max-w-4xl mx-auto px-4 md:px-8 pt-8 pb-40">
       <div className="flex flex-col space-y-10">
+        {hasOlder && (
+          <button onClick={onLoadOlder} className="self-center text-xs px-4 py-1.5 text-gray-500 dark:text-gray-400 border border-gray-200 dark:border-gray-700 rounded-full hover:bg-gray-50 dark:hover:bg-gray-800">
+            Load earlier messages
+          </button>
+        )}
         {messages.map((m, i) => {
           // Detect if this is an image generation response (Simple Demo Logic)
           const isImageResponse = m.role === 'assistant' && (m.text.toLowerCase().includes("image of") || m.text.toLowerCase().includes("here is"));
@@ -8,6 +8,8 @@ import ChatModals from "./ChatModals";
 
 export default function Sidebar({ 
   history, 
+  hasMore,
+  onLoadMore,
   activeId, 
   onSelect, 
   onNewChat, 
@@ -146,6 +148,11 @@ export default function Sidebar({
         </div>
       </div>
     ))}
+    {hasMore && (
+      <button onClick={onLoadMore} className="w-full px-3 py-2 text-left text-[13px] text-gray-500 dark:text-gray-400 hover:bg-[#ececec] dark:hover:bg-[#2b2c2d] rounded-lg">
+        Show more
+      </button>
+    )}
   </div>
 </div>
         </nav>
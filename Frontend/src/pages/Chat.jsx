@@ -5,17 +5,32 @@ import MessageArea from "../components/MessageArea";
 import ChatInput from "../components/ChatInput";
 import { ChevronDown, Menu, Sun, Moon } from "lucide-react";
 
+// Page sizes for the keyset-paged history endpoints
+const MESSAGE_PAGE = 50;
+const HISTORY_PAGE = 100;
+
+// A fresh first page replaces the entries it covers; older pages already loaded stay below it
+const refreshFirstPage = (loaded, firstPage) => {
+  if (firstPage.length < HISTORY_PAGE) return firstPage;
+  const ids = new Set(firstPage.map(c => c.id));
+  const at = loaded.findIndex(c => c.id === firstPage[firstPage.length - 1].id);
+  return [...firstPage, ...loaded.slice(at + 1).filter(c => !ids.has(c.id))];
+};
+
 export default function Chat() {
   const [user, setUser] = useState(null);
   const [history, setHistory] = useState([]);
+  const [hasMoreHistory, setHasMoreHistory] = useState(false);
   const [activeId, setActiveId] = useState(null);
   const [messages, setMessages] = useState([]);
+  const [hasOlder, setHasOlder] = useState(false);
   const [input, setInput] = useState("");
   const [loading, setLoading] = useState(false);
   const [isSidebarOpen, setIsSidebarOpen] = useState(false);
   const [theme, setTheme] = useState(localStorage.getItem("theme") || "light");
 
   const scrollRef = useRef(null);
+  const keepScrollRef = useRef(false);
   const fileRef = useRef(null);
 
   useEffect(() => {
@@ -29,28 +44,57 @@ export default function Chat() {
       try {
         const uRes = await api.get("/api/auth/me");
         setUser(uRes.data);
-        const hRes = await api.get("/api/chat/history");
+        const hRes = await api.get("/api/chat/history", { params: { limit: HISTORY_PAGE } });
         setHistory(hRes.data);
+        setHasMoreHistory(hRes.data.length === HISTORY_PAGE);
       } catch (e) { console.error("Auth error", e); }
     };
     init();
   }, []);
 
   useEffect(() => { 
+    // Older messages are added above what the user is reading; stay put
+    if (keepScrollRef.current) { keepScrollRef.current = false; return; }
     if (scrollRef.current) scrollRef.current.scrollIntoView({ behavior: "smooth" }); 
   }, [messages, loading]);
 
+  const toView = (m) => ({ id: m.id, role: m.role, text: m.content });
+
   const loadChat = async (id) => {
     setActiveId(id);
     setLoading(true);
     try {
-      const res = await api.get(`/api/chat/history/${id}`);
-      setMessages(res.data.map(m => ({ role: m.role, text: m.content })));
+      const res = await api.get(`/api/chat/history/${id}`, { params: { limit: MESSAGE_PAGE } });
+      setMessages(res.data.map(toView));
+      setHasOlder(res.data.length === MESSAGE_PAGE);
       if (window.innerWidth < 1024) setIsSidebarOpen(false);
     } catch (e) { console.error(e); }
     finally { setLoading(false); }
   };
 
+  // The page before the oldest message shown
+  const loadOlder = async () => {
+    const oldest = messages.find(m => m.id);
+    if (!activeId || !oldest) return;
+    try {
+      const res = await api.get(`/api/chat/history/${activeId}`, { params: { before: oldest.id, limit: MESSAGE_PAGE } });
+      keepScrollRef.current = true;
+      setMessages(prev => [...res.data.map(toView), ...prev]);
+      setHasOlder(res.data.length === MESSAGE_PAGE);
+    } catch (e) { console.error(e); }
+  };
+
+  // The sidebar page after the oldest conversation listed (the list is newest first)
+  const loadMoreHistory = async () => {
+    const oldest = history[history.length - 1];
+    if (!oldest) return;
+    try {
+      const res = await api.get("/api/chat/history", { params: { before: oldest.id, limit: HISTORY_PAGE } });
+      setHistory(prev => [...prev, ...res.data]);
+      setHasMoreHistory(res.data.length === HISTORY_PAGE);
+    } catch (e) { console.error(e); }
+  };
+
   const handleSend = async (overrideText) => {
     const textToSend = overrideText || input;
     if (!textToSend.trim() || loading) return;
@@ -67,8 +111,8 @@ export default function Chat() {
       setMessages(prev => [...prev, { role: "assistant", text: res.data.reply }]);
       
       // Refresh history to show new chat title
-      const hRes = await api.get("/api/chat/history");
-      setHistory(hRes.data);
+      const hRes = await api.get("/api/chat/history", { params: { limit: HISTORY_PAGE } });
+      setHistory(prev => refreshFirstPage(prev, hRes.data));
       if (!activeId && hRes.data.length > 0) setActiveId(hRes.data[0].id);
     } catch (e) {
       setMessages(prev => [...prev, { role: "assistant", text: "Error: Could not reach the server." }]);
@@ -85,8 +129,9 @@ export default function Chat() {
     <div className="flex h-screen w-full bg-white dark:bg-dark-bg overflow-hidden transition-colors duration-300">
       <Sidebar 
         user={user} history={history} activeId={activeId} 
+        hasMore={hasMoreHistory} onLoadMore={loadMoreHistory}
         onSelect={loadChat} 
-        onNewChat={() => { setActiveId(null); setMessages([]); setIsSidebarOpen(false); }} 
+        onNewChat={() => { setActiveId(null); setMessages([]); setHasOlder(false); setIsSidebarOpen(false); }} 
         onLogout={() => { localStorage.clear(); window.location.href = "/login"; }}
         isOpen={isSidebarOpen} setIsOpen={setIsSidebarOpen}
       />
@@ -116,6 +161,8 @@ export default function Chat() {
         <div className="flex-1 overflow-y-auto custom-scrollbar">
           <MessageArea 
             messages={messages} 
+            hasOlder={hasOlder}
+            onLoadOlder={loadOlder}
             user={user} 
             loading={loading} 
             scrollRef={scrollRef} 